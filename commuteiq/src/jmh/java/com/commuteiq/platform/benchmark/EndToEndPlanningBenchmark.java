@@ -0,0 +1,111 @@
+package com.commuteiq.platform.benchmark;
+
+import com.commuteiq.commuteiq.CommuteiqApplication;
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.service.PlanningProgressListener;
+import com.commuteiq.platform.service.RidePlanningService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-to-end ride plan generation against an embedded H2 database (profile
+ * {@code bench}, see {@code application-bench.yml}): seeds a
+ * {@link SyntheticCity}, runs {@code generatePlansForDate} once through the
+ * full application context and reports wall time, JDBC queries and rows
+ * written per phase.
+ *
+ * Arguments: {@code [riders] [seed]}, 10000 and 42 by default. Not a JMH
+ * benchmark: a run consumes its pending requests, so each invocation measures
+ * one cold run on a fresh database.
+ */
+public final class EndToEndPlanningBenchmark {
+
+    private EndToEndPlanningBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int riders = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+        // Devtools would restart the context in another class loader; measure this one
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        StatementCounter counter = new StatementCounter();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CommuteiqApplication.class)
+                .profiles("bench")
+                .web(WebApplicationType.NONE)
+                .initializers(c -> c.getBeanFactory().addBeanPostProcessor(counter))
+                .run()) {
+
+            SyntheticCity city = SyntheticCity.generate(riders, seed);
+            List<Phase> phases = new ArrayList<>();
+
+            Phase seeding = new Phase("seed", counter);
+            long seeded = new SyntheticCityLoader(context.getBean(NamedParameterJdbcTemplate.class)).load(city);
+            phases.add(seeding.end(System.nanoTime() - seeding.startNanos));
+
+            RidePlanningService ridePlanningService = context.getBean(RidePlanningService.class);
+            Phase[] current = { new Phase(null, counter) };
+            long started = System.nanoTime();
+            List<RidePlanResponse> plans = ridePlanningService.generatePlansForDate(city.date(),
+                    new PlanningProgressListener() {
+                        @Override
+                        public void phaseCompleted(String phase, long nanos) {
+                            phases.add(current[0].named(phase).end(nanos));
+                            current[0] = new Phase(null, counter);
+                        }
+                    });
+            long total = System.nanoTime() - started;
+
+            int planned = plans.stream().mapToInt(p -> p.getEmployees().size()).sum();
+            System.out.printf("riders=%d seed=%d seededRows=%d plans=%d plannedRiders=%d%n",
+                    riders, seed, seeded, plans.size(), planned);
+            System.out.printf("%-12s %10s %10s %10s%n", "phase", "ms", "queries", "rows");
+            for (Phase phase : phases) {
+                System.out.printf("%-12s %10.1f %10d %10d%n", phase.name, phase.nanos / 1e6, phase.queries,
+                        phase.rows);
+            }
+            long queries = phases.stream().filter(p -> !p.name.equals("seed")).mapToLong(p -> p.queries).sum();
+            long rows = phases.stream().filter(p -> !p.name.equals("seed")).mapToLong(p -> p.rows).sum();
+            System.out.printf("%-12s %10.1f %10d %10d%n", "planning", total / 1e6, queries, rows);
+        }
+    }
+
+    /**
+     * Counter deltas between the start and the end of a phase.
+     */
+    private static final class Phase {
+
+        private final StatementCounter counter;
+        private final long startNanos = System.nanoTime();
+        private final long startQueries;
+        private final long startRows;
+        private String name;
+        private long nanos;
+        private long queries;
+        private long rows;
+
+        private Phase(String name, StatementCounter counter) {
+            this.name = name;
+            this.counter = counter;
+            this.startQueries = counter.queries();
+            this.startRows = counter.rows();
+        }
+
+        private Phase named(String name) {
+            this.name = name;
+            return this;
+        }
+
+        private Phase end(long nanos) {
+            this.nanos = nanos;
+            this.queries = counter.queries() - startQueries;
+            this.rows = counter.rows() - startRows;
+            return this;
+        }
+    }
+}
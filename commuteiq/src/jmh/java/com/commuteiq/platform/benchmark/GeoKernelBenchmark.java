@@ -0,0 +1,82 @@
+package com.commuteiq.platform.benchmark;
+
+import com.commuteiq.platform.pooling.GeoDistance;
+import com.commuteiq.platform.pooling.GeoKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-to-many distances: pairwise Haversine against the {@link GeoKernel}
+ * implementations. Add {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}
+ * to measure the vector kernel as {@code kernel}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoKernelBenchmark {
+
+    @Param({ "64", "1024" })
+    private int targets;
+
+    private double latitude;
+    private double longitude;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitude = 12.97;
+        longitude = 77.59;
+        latitudes = new double[targets];
+        longitudes = new double[targets];
+        for (int k = 0; k < targets; k++) {
+            latitudes[k] = latitude + (random.nextDouble() - 0.5) * 0.5;
+            longitudes[k] = longitude + (random.nextDouble() - 0.5) * 0.5;
+        }
+        xs = new double[targets];
+        ys = new double[targets];
+        zs = new double[targets];
+        GeoKernel.toUnitVectors(latitudes, longitudes, xs, ys, zs);
+        out = new double[targets];
+    }
+
+    @Benchmark
+    public double[] haversine() {
+        for (int k = 0; k < targets; k++) {
+            out[k] = GeoDistance.haversineKm(latitude, longitude, latitudes[k], longitudes[k]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] scalarKernel() {
+        GeoKernel.scalar().distancesKm(xs[0], ys[0], zs[0], xs, ys, zs, targets, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] kernel() {
+        GeoKernel.get().distancesKm(xs[0], ys[0], zs[0], xs, ys, zs, targets, out);
+        return out;
+    }
+}
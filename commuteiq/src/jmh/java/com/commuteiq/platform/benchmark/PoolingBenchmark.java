@@ -0,0 +1,103 @@
+package com.commuteiq.platform.benchmark;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.pooling.Clusters;
+import com.commuteiq.platform.pooling.PoolingEngine;
+import com.commuteiq.platform.pooling.PoolingParameters;
+import com.commuteiq.platform.pooling.Routes;
+import com.commuteiq.platform.pooling.VehicleAssigner;
+import com.commuteiq.platform.pooling.VehicleAssignment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooling engine phases on seeded synthetic cities (see {@link SyntheticCity}).
+ *
+ * - clustering: greedy clustering over all office / window partitions
+ * - assignment: best-fit vehicle assignment of the greedy clusters
+ * - routes: stop ordering and route distance of the assigned clusters
+ *
+ * Searches run to convergence ({@code deterministic}) rather than against a
+ * wall-clock budget, so every invocation does the same work. Run with
+ * {@code -prof gc} (the profile default) for {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoolingBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int riders;
+
+    @Param({ "42" })
+    private long seed;
+
+    private ForkJoinPool pool;
+    private PoolingEngine engine;
+    private PoolingParameters parameters;
+    private SyntheticCity city;
+    private Clusters clusters;
+    private Clusters assigned;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        OfficeLocationProperties offices = new OfficeLocationProperties();
+        offices.setOfficeCoordinates(Map.of(
+                "Tech Park", List.of(12.9352, 77.6245),
+                "Central", List.of(12.9716, 77.5946),
+                "Airport Road", List.of(13.0358, 77.6256)));
+        engine = new PoolingEngine(pool, offices);
+        parameters = PoolingParameters.builder()
+                .distanceThresholdKm(2.0)
+                .maxClusterSize(8)
+                .routeBudgetMs(2000)
+                .vehicleCostKm(10.0)
+                .deterministic(true)
+                .build();
+
+        city = SyntheticCity.generate(riders, seed);
+        clusters = engine.buildClusters(city.snapshot(), parameters);
+        assigned = VehicleAssigner.assign(city.snapshot(), clusters, city.vehicleCapacities(), city.drivers())
+                .clusters();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Clusters clustering() {
+        return engine.buildClusters(city.snapshot(), parameters);
+    }
+
+    @Benchmark
+    public VehicleAssignment assignment() {
+        return VehicleAssigner.assign(city.snapshot(), clusters, city.vehicleCapacities(), city.drivers());
+    }
+
+    @Benchmark
+    public Routes routes() {
+        return engine.planRoutes(city.snapshot(), assigned, parameters);
+    }
+}
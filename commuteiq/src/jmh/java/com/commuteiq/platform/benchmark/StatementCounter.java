@@ -0,0 +1,89 @@
+package com.commuteiq.platform.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts JDBC round trips and rows written through the application's
+ * {@link DataSource}, whichever layer (JPA, Spring Data, JDBC templates)
+ * issues them.
+ *
+ * - every {@code execute*} call on a statement counts as one query; a batch
+ * counts once, however many parameter sets it carries
+ * - rows are the update counts reported by the driver
+ */
+public final class StatementCounter implements BeanPostProcessor {
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    public long queries() {
+        return queries.sum();
+    }
+
+    public long rows() {
+        return rows.sum();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource);
+        }
+        return bean;
+    }
+
+    private Object proxy(Class<?> type, Object target) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                (InvocationHandler) (p, method, args) -> intercept(target, method, args));
+    }
+
+    private Object intercept(Object target, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        String name = method.getName();
+        if (result instanceof Connection connection && !name.equals("unwrap")) {
+            return proxy(Connection.class, connection);
+        }
+        if (result instanceof Statement statement && !name.equals("unwrap")) {
+            return proxy(statementType(method.getReturnType()), statement);
+        }
+        if (target instanceof Statement && name.startsWith("execute")) {
+            queries.increment();
+            count(result);
+        }
+        return result;
+    }
+
+    private void count(Object result) {
+        if (result instanceof Integer updated) {
+            rows.add(Math.max(0, updated));
+        } else if (result instanceof Long updated) {
+            rows.add(Math.max(0, updated));
+        } else if (result instanceof int[] updated) {
+            for (int n : updated) {
+                rows.add(Math.max(0, n));
+            }
+        } else if (result instanceof long[] updated) {
+            for (long n : updated) {
+                rows.add(Math.max(0, n));
+            }
+        }
+    }
+
+    private static Class<?> statementType(Class<?> declared) {
+        return Statement.class.isAssignableFrom(declared) ? declared : Statement.class;
+    }
+}
@@ -0,0 +1,109 @@
+package com.commuteiq.platform.benchmark;
+
+import com.commuteiq.platform.pooling.PlanningSnapshot;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded synthetic city for benchmarks: riders live in Gaussian neighbourhoods
+ * scattered over a ~30 km radius around the city centre and commute to one of
+ * three offices.
+ *
+ * - pickup windows start between 07:00 and 10:00 in 15-minute steps and last
+ * 30 minutes; 20% of riders have no preference (flexible)
+ * - 10% require same-gender rides
+ * - the fleet has one vehicle per four riders, with 4 to 8 seats
+ *
+ * The same seed always gives the same city.
+ */
+public final class SyntheticCity {
+
+    private static final double CENTRE_LATITUDE = 12.9716;
+    private static final double CENTRE_LONGITUDE = 77.5946;
+    private static final double KM_PER_DEGREE = 111.2;
+    private static final String[] OFFICES = { "Tech Park", "Central", "Airport Road" };
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 6);
+
+    private final List<PendingRequestRow> rows;
+    private final PlanningSnapshot snapshot;
+    private final int[] vehicleCapacities;
+    private final int drivers;
+
+    private SyntheticCity(List<PendingRequestRow> rows, PlanningSnapshot snapshot, int[] vehicleCapacities,
+            int drivers) {
+        this.rows = rows;
+        this.snapshot = snapshot;
+        this.vehicleCapacities = vehicleCapacities;
+        this.drivers = drivers;
+    }
+
+    public static SyntheticCity generate(int riders, long seed) {
+        Random random = new Random(seed);
+        int neighbourhoods = Math.max(10, riders / 200);
+        double[][] centres = new double[neighbourhoods][];
+        for (int h = 0; h < neighbourhoods; h++) {
+            double radiusKm = 30 * Math.sqrt(random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            centres[h] = offset(CENTRE_LATITUDE, CENTRE_LONGITUDE, radiusKm * Math.cos(angle),
+                    radiusKm * Math.sin(angle));
+        }
+
+        List<PendingRequestRow> rows = new ArrayList<>(riders);
+        for (int i = 0; i < riders; i++) {
+            double[] centre = centres[random.nextInt(neighbourhoods)];
+            double[] home = offset(centre[0], centre[1], random.nextGaussian() * 1.5, random.nextGaussian() * 1.5);
+
+            LocalTime start = null;
+            LocalTime end = null;
+            if (random.nextInt(5) != 0) {
+                start = LocalTime.of(7, 0).plusMinutes(15L * random.nextInt(13));
+                end = start.plusMinutes(30);
+            }
+            rows.add(new PendingRequestRow((long) i + 1, (long) i + 1, "Rider " + (i + 1),
+                    random.nextBoolean() ? "MALE" : "FEMALE", home[0], home[1],
+                    OFFICES[random.nextInt(OFFICES.length)], start, end, random.nextInt(10) == 0, null));
+        }
+
+        int[] capacities = new int[Math.max(1, riders / 4)];
+        for (int v = 0; v < capacities.length; v++) {
+            capacities[v] = 4 + random.nextInt(5);
+        }
+        return new SyntheticCity(rows, PlanningSnapshot.of(DATE, rows), capacities,
+                capacities.length);
+    }
+
+    private static double[] offset(double latitude, double longitude, double northKm, double eastKm) {
+        return new double[] {
+                latitude + northKm / KM_PER_DEGREE,
+                longitude + eastKm / (KM_PER_DEGREE * Math.cos(Math.toRadians(latitude)))
+        };
+    }
+
+    /**
+     * The requests in generation order; request and employee IDs run from 1.
+     */
+    public List<PendingRequestRow> rows() {
+        return rows;
+    }
+
+    public LocalDate date() {
+        return DATE;
+    }
+
+    public PlanningSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public int[] vehicleCapacities() {
+        return vehicleCapacities;
+    }
+
+    public int drivers() {
+        return drivers;
+    }
+}
@@ -0,0 +1,126 @@
+package com.commuteiq.platform.benchmark;
+
+import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a {@link SyntheticCity} into the application schema: one employee,
+ * one PENDING ride request for the city's date and, for riders with a pickup
+ * window, one commute preference per rider, plus the city's vehicles and an
+ * equal number of drivers.
+ *
+ * Riders without a pickup window get no preference row and are planned as
+ * flexible, as in production.
+ */
+public final class SyntheticCityLoader {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_EMPLOYEE = "INSERT INTO employees " +
+            "(name, gender, department, home_latitude, home_longitude, office_location, active, created_at, updated_at) " +
+            "VALUES (:name, :gender, :department, :latitude, :longitude, :office, TRUE, :now, :now)";
+
+    private static final String INSERT_PREFERENCE = "INSERT INTO commute_preferences " +
+            "(employee_id, pickup_start_time, pickup_end_time, same_gender_required, created_at, updated_at) " +
+            "VALUES (:employeeId, :start, :end, :sameGender, :now, :now)";
+
+    private static final String INSERT_REQUEST = "INSERT INTO ride_requests " +
+            "(employee_id, request_date, status, created_at, updated_at) " +
+            "VALUES (:employeeId, :date, :status, :now, :now)";
+
+    private static final String INSERT_VEHICLE = "INSERT INTO vehicles " +
+            "(plate_number, capacity, vendor_name, active, created_at, updated_at) " +
+            "VALUES (:plate, :capacity, :vendor, TRUE, :now, :now)";
+
+    private static final String INSERT_DRIVER = "INSERT INTO drivers " +
+            "(name, license_number, rating, active, created_at, updated_at) " +
+            "VALUES (:name, :license, :rating, TRUE, :now, :now)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public SyntheticCityLoader(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return rows written
+     */
+    public long load(SyntheticCity city) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingRequestRow> rows = city.rows();
+        long written = 0;
+
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, rows.size());
+            SqlParameterSource[] employees = new SqlParameterSource[to - from];
+            for (int i = from; i < to; i++) {
+                PendingRequestRow row = rows.get(i);
+                employees[i - from] = new MapSqlParameterSource()
+                        .addValue("name", row.getEmployeeName())
+                        .addValue("gender", row.getGender())
+                        .addValue("department", "Engineering")
+                        .addValue("latitude", row.getHomeLatitude())
+                        .addValue("longitude", row.getHomeLongitude())
+                        .addValue("office", row.getOfficeLocation())
+                        .addValue("now", now);
+            }
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(INSERT_EMPLOYEE, employees, keyHolder, new String[] { "id" });
+
+            List<SqlParameterSource> preferences = new ArrayList<>();
+            SqlParameterSource[] requests = new SqlParameterSource[to - from];
+            for (int i = from; i < to; i++) {
+                PendingRequestRow row = rows.get(i);
+                long employeeId = ((Number) keyHolder.getKeyList().get(i - from).values().iterator().next())
+                        .longValue();
+                if (row.getPickupStartTime() != null) {
+                    preferences.add(new MapSqlParameterSource()
+                            .addValue("employeeId", employeeId)
+                            .addValue("start", row.getPickupStartTime())
+                            .addValue("end", row.getPickupEndTime())
+                            .addValue("sameGender", row.getSameGenderRequired())
+                            .addValue("now", now));
+                }
+                requests[i - from] = new MapSqlParameterSource()
+                        .addValue("employeeId", employeeId)
+                        .addValue("date", city.date())
+                        .addValue("status", RideRequestStatus.PENDING.name())
+                        .addValue("now", now);
+            }
+            jdbcTemplate.batchUpdate(INSERT_PREFERENCE, preferences.toArray(new SqlParameterSource[0]));
+            jdbcTemplate.batchUpdate(INSERT_REQUEST, requests);
+            written += employees.length + preferences.size() + requests.length;
+        }
+
+        int[] capacities = city.vehicleCapacities();
+        SqlParameterSource[] vehicles = new SqlParameterSource[capacities.length];
+        for (int v = 0; v < capacities.length; v++) {
+            vehicles[v] = new MapSqlParameterSource()
+                    .addValue("plate", String.format("KA01BM%05d", v + 1))
+                    .addValue("capacity", capacities[v])
+                    .addValue("vendor", "Vendor " + (v % 5 + 1))
+                    .addValue("now", now);
+        }
+        jdbcTemplate.batchUpdate(INSERT_VEHICLE, vehicles);
+
+        SqlParameterSource[] drivers = new SqlParameterSource[city.drivers()];
+        for (int d = 0; d < drivers.length; d++) {
+            drivers[d] = new MapSqlParameterSource()
+                    .addValue("name", "Driver " + (d + 1))
+                    .addValue("license", String.format("DL-%07d", d + 1))
+                    .addValue("rating", 4.5)
+                    .addValue("now", now);
+        }
+        jdbcTemplate.batchUpdate(INSERT_DRIVER, drivers);
+
+        return written + vehicles.length + drivers.length;
+    }
+}
@@ -0,0 +1,25 @@
+package com.commuteiq.platform.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional office coordinates keyed by {@code Employee.officeLocation}, as
+ * {@code [latitude, longitude]}. Offices listed here get the final leg to the
+ * office included in route ordering and distance estimates. Names containing
+ * spaces must use bracket notation, e.g. {@code "[Tech Park]": 12.97,77.59}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.pooling")
+@Getter
+@Setter
+public class OfficeLocationProperties {
+
+    private Map<String, List<Double>> officeCoordinates = new HashMap<>();
+}
@@ -0,0 +1,66 @@
+package com.commuteiq.platform.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Thread pool shared by the pooling engine for CPU-bound planning work.
+ * Parallelism defaults to the number of available cores and can be capped
+ * with {@code app.pooling.parallelism}.
+ *
+ * Planning jobs are driven from a separate small executor, since each job
+ * mostly waits on the planning pool and on the database. The days of a
+ * horizon run on their own bounded executor for the same reason; blocking
+ * them on the planning pool would starve its CPU work.
+ */
+@Configuration
+public class PoolingConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool planningPool(@Value("${app.pooling.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("planning-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor planningJobExecutor(
+            @Value("${app.pooling.jobs.concurrency:2}") int concurrency,
+            @Value("${app.pooling.jobs.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("planning-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    /**
+     * Runs the days of a horizon; a day that finds every thread and queue
+     * slot busy is planned by the submitting thread.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor planningDayExecutor(
+            @Value("${app.pooling.jobs.day-concurrency:4}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("planning-day-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
@@ -0,0 +1,27 @@
+package com.commuteiq.platform.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor that loads route corridors for location tracking, so the
+ * database query at the start of a trip never runs on a WebSocket thread.
+ * A load that finds the queue full is rejected and retried on a later fix.
+ */
+@Configuration
+public class RouteTrackingConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor routeCorridorExecutor(
+            @Value("${app.route.corridor-loader.concurrency:2}") int concurrency,
+            @Value("${app.route.corridor-loader.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("route-corridor-");
+        return executor;
+    }
+}
@@ -39,8 +39,13 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/ws/**").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/analytics/**").hasAnyRole("ADMIN", "EMPLOYEE")
                         .requestMatchers(HttpMethod.POST, "/api/ride-plans/generate").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/ride-plans/generate-horizon").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/ride-plans/simulate").hasRole("ADMIN")
+                        .requestMatchers("/api/ride-plans/jobs/**").hasRole("ADMIN")
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
@@ -1,18 +1,25 @@
 package com.commuteiq.platform.controller;
 
+import com.commuteiq.platform.dto.request.PlanningSimulationRequest;
 import com.commuteiq.platform.dto.response.ApiResponse;
+import com.commuteiq.platform.dto.response.PlanningJobResponse;
+import com.commuteiq.platform.dto.response.PlanningSimulationResponse;
 import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.service.PlanningJobService;
+import com.commuteiq.platform.service.PlanningSimulationService;
 import com.commuteiq.platform.service.RidePlanService;
-import com.commuteiq.platform.service.RidePlanningService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -23,7 +30,8 @@ import java.util.List;
 public class RidePlanController {
 
     private final RidePlanService ridePlanService;
-    private final RidePlanningService ridePlanningService;
+    private final PlanningJobService planningJobService;
+    private final PlanningSimulationService planningSimulationService;
 
     @GetMapping
     public ResponseEntity<ApiResponse<Page<RidePlanResponse>>> getRidePlans(
@@ -41,10 +49,50 @@ public class RidePlanController {
 
     @PostMapping("/generate")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<List<RidePlanResponse>>> generatePlans(
+    public ResponseEntity<ApiResponse<PlanningJobResponse>> generatePlans(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        List<RidePlanResponse> responses = ridePlanningService.generatePlansForDate(date);
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.success("Ride plans generated", responses));
+        PlanningJobResponse job = planningJobService.submit(date);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Ride plan generation started", job));
+    }
+
+    @PostMapping("/generate-horizon")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<PlanningJobResponse>>> generateHorizonPlans(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        List<PlanningJobResponse> jobs = planningJobService.submitHorizon(from, to);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Ride plan generation started", jobs));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PlanningJobResponse>> getPlanningJob(@PathVariable Long jobId) {
+        return ResponseEntity.ok(ApiResponse.success(planningJobService.getJob(jobId)));
+    }
+
+    @PostMapping("/jobs/{jobId}/resume")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PlanningJobResponse>> resumePlanningJob(@PathVariable Long jobId) {
+        PlanningJobResponse job = planningJobService.resume(jobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Ride plan generation resumed", job));
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/plans", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamPlanningJobPlans(@PathVariable Long jobId) {
+        planningJobService.getJob(jobId);
+        StreamingResponseBody body = out -> planningJobService.streamPlans(jobId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @PostMapping("/simulate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PlanningSimulationResponse>> simulatePlans(
+            @Valid @RequestBody PlanningSimulationRequest request) {
+        PlanningSimulationResponse response = planningSimulationService.simulate(request);
+        return ResponseEntity.ok(ApiResponse.success("Simulation completed", response));
     }
 }
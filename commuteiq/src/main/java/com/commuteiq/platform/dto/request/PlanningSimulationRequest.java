@@ -0,0 +1,57 @@
+package com.commuteiq.platform.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlanningSimulationRequest {
+
+    @NotNull(message = "Date is required")
+    private LocalDate date;
+
+    @NotEmpty(message = "At least one scenario is required")
+    @Size(max = 16, message = "At most 16 scenarios per simulation")
+    @Valid
+    private List<Scenario> scenarios;
+
+    /**
+     * One parameter set; unset fields fall back to the configured defaults
+     * and the fleet available on the date.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Scenario {
+
+        @Size(max = 100)
+        private String name;
+
+        @Positive(message = "Distance threshold must be positive")
+        private Double distanceThresholdKm;
+
+        @Min(value = 1, message = "Max cluster size must be at least 1")
+        @Max(value = 50, message = "Max cluster size cannot exceed 50")
+        private Integer maxClusterSize;
+
+        @Min(value = 0, message = "Max vehicles cannot be negative")
+        private Integer maxVehicles;
+
+        // Hypothetical fleet replacing the available vehicles, one seat count per vehicle
+        private List<@Min(1) @Max(50) Integer> vehicleCapacities;
+
+        @Min(value = 0, message = "Driver count cannot be negative")
+        private Integer driverCount;
+
+        private Boolean localSearch;
+    }
+}
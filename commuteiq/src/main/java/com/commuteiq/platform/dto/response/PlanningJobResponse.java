@@ -0,0 +1,24 @@
+package com.commuteiq.platform.dto.response;
+
+import lombok.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlanningJobResponse {
+    private Long id;
+    private LocalDate date;
+    private String status;
+    private Integer totalPlans;
+    private Integer committedPlans;
+    private Integer committedRiders;
+    private Integer attempts;
+    private String errorMessage;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,36 @@
+package com.commuteiq.platform.dto.response;
+
+import lombok.*;
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlanningSimulationResponse {
+    private LocalDate date;
+    private int pendingRequests;
+    private int availableVehicles;
+    private int availableDrivers;
+    private List<ScenarioResult> scenarios;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ScenarioResult {
+        private String name;
+        private Double distanceThresholdKm;
+        private Integer maxClusterSize;
+        private int vehiclesUsed;
+        private int ridersPlanned;
+        private int unassignedRiders;
+        private int splitClusters;
+        private Double occupancyPercentage;
+        private Double totalDistanceKm;
+        private long elapsedMs;
+    }
+}
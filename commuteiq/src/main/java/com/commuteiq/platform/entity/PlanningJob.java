@@ -0,0 +1,62 @@
+package com.commuteiq.platform.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One ride plan generation run for a date. Progress is checkpointed in the
+ * same transaction as each committed chunk of plans, so after a failure
+ * {@code committedPlans} is exactly what is in the database, and a resumed
+ * run picks up the requests that are still PENDING.
+ */
+@Entity
+@Table(name = "planning_jobs", indexes = {
+        @Index(name = "idx_planning_job_date", columnList = "date"),
+        @Index(name = "idx_planning_job_status", columnList = "status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlanningJob extends Auditable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate date;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private PlanningJobStatus status = PlanningJobStatus.QUEUED;
+
+    @Column(name = "total_plans")
+    private Integer totalPlans;
+
+    @Column(name = "committed_plans", nullable = false)
+    @Builder.Default
+    private Integer committedPlans = 0;
+
+    @Column(name = "committed_riders", nullable = false)
+    @Builder.Default
+    private Integer committedRiders = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,8 @@
+package com.commuteiq.platform.entity;
+
+public enum PlanningJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
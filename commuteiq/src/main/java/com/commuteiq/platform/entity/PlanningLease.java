@@ -0,0 +1,35 @@
+package com.commuteiq.platform.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Cross-instance lease on ride plan generation for one date. At most one
+ * instance holds an unexpired lease per date; the holder renews it as it
+ * commits plans and deletes it when done, and a crashed holder's lease simply
+ * expires.
+ */
+@Entity
+@Table(name = "planning_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlanningLease {
+
+    @Id
+    private LocalDate date;
+
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(name = "acquired_at", nullable = false)
+    private LocalDateTime acquiredAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,199 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Greedy anchor-based clustering over a {@link PlanningSnapshot}.
+ *
+ * For each unassigned request (the anchor), later requests are added while:
+ * - their home is within the distance threshold of the anchor's home
+ * - their pickup window overlaps the anchor's window
+ * - gender matches the anchor whenever any member requires same-gender rides
+ * - they belong to the same office
+ * - the cluster hasn't reached the max size (bounded by vehicle capacity later)
+ *
+ * Candidate search is limited to requests in the anchor's spatial grid
+ * neighbourhood whose pickup windows can overlap the anchor's (see
+ * {@link PickupWindowIndex}), and the inner loop works on primitives only.
+ * Distances from the anchor to all its unassigned candidates are computed in
+ * one {@link GeoKernel} batch; only pairs within rounding distance of the
+ * threshold are re-checked with {@link PlanningSnapshot#isWithinKm}, which
+ * falls back to exact Haversine for cached distances near the threshold, so
+ * the clusters are exactly those of a pairwise pass.
+ */
+public final class ClusterBuilder {
+
+    private final double distanceThresholdKm;
+    private final int maxClusterSize;
+    private final double thresholdTolerance;
+
+    public ClusterBuilder(double distanceThresholdKm, int maxClusterSize) {
+        this.distanceThresholdKm = distanceThresholdKm;
+        this.maxClusterSize = maxClusterSize;
+        // Kernel error (< 1e-10 km below 19,000 km) with a wide relative margin
+        this.thresholdTolerance = distanceThresholdKm * 1e-6 + 1e-9;
+    }
+
+    /**
+     * Split the snapshot into partitions that can never share a cluster.
+     * Clusters never cross offices, and requests whose pickup windows cannot
+     * overlap any window of an earlier run start a new partition. An office with
+     * flexible employees stays in one partition, since those overlap every window.
+     *
+     * Each partition lists snapshot indices in ascending order, so clustering it
+     * on its own yields the same clusters as a pass over the whole snapshot.
+     */
+    public List<int[]> partition(PlanningSnapshot snapshot) {
+        int n = snapshot.size();
+        int offices = snapshot.officeCount();
+
+        int[] officeSize = new int[offices];
+        boolean[] officeHasFlexible = new boolean[offices];
+        for (int i = 0; i < n; i++) {
+            int office = snapshot.officeId(i);
+            officeSize[office]++;
+            if (snapshot.isFlexible(i))
+                officeHasFlexible[office] = true;
+        }
+
+        // Office IDs are interned in planning order, so offices come out in order of first request
+        int[][] byOffice = new int[offices][];
+        int[] fill = new int[offices];
+        for (int o = 0; o < offices; o++)
+            byOffice[o] = new int[officeSize[o]];
+        for (int i = 0; i < n; i++) {
+            int office = snapshot.officeId(i);
+            byOffice[office][fill[office]++] = i;
+        }
+
+        List<int[]> partitions = new ArrayList<>();
+        for (int o = 0; o < offices; o++) {
+            int[] members = byOffice[o];
+            if (officeHasFlexible[o]) {
+                partitions.add(members);
+                continue;
+            }
+
+            int runStart = 0;
+            int runEnd = Integer.MIN_VALUE;
+            for (int k = 0; k < members.length; k++) {
+                int i = members[k];
+                if (k > runStart && snapshot.pickupStart(i) > runEnd) {
+                    partitions.add(Arrays.copyOfRange(members, runStart, k));
+                    runStart = k;
+                    runEnd = Integer.MIN_VALUE;
+                }
+                runEnd = Math.max(runEnd, snapshot.pickupEnd(i));
+            }
+            partitions.add(Arrays.copyOfRange(members, runStart, members.length));
+        }
+        return partitions;
+    }
+
+    /**
+     * Greedily cluster the given snapshot indices (ascending).
+     */
+    public Clusters build(PlanningSnapshot snapshot, int[] members) {
+        int n = members.length;
+
+        // Index home locations once so each anchor only scans nearby cells
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = snapshot.latitude(members[i]);
+            longitudes[i] = snapshot.longitude(members[i]);
+        }
+        SpatialGridIndex grid = SpatialGridIndex.build(latitudes, longitudes, distanceThresholdKm);
+        PickupWindowIndex windows = PickupWindowIndex.build(snapshot, members);
+
+        GeoKernel kernel = GeoKernel.get();
+        int[] candidates = new int[n];
+        int[] pending = new int[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] zs = new double[n];
+        double[] distances = new double[n];
+        boolean[] assigned = new boolean[n];
+        int[] out = new int[n];
+        int[] offsets = new int[n + 1];
+        int clusters = 0;
+        int written = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (assigned[i])
+                continue;
+
+            int anchor = members[i];
+            assigned[i] = true;
+            offsets[clusters] = written;
+            out[written++] = anchor;
+            int size = 1;
+
+            int anchorStart = snapshot.pickupStart(anchor);
+            int anchorEnd = snapshot.pickupEnd(anchor);
+            int anchorOffice = snapshot.officeId(anchor);
+            int anchorGender = snapshot.genderCode(anchor);
+            boolean clusterRequiresSameGender = snapshot.requiresSameGender(anchor);
+
+            // Candidates come back in ascending order, so the greedy pass is unchanged
+            int candidateCount = grid.candidatesAfter(i, windows.lastOverlapping(i), windows.flexibleFrom(),
+                    candidates);
+            int pendingCount = 0;
+            for (int k = 0; k < candidateCount; k++) {
+                int j = candidates[k];
+                if (assigned[j])
+                    continue;
+                int candidate = members[j];
+                xs[pendingCount] = snapshot.unitX(candidate);
+                ys[pendingCount] = snapshot.unitY(candidate);
+                zs[pendingCount] = snapshot.unitZ(candidate);
+                pending[pendingCount++] = j;
+            }
+            kernel.distancesKm(snapshot.unitX(anchor), snapshot.unitY(anchor), snapshot.unitZ(anchor),
+                    xs, ys, zs, pendingCount, distances);
+
+            for (int k = 0; k < pendingCount; k++) {
+                if (size >= maxClusterSize)
+                    break;
+
+                int j = pending[k];
+                int candidate = members[j];
+
+                if (!withinThreshold(snapshot, anchor, candidate, distances[k]))
+                    continue;
+
+                // Still needed for windows ending before the anchor starts; flexible employees span the full day
+                if (snapshot.pickupStart(candidate) > anchorEnd || anchorStart > snapshot.pickupEnd(candidate))
+                    continue;
+
+                boolean candidateRequiresSameGender = snapshot.requiresSameGender(candidate);
+                if ((clusterRequiresSameGender || candidateRequiresSameGender)
+                        && snapshot.genderCode(candidate) != anchorGender)
+                    continue;
+
+                if (snapshot.officeId(candidate) != anchorOffice)
+                    continue;
+
+                out[written++] = candidate;
+                assigned[j] = true;
+                size++;
+                clusterRequiresSameGender |= candidateRequiresSameGender;
+            }
+
+            clusters++;
+        }
+        offsets[clusters] = written;
+
+        return new Clusters(out, Arrays.copyOf(offsets, clusters + 1), clusters);
+    }
+
+    private boolean withinThreshold(PlanningSnapshot snapshot, int anchor, int candidate, double kernelKm) {
+        if (kernelKm > distanceThresholdKm + thresholdTolerance)
+            return false;
+        if (kernelKm < distanceThresholdKm - thresholdTolerance)
+            return true;
+        return snapshot.isWithinKm(anchor, candidate, distanceThresholdKm);
+    }
+}
@@ -0,0 +1,410 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Local-search improvement of greedy clusters.
+ *
+ * Score = vehicle cost (in km) per cluster + length of each cluster's route,
+ * i.e. its stops ordered by {@link StopSequenceOptimizer} (run to
+ * convergence) plus the office leg when the office is known, which is what
+ * route planning later estimates. Emptying a cluster pays off whenever its
+ * riders fit elsewhere at less than one vehicle's worth of extra route. Each
+ * move re-optimizes the routes of the two or more clusters it touches and is
+ * kept only if their total shrinks:
+ * - dissolve: relocate every rider of a small cluster to other clusters
+ * - relocate: move one rider to the cluster where it lengthens the route least
+ * - swap: exchange two riders of different clusters
+ *
+ * Moves keep the greedy rules relative to each cluster's anchor (office,
+ * distance threshold, overlapping pickup windows, max size), and are stricter
+ * on gender: a cluster with any same-gender rider only takes riders of that
+ * gender. Anchors only move when their whole cluster is dissolved. Far-apart
+ * pairs are rejected by {@link PlanningSnapshot#mayBeWithinKm} before any
+ * exact distance is computed.
+ *
+ * Searches with different seeds visit clusters and riders in different orders
+ * and are independent, so the engine runs them as parallel restarts. Seed 0
+ * uses the natural order.
+ */
+public final class ClusterImprover {
+
+    private static final double EPSILON = 1e-9;
+
+    private final PlanningSnapshot snapshot;
+    private final SpatialGridIndex grid;
+    private final double distanceThresholdKm;
+    private final int maxClusterSize;
+    private final double vehicleCostKm;
+    private final double[][] offices;
+
+    /**
+     * @param offices {@code [latitude, longitude]} per office id, or null where unknown
+     */
+    public ClusterImprover(PlanningSnapshot snapshot, double distanceThresholdKm, int maxClusterSize,
+            double vehicleCostKm, double[][] offices) {
+        this.snapshot = snapshot;
+        this.distanceThresholdKm = distanceThresholdKm;
+        this.maxClusterSize = maxClusterSize;
+        this.vehicleCostKm = vehicleCostKm;
+        this.offices = offices;
+
+        double[] latitudes = new double[snapshot.size()];
+        double[] longitudes = new double[snapshot.size()];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = snapshot.latitude(i);
+            longitudes[i] = snapshot.longitude(i);
+        }
+        this.grid = SpatialGridIndex.build(latitudes, longitudes, distanceThresholdKm);
+    }
+
+    /**
+     * Score of a cluster list; lower is better.
+     */
+    public double score(Clusters clusters) {
+        double total = clusters.count() * vehicleCostKm;
+        for (int c = 0; c < clusters.count(); c++) {
+            total += routeKm(clusters.membersOf(c), clusters.size(c), new int[clusters.size(c)]);
+        }
+        return total;
+    }
+
+    private double routeKm(int[] riders, int count, int[] order) {
+        if (count == 0) {
+            return 0.0;
+        }
+        return StopSequenceOptimizer.optimize(snapshot, riders, count, offices[snapshot.officeId(riders[0])], order,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * Improve {@code initial} until no move helps or the deadline passes.
+     * Returns clusters ordered by anchor, each listing its anchor first.
+     */
+    public Clusters improve(Clusters initial, long seed, long deadlineNanos) {
+        return new Search(initial, seed).run(deadlineNanos);
+    }
+
+    private final class Search {
+
+        private final int[][] members;
+        private final int[] size;
+        private final int[] clusterOf;
+        private final int[] riders;
+        private final Random random;
+        private final int[] neighbours;
+        // Route length per cluster, and scratch for re-optimizing a changed cluster
+        private final double[] route;
+        private final int[] trial;
+        private final int[] order;
+        // Route change of the destination found by the last bestDestination call
+        private double destinationDelta;
+
+        private Search(Clusters initial, long seed) {
+            int count = initial.count();
+            members = new int[count][];
+            size = new int[count];
+            clusterOf = new int[snapshot.size()];
+            riders = new int[initial.memberCount()];
+            Arrays.fill(clusterOf, -1);
+
+            int r = 0;
+            for (int c = 0; c < count; c++) {
+                size[c] = initial.size(c);
+                members[c] = Arrays.copyOf(initial.membersOf(c), Math.max(maxClusterSize, size[c]));
+                for (int k = 0; k < size[c]; k++) {
+                    clusterOf[members[c][k]] = c;
+                    riders[r++] = members[c][k];
+                }
+            }
+            random = seed == 0 ? null : new Random(seed);
+            neighbours = new int[snapshot.size()];
+
+            int width = maxClusterSize + 1;
+            for (int c = 0; c < count; c++) {
+                width = Math.max(width, size[c] + 1);
+            }
+            trial = new int[width];
+            order = new int[width];
+            route = new double[count];
+            for (int c = 0; c < count; c++) {
+                route[c] = routeKm(members[c], size[c], order);
+            }
+        }
+
+        private Clusters run(long deadlineNanos) {
+            boolean improved = true;
+            while (improved && System.nanoTime() < deadlineNanos) {
+                improved = dissolvePass(deadlineNanos);
+                improved |= relocatePass(deadlineNanos);
+                improved |= swapPass(deadlineNanos);
+            }
+
+            List<int[]> result = new ArrayList<>();
+            for (int c = 0; c < members.length; c++) {
+                if (size[c] > 0)
+                    result.add(Arrays.copyOf(members[c], size[c]));
+            }
+            result.sort((a, b) -> Integer.compare(a[0], b[0]));
+            return Clusters.of(result);
+        }
+
+        /**
+         * Try to empty clusters, smallest first, by relocating all their riders.
+         */
+        private boolean dissolvePass(long deadlineNanos) {
+            Integer[] order = new Integer[members.length];
+            long[] keys = new long[members.length];
+            for (int c = 0; c < order.length; c++) {
+                order[c] = c;
+                keys[c] = random == null ? c : random.nextLong();
+            }
+            Arrays.sort(order, (a, b) -> size[a] != size[b]
+                    ? Integer.compare(size[a], size[b])
+                    : Long.compare(keys[a], keys[b]));
+
+            boolean improved = false;
+            int[] saved = new int[maxClusterSize];
+            int[] touched = new int[maxClusterSize];
+            double[] touchedRoute = new double[maxClusterSize];
+            for (int c : order) {
+                if (size[c] == 0)
+                    continue;
+                if (System.nanoTime() >= deadlineNanos)
+                    break;
+
+                int count = size[c];
+                if (saved.length < count) {
+                    saved = new int[count];
+                    touched = new int[count];
+                    touchedRoute = new double[count];
+                }
+                System.arraycopy(members[c], 0, saved, 0, count);
+
+                // Non-anchors first so the anchor is still in place while they leave
+                double delta = -vehicleCostKm - route[c];
+                int moved = 0;
+                for (int k = count - 1; k >= 0; k--) {
+                    int rider = saved[k];
+                    int destination = bestDestination(rider, c);
+                    if (destination < 0)
+                        break;
+                    touched[moved] = destination;
+                    touchedRoute[moved] = route[destination];
+                    delta += destinationDelta;
+                    move(rider, destination);
+                    route[destination] += destinationDelta;
+                    moved++;
+                }
+
+                if (moved == count && delta < -EPSILON) {
+                    route[c] = 0.0;
+                    improved = true;
+                    continue;
+                }
+
+                // Undo: take the moved riders back in their original order, restoring routes newest first
+                for (int k = count - 1; k >= count - moved; k--) {
+                    remove(saved[k]);
+                }
+                for (int m = moved - 1; m >= 0; m--) {
+                    route[touched[m]] = touchedRoute[m];
+                }
+                System.arraycopy(saved, 0, members[c], 0, count);
+                size[c] = count;
+                for (int k = 0; k < count; k++) {
+                    clusterOf[saved[k]] = c;
+                }
+            }
+            return improved;
+        }
+
+        private boolean relocatePass(long deadlineNanos) {
+            boolean improved = false;
+            for (int rider : shuffledRiders()) {
+                if (System.nanoTime() >= deadlineNanos)
+                    break;
+                int from = clusterOf[rider];
+                int anchor = members[from][0];
+                if (rider == anchor)
+                    continue;
+
+                int destination = bestDestination(rider, from);
+                if (destination < 0)
+                    continue;
+                double fromRoute = routeWithout(from, rider);
+                if (fromRoute - route[from] + destinationDelta < -EPSILON) {
+                    move(rider, destination);
+                    route[destination] += destinationDelta;
+                    route[from] = fromRoute;
+                    improved = true;
+                }
+            }
+            return improved;
+        }
+
+        private boolean swapPass(long deadlineNanos) {
+            boolean improved = false;
+            for (int x : shuffledRiders()) {
+                if (System.nanoTime() >= deadlineNanos)
+                    break;
+                int a = clusterOf[x];
+                int anchorA = members[a][0];
+                if (x == anchorA)
+                    continue;
+
+                int count = grid.neighbours(x, neighbours);
+                for (int k = 0; k < count; k++) {
+                    int y = neighbours[k];
+                    int b = clusterOf[y];
+                    if (b == a || b < 0)
+                        continue;
+                    int anchorB = members[b][0];
+                    if (y == anchorB)
+                        continue;
+                    if (!snapshot.mayBeWithinKm(x, anchorB, distanceThresholdKm)
+                            || !snapshot.mayBeWithinKm(y, anchorA, distanceThresholdKm))
+                        continue;
+
+                    if (!canJoin(x, b, y) || !canJoin(y, a, x))
+                        continue;
+                    double routeA = routeReplacing(a, x, y);
+                    double routeB = routeReplacing(b, y, x);
+                    if (routeA + routeB - route[a] - route[b] < -EPSILON) {
+                        replace(a, x, y);
+                        replace(b, y, x);
+                        route[a] = routeA;
+                        route[b] = routeB;
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        /**
+         * Cluster other than {@code from} that can take {@code rider} with the
+         * smallest increase of its route, or -1; the increase is left in
+         * {@link #destinationDelta}.
+         */
+        private int bestDestination(int rider, int from) {
+            int best = -1;
+            double bestDelta = Double.POSITIVE_INFINITY;
+            int count = grid.neighbours(rider, neighbours);
+            for (int k = 0; k < count; k++) {
+                int p = neighbours[k];
+                int c = clusterOf[p];
+                if (c < 0 || c == from || members[c][0] != p)
+                    continue;
+                if (!snapshot.mayBeWithinKm(rider, p, distanceThresholdKm) || !canJoin(rider, c, -1))
+                    continue;
+                double delta = routeWith(c, rider) - route[c];
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    best = c;
+                }
+            }
+            destinationDelta = bestDelta;
+            return best;
+        }
+
+        private double routeWith(int cluster, int rider) {
+            System.arraycopy(members[cluster], 0, trial, 0, size[cluster]);
+            trial[size[cluster]] = rider;
+            return routeKm(trial, size[cluster] + 1, order);
+        }
+
+        private double routeWithout(int cluster, int rider) {
+            int n = 0;
+            for (int k = 0; k < size[cluster]; k++) {
+                if (members[cluster][k] != rider)
+                    trial[n++] = members[cluster][k];
+            }
+            return routeKm(trial, n, order);
+        }
+
+        private double routeReplacing(int cluster, int rider, int replacement) {
+            for (int k = 0; k < size[cluster]; k++) {
+                int m = members[cluster][k];
+                trial[k] = m == rider ? replacement : m;
+            }
+            return routeKm(trial, size[cluster], order);
+        }
+
+        /**
+         * Whether {@code rider} may join {@code cluster}, ignoring member {@code leaving} (or -1).
+         */
+        private boolean canJoin(int rider, int cluster, int leaving) {
+            int occupied = leaving >= 0 ? size[cluster] - 1 : size[cluster];
+            if (size[cluster] == 0 || occupied >= maxClusterSize)
+                return false;
+
+            int anchor = members[cluster][0];
+            if (snapshot.officeId(rider) != snapshot.officeId(anchor))
+                return false;
+            if (!snapshot.mayBeWithinKm(rider, anchor, distanceThresholdKm)
+                    || !snapshot.isWithinKm(rider, anchor, distanceThresholdKm))
+                return false;
+            if (snapshot.pickupStart(rider) > snapshot.pickupEnd(anchor)
+                    || snapshot.pickupStart(anchor) > snapshot.pickupEnd(rider))
+                return false;
+
+            boolean sameGender = snapshot.requiresSameGender(rider);
+            for (int k = 0; k < size[cluster] && !sameGender; k++) {
+                int m = members[cluster][k];
+                sameGender = m != leaving && snapshot.requiresSameGender(m);
+            }
+            if (sameGender) {
+                int gender = snapshot.genderCode(rider);
+                for (int k = 0; k < size[cluster]; k++) {
+                    int m = members[cluster][k];
+                    if (m != leaving && snapshot.genderCode(m) != gender)
+                        return false;
+                }
+            }
+            return true;
+        }
+
+        private void move(int rider, int destination) {
+            remove(rider);
+            members[destination][size[destination]++] = rider;
+            clusterOf[rider] = destination;
+        }
+
+        private void remove(int rider) {
+            int c = clusterOf[rider];
+            int[] list = members[c];
+            int k = 0;
+            while (list[k] != rider)
+                k++;
+            System.arraycopy(list, k + 1, list, k, size[c] - k - 1);
+            size[c]--;
+            clusterOf[rider] = -1;
+        }
+
+        private void replace(int cluster, int rider, int replacement) {
+            int[] list = members[cluster];
+            int k = 0;
+            while (list[k] != rider)
+                k++;
+            list[k] = replacement;
+            clusterOf[replacement] = cluster;
+        }
+
+        private int[] shuffledRiders() {
+            if (random != null) {
+                for (int k = riders.length - 1; k > 0; k--) {
+                    int j = random.nextInt(k + 1);
+                    int tmp = riders[k];
+                    riders[k] = riders[j];
+                    riders[j] = tmp;
+                }
+            }
+            return riders;
+        }
+    }
+}
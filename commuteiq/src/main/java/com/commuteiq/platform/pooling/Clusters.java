@@ -0,0 +1,136 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact cluster list produced by the pooling engine. Members of cluster
+ * {@code c} are snapshot indices {@code members[offsets[c] .. offsets[c + 1])},
+ * the first of which is the cluster's anchor.
+ */
+public final class Clusters {
+
+    private final int[] members;
+    private final int[] offsets;
+    private final int count;
+
+    public Clusters(int[] members, int[] offsets, int count) {
+        this.members = members;
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int size(int cluster) {
+        return offsets[cluster + 1] - offsets[cluster];
+    }
+
+    public int member(int cluster, int position) {
+        return members[offsets[cluster] + position];
+    }
+
+    public int anchor(int cluster) {
+        return members[offsets[cluster]];
+    }
+
+    /**
+     * Copy of this cluster list with the same boundaries but different member
+     * order, e.g. after stop sequencing. {@code members} is used as-is.
+     */
+    public Clusters withMembers(int[] members) {
+        return new Clusters(members, offsets, count);
+    }
+
+    /**
+     * Index of the first member of {@code cluster} in the flat member array.
+     */
+    public int start(int cluster) {
+        return offsets[cluster];
+    }
+
+    /**
+     * Total number of clustered requests.
+     */
+    public int memberCount() {
+        return offsets[count];
+    }
+
+    /**
+     * Build a cluster list from explicit member arrays, in list order.
+     */
+    public static Clusters of(List<int[]> clusters) {
+        int total = 0;
+        for (int[] cluster : clusters) {
+            total += cluster.length;
+        }
+        int[] members = new int[total];
+        int[] offsets = new int[clusters.size() + 1];
+        int written = 0;
+        for (int c = 0; c < clusters.size(); c++) {
+            offsets[c] = written;
+            System.arraycopy(clusters.get(c), 0, members, written, clusters.get(c).length);
+            written += clusters.get(c).length;
+        }
+        offsets[clusters.size()] = written;
+        return new Clusters(members, offsets, clusters.size());
+    }
+
+    /**
+     * Members of {@code cluster} as a new array.
+     */
+    public int[] membersOf(int cluster) {
+        return Arrays.copyOfRange(members, offsets[cluster], offsets[cluster + 1]);
+    }
+
+    /**
+     * Merge independently built cluster lists into one ordered by anchor index,
+     * which is the order a single serial pass would have produced.
+     */
+    public static Clusters merge(List<Clusters> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+
+        int total = 0;
+        int totalMembers = 0;
+        for (Clusters part : parts) {
+            total += part.count;
+            totalMembers += part.memberCount();
+        }
+
+        // Sort (anchor, part, cluster) references by anchor
+        long[] refs = new long[total];
+        int[] partOf = new int[total];
+        int[] clusterOf = new int[total];
+        int r = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            Clusters part = parts.get(p);
+            for (int c = 0; c < part.count; c++) {
+                partOf[r] = p;
+                clusterOf[r] = c;
+                refs[r] = ((long) part.anchor(c) << 32) | r;
+                r++;
+            }
+        }
+        Arrays.sort(refs);
+
+        int[] members = new int[totalMembers];
+        int[] offsets = new int[total + 1];
+        int written = 0;
+        for (int k = 0; k < total; k++) {
+            int ref = (int) refs[k];
+            Clusters part = parts.get(partOf[ref]);
+            int c = clusterOf[ref];
+            offsets[k] = written;
+            int from = part.offsets[c];
+            int length = part.size(c);
+            System.arraycopy(part.members, from, members, written, length);
+            written += length;
+        }
+        offsets[total] = written;
+        return new Clusters(members, offsets, total);
+    }
+}
@@ -0,0 +1,136 @@
+package com.commuteiq.platform.pooling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide home-to-home distance cache, one {@link OfficeDistanceMatrix}
+ * per office, shared by every planning, re-planning and what-if run.
+ *
+ * Distances don't depend on the date, so entries are keyed by office and
+ * employee slot only. {@link #attach} binds a snapshot's requests to slots; an
+ * employee whose home moved is given a fresh slot and the old slot's entries
+ * are released. The first {@code app.pooling.distance-cache.dense-slots}
+ * slots of an office share a dense matrix, so small offices are cached in
+ * full; beyond that each slot keeps at most
+ * {@code app.pooling.distance-cache.max-entries-per-slot} distances (further
+ * pairs are recomputed on every lookup), so memory grows with the employees
+ * and pairs planning actually uses, never with the square of the office size.
+ * Once dead slots outnumber live ones the office
+ * starts over with an empty store, which costs one cold run and no copying.
+ */
+@Component
+@Slf4j
+public class DistanceMatrixCache {
+
+    private static final int MIN_DEAD_SLOTS_TO_RESET = 1024;
+
+    private final Map<String, OfficeSlots> offices = new ConcurrentHashMap<>();
+
+    @Value("${app.pooling.distance-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.pooling.distance-cache.dense-slots:1024}")
+    private int denseSlots;
+
+    @Value("${app.pooling.distance-cache.max-entries-per-slot:256}")
+    private int maxEntriesPerSlot;
+
+    /**
+     * Return a copy of {@code snapshot} whose {@link PlanningSnapshot#distanceKm}
+     * reads through the cache, or {@code snapshot} itself when disabled.
+     */
+    public PlanningSnapshot attach(PlanningSnapshot snapshot) {
+        if (!enabled || snapshot.size() == 0) {
+            return snapshot;
+        }
+
+        int[][] byOffice = new int[snapshot.officeCount()][];
+        int[] officeSize = new int[snapshot.officeCount()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            officeSize[snapshot.officeId(i)]++;
+        }
+        for (int o = 0; o < byOffice.length; o++) {
+            byOffice[o] = new int[officeSize[o]];
+            officeSize[o] = 0;
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            int o = snapshot.officeId(i);
+            byOffice[o][officeSize[o]++] = i;
+        }
+
+        OfficeDistanceMatrix[] matrices = new OfficeDistanceMatrix[byOffice.length];
+        int[] slots = new int[snapshot.size()];
+        for (int o = 0; o < byOffice.length; o++) {
+            OfficeSlots office = offices.computeIfAbsent(snapshot.officeName(o), OfficeSlots::new);
+            synchronized (office) {
+                matrices[o] = office.bind(snapshot, byOffice[o], slots);
+            }
+        }
+        return snapshot.withDistanceMatrices(matrices, slots);
+    }
+
+    /**
+     * Forget the cached location of an employee, e.g. after their home or
+     * office changed. Other employees' entries are kept.
+     */
+    public void evictEmployee(String office, long employeeId) {
+        OfficeSlots slots = office != null ? offices.get(office) : null;
+        if (slots != null) {
+            synchronized (slots) {
+                Integer slot = slots.slotOf.remove(employeeId);
+                if (slot != null) {
+                    slots.matrix.release(slot);
+                }
+            }
+        }
+    }
+
+    private final class OfficeSlots {
+
+        private final String office;
+        private final Map<Long, Integer> slotOf = new HashMap<>();
+        private OfficeDistanceMatrix matrix;
+
+        private OfficeSlots(String office) {
+            this.office = office;
+        }
+
+        private OfficeDistanceMatrix bind(PlanningSnapshot snapshot, int[] members, int[] slots) {
+            if (matrix == null || matrix.used() - slotOf.size() > Math.max(slotOf.size(), MIN_DEAD_SLOTS_TO_RESET)) {
+                reset();
+            }
+
+            for (int i : members) {
+                Integer slot = slotOf.get(snapshot.employeeId(i));
+                if (slot == null || !matrix.isAt(slot, snapshot.latitude(i), snapshot.longitude(i))) {
+                    if (slot != null) {
+                        matrix.release(slot);
+                    }
+                    slot = matrix.addSlot(snapshot.latitude(i), snapshot.longitude(i));
+                    slotOf.put(snapshot.employeeId(i), slot);
+                }
+                slots[i] = slot;
+            }
+            return matrix;
+        }
+
+        /**
+         * Start over with an empty store; snapshots already attached keep
+         * reading the previous one.
+         */
+        private void reset() {
+            if (matrix != null) {
+                log.debug("Distance cache for office {} reset: {} live of {} slots", office, slotOf.size(),
+                        matrix.used());
+            }
+            slotOf.clear();
+            matrix = new OfficeDistanceMatrix(denseSlots, maxEntriesPerSlot);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.commuteiq.platform.pooling;
+
+/**
+ * Great-circle distance helpers shared by the pooling engine and live
+ * location tracking.
+ *
+ * - {@link #haversineKm} is the reference distance every other helper is
+ * measured against
+ * - {@link #mayBeWithinKm} is an equirectangular pre-filter on precomputed
+ * {@code cos(latitude)} that rejects far-apart pairs with a few
+ * multiplications and no trigonometry
+ * - {@link GeoKernel} computes one-to-many distances over primitive arrays
+ *
+ * Equirectangular error: with angular differences {@code dLat}, {@code dLon}
+ * (radians, dLon wrapped to [-pi, pi]) and {@code e = sqrt(dLat^2 +
+ * cos(lat1) cos(lat2) dLon^2)}, the Haversine distance d satisfies
+ * {@code R e (1 - m^2/24) <= d <= R e (1 + e^2/20)} for d up to ~120 km, where
+ * {@code m = max(|dLat|, |dLon|)}. Below 10 km at |latitude| <= 70 degrees
+ * the approximation stays within 1e-6 relative of d. The pre-filter only rejects
+ * pairs whose lower bound exceeds the threshold by a 1e-6 relative margin,
+ * so it never rejects a pair Haversine (or a float-rounded cached Haversine)
+ * would accept.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Covers float-rounded cached distances (~6e-8 relative) and rounding here
+    private static final double FILTER_MARGIN = 1e-6;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * Haversine formula to compute distance in km between two lat/lon points.
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * {@code cos(latitude)} for {@link #mayBeWithinKm} and
+     * {@link #equirectangularKm}; compute once per point.
+     */
+    public static double cosLatitude(double latitude) {
+        return Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * Equirectangular approximation of {@link #haversineKm} in km; see the
+     * class comment for its error bounds.
+     */
+    public static double equirectangularKm(double lat1, double lon1, double cosLat1, double lat2, double lon2,
+            double cosLat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = wrappedLongitudeDelta(lon1, lon2);
+        return EARTH_RADIUS_KM * Math.sqrt(dLat * dLat + cosLat1 * cosLat2 * dLon * dLon);
+    }
+
+    /**
+     * False only if the points are certainly more than {@code thresholdKm}
+     * apart; true pairs still need an exact check.
+     */
+    public static boolean mayBeWithinKm(double lat1, double lon1, double cosLat1, double lat2, double lon2,
+            double cosLat2, double thresholdKm) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double limit = thresholdKm * (1 + FILTER_MARGIN) / EARTH_RADIUS_KM;
+        // R |dLat| alone is a lower bound on the distance; skips the longitude math for most far pairs
+        if (Math.abs(dLat) * (1 - dLat * dLat / 24) > limit) {
+            return false;
+        }
+        double dLon = wrappedLongitudeDelta(lon1, lon2);
+        double m = Math.max(Math.abs(dLat), Math.abs(dLon));
+        double shrink = 1 - m * m / 24;
+        double e2 = dLat * dLat + cosLat1 * cosLat2 * dLon * dLon;
+        return e2 * shrink * shrink <= limit * limit;
+    }
+
+    private static double wrappedLongitudeDelta(double lon1, double lon2) {
+        double dLon = Math.abs(Math.toRadians(lon2 - lon1));
+        return dLon > Math.PI ? 2 * Math.PI - dLon : dLon;
+    }
+}
@@ -0,0 +1,105 @@
+package com.commuteiq.platform.pooling;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batched one-to-many great-circle distances over primitive arrays.
+ *
+ * Points are given as unit vectors {@code (cos lat cos lon, cos lat sin lon,
+ * sin lat)}, computed once per point with {@link #toUnitVectors}. The distance
+ * is then {@code 2 R asin(|p - q| / 2)}: a few multiply-adds per pair plus one
+ * {@code asin}, instead of Haversine's trigonometry. It is the same quantity
+ * as {@link GeoDistance#haversineKm}; measured against it over random pairs,
+ * the absolute difference stays below 1e-10 km up to 19,000 km. Closer to
+ * antipodal points both formulas lose precision and the difference grows to
+ * about 1e-4 km, which no planning distance comes near.
+ *
+ * {@link #get()} returns a JDK Vector API implementation when the
+ * {@code jdk.incubator.vector} module is present (start the JVM with
+ * {@code --add-modules jdk.incubator.vector}) and a scalar one otherwise.
+ * Set {@code -Dcommuteiq.geo.vector=false} to force the scalar kernel.
+ */
+@Slf4j
+public abstract class GeoKernel {
+
+    private static final GeoKernel SCALAR = new Scalar();
+    private static final GeoKernel DEFAULT = load();
+
+    public static GeoKernel get() {
+        return DEFAULT;
+    }
+
+    public static GeoKernel scalar() {
+        return SCALAR;
+    }
+
+    public abstract String name();
+
+    /**
+     * Write to {@code out[k]} the distance in km from unit vector {@code (x, y, z)}
+     * to {@code (xs[k], ys[k], zs[k])}, for every {@code k < count}.
+     */
+    public abstract void distancesKm(double x, double y, double z, double[] xs, double[] ys, double[] zs,
+            int count, double[] out);
+
+    /**
+     * Fill {@code xs}, {@code ys}, {@code zs} with the unit vectors of the given
+     * points (degrees).
+     */
+    public static void toUnitVectors(double[] latitudes, double[] longitudes, double[] xs, double[] ys,
+            double[] zs) {
+        for (int i = 0; i < latitudes.length; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double lon = Math.toRadians(longitudes[i]);
+            double cosLat = Math.cos(lat);
+            xs[i] = cosLat * Math.cos(lon);
+            ys[i] = cosLat * Math.sin(lon);
+            zs[i] = Math.sin(lat);
+        }
+    }
+
+    /**
+     * Turn half chord lengths into great-circle distances in place.
+     */
+    static void halfChordsToKm(double[] out, int count) {
+        for (int k = 0; k < count; k++) {
+            out[k] = 2 * GeoDistance.EARTH_RADIUS_KM * Math.asin(Math.min(1.0, out[k]));
+        }
+    }
+
+    private static GeoKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("commuteiq.geo.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            GeoKernel kernel = (GeoKernel) Class.forName("com.commuteiq.platform.pooling.VectorGeoKernel")
+                    .getDeclaredConstructor().newInstance();
+            log.info("Using {} geo-distance kernel", kernel.name());
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector geo-distance kernel unavailable, using scalar: {}", e.toString());
+            return SCALAR;
+        }
+    }
+
+    private static final class Scalar extends GeoKernel {
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public void distancesKm(double x, double y, double z, double[] xs, double[] ys, double[] zs, int count,
+                double[] out) {
+            for (int k = 0; k < count; k++) {
+                double dx = xs[k] - x;
+                double dy = ys[k] - y;
+                double dz = zs[k] - z;
+                out[k] = Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5;
+            }
+            halfChordsToKm(out, count);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.commuteiq.platform.pooling;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lazily filled store of home-to-home distances for one office.
+ *
+ * Each employee location occupies a slot whose coordinates never change; an
+ * employee who moves gets a new slot, so a concurrent reader can never store a
+ * distance computed from stale coordinates under a live slot.
+ *
+ * - Dense tier: pairs among the first {@code denseSlots} slots live in a
+ * triangular {@code float} matrix, one row per slot allocated with the slot,
+ * so a small office is cached in full at 4 bytes per pair
+ * - Sparse tier: planning only ever asks for pairs that are close (anchor
+ * checks and stops of one cluster), so every other pair is stored once, in an
+ * open-addressing table owned by its lower slot, and memory grows with the
+ * pairs actually looked up rather than with the square of the office
+ *
+ * A sparse table holds at most {@code maxEntriesPerSlot} pairs. Nothing is
+ * evicted when it is full: the pairs already stored stay, and further pairs of
+ * that slot are not stored but computed on every lookup. Adding a slot never
+ * copies existing entries.
+ *
+ * Entries are kept as {@code float} (relative error below 1e-7, well under GPS
+ * precision). Every lookup returns the float-rounded value, cold or warm,
+ * cached or over the cap, so results do not depend on what was cached.
+ * Threshold checks that must agree with exact Haversine re-check borderline
+ * pairs, see {@link PlanningSnapshot#isWithinKm}.
+ *
+ * Lookups may run concurrently with each other and with slot allocation.
+ * Concurrent lookups may compute the same entry twice or lose an entry while a
+ * table grows, which is harmless. Dense rows are read and written without
+ * fences: a value is either seen or recomputed, and any value stored under a
+ * slot is right for it.
+ *
+ * The per-slot entry counts are approximate. {@link #grow} resets a count to
+ * the entries it copied, while a concurrent {@link #store} may still land in
+ * the old table (the entry is lost but counted) or count an entry in the new
+ * table before the reset (the entry is kept but not counted). Each race moves
+ * the count by one per writer in flight, so a slot may stop storing slightly
+ * before or after {@code maxEntriesPerSlot} pairs and a table may end up
+ * slightly over half full; probes are bounded by the table length, so lookups
+ * stay correct either way.
+ */
+public final class OfficeDistanceMatrix {
+
+    // Slots are allocated in blocks so growing never copies coordinates or tables
+    private static final int BLOCK_SHIFT = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int INITIAL_TABLE = 8;
+
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int denseSlots;
+    private final int maxEntriesPerSlot;
+    private volatile Block[] blocks = new Block[0];
+    private int used;
+
+    /**
+     * @param denseSlots        slots whose pairs are kept in the dense tier
+     * @param maxEntriesPerSlot cap on the sparse pairs stored per slot
+     */
+    public OfficeDistanceMatrix(int denseSlots, int maxEntriesPerSlot) {
+        this.denseSlots = Math.max(0, denseSlots);
+        this.maxEntriesPerSlot = Math.max(1, maxEntriesPerSlot);
+    }
+
+    public double distanceKm(int a, int b) {
+        if (a == b) {
+            return 0.0;
+        }
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        Block[] current = blocks;
+        Block owner = current[lo >>> BLOCK_SHIFT];
+        int index = lo & BLOCK_MASK;
+        Block other = current[hi >>> BLOCK_SHIFT];
+        int otherIndex = hi & BLOCK_MASK;
+
+        if (hi < denseSlots) {
+            float[] row = other.rows[otherIndex];
+            float cached = row[lo];
+            // All-zero bits mark a missing entry; a zero distance is stored as -0.0f and read back as 0.0f
+            if (Float.floatToRawIntBits(cached) != 0) {
+                return Math.abs(cached);
+            }
+            float d = (float) GeoDistance.haversineKm(owner.latitudes[index], owner.longitudes[index],
+                    other.latitudes[otherIndex], other.longitudes[otherIndex]);
+            row[lo] = d == 0f ? -0f : d;
+            return d;
+        }
+
+        long[] table = owner.tables.get(index);
+        if (table != null) {
+            int mask = table.length - 1;
+            for (int probe = 0, h = hash(hi) & mask; probe < table.length; probe++, h = (h + 1) & mask) {
+                long entry = (long) ENTRIES.getAcquire(table, h);
+                if (entry == 0L) {
+                    break;
+                }
+                if ((int) (entry >>> 32) == hi + 1) {
+                    return Float.intBitsToFloat((int) entry);
+                }
+            }
+        }
+
+        float d = (float) GeoDistance.haversineKm(owner.latitudes[index], owner.longitudes[index],
+                other.latitudes[otherIndex], other.longitudes[otherIndex]);
+        store(owner, index, hi, d);
+        return d;
+    }
+
+    /**
+     * Number of slots handed out so far, live or not.
+     */
+    public int used() {
+        return used;
+    }
+
+    /**
+     * Take the next free slot for a location. Callers must serialise slot
+     * allocation; lookups may run concurrently.
+     */
+    int addSlot(double latitude, double longitude) {
+        int block = used >>> BLOCK_SHIFT;
+        Block[] current = blocks;
+        if (block == current.length) {
+            Block[] next = Arrays.copyOf(current, block + 1);
+            next[block] = new Block();
+            current = next;
+        }
+        Block owner = current[block];
+        owner.latitudes[used & BLOCK_MASK] = latitude;
+        owner.longitudes[used & BLOCK_MASK] = longitude;
+        if (used < denseSlots) {
+            owner.rows[used & BLOCK_MASK] = new float[used];
+        }
+        // Volatile write publishes the coordinates with the slot
+        blocks = current;
+        return used++;
+    }
+
+    /**
+     * Drop the sparse distances a dead slot owns. Its dense row and the pairs
+     * it shares with lower slots stay until the matrix is replaced, but are
+     * never looked up again.
+     */
+    void release(int slot) {
+        Block owner = blocks[slot >>> BLOCK_SHIFT];
+        owner.tables.set(slot & BLOCK_MASK, null);
+        owner.counts.set(slot & BLOCK_MASK, 0);
+    }
+
+    boolean isAt(int slot, double latitude, double longitude) {
+        Block owner = blocks[slot >>> BLOCK_SHIFT];
+        return owner.latitudes[slot & BLOCK_MASK] == latitude && owner.longitudes[slot & BLOCK_MASK] == longitude;
+    }
+
+    private void store(Block owner, int index, int hi, float d) {
+        long[] table = owner.tables.get(index);
+        if (table == null) {
+            owner.tables.compareAndSet(index, null, new long[INITIAL_TABLE]);
+            table = owner.tables.get(index);
+            if (table == null) {
+                return;
+            }
+        }
+        // Keep tables at most half full so probes always reach an empty entry
+        int count = owner.counts.get(index);
+        if (count >= maxEntriesPerSlot) {
+            return;
+        }
+        if (2 * (count + 1) > table.length) {
+            table = grow(owner, index, table);
+        }
+
+        long entry = ((long) (hi + 1) << 32) | (Float.floatToRawIntBits(d) & 0xffffffffL);
+        int mask = table.length - 1;
+        for (int probe = 0, h = hash(hi) & mask; probe < table.length; probe++, h = (h + 1) & mask) {
+            long existing = (long) ENTRIES.getAcquire(table, h);
+            if (existing == 0L) {
+                if (ENTRIES.compareAndSet(table, h, 0L, entry)) {
+                    owner.counts.incrementAndGet(index);
+                    return;
+                }
+                existing = (long) ENTRIES.getAcquire(table, h);
+            }
+            if ((int) (existing >>> 32) == hi + 1) {
+                return;
+            }
+        }
+    }
+
+    private long[] grow(Block owner, int index, long[] table) {
+        long[] grown = new long[table.length * 2];
+        int mask = grown.length - 1;
+        int copied = 0;
+        for (int k = 0; k < table.length; k++) {
+            long entry = (long) ENTRIES.getAcquire(table, k);
+            if (entry != 0L) {
+                int h = hash((int) (entry >>> 32) - 1) & mask;
+                while (grown[h] != 0L) {
+                    h = (h + 1) & mask;
+                }
+                grown[h] = entry;
+                copied++;
+            }
+        }
+        if (owner.tables.compareAndSet(index, table, grown)) {
+            owner.counts.set(index, copied);
+            return grown;
+        }
+        long[] winner = owner.tables.get(index);
+        return winner != null ? winner : grown;
+    }
+
+    private static int hash(int slot) {
+        int h = slot * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Block {
+
+        private final double[] latitudes = new double[BLOCK_SIZE];
+        private final double[] longitudes = new double[BLOCK_SIZE];
+        private final float[][] rows = new float[BLOCK_SIZE][];
+        private final AtomicReferenceArray<long[]> tables = new AtomicReferenceArray<>(BLOCK_SIZE);
+        private final AtomicIntegerArray counts = new AtomicIntegerArray(BLOCK_SIZE);
+    }
+}
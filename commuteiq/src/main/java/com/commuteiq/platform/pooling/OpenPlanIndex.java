@@ -0,0 +1,403 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.repository.RidePlanEmployeeRepository;
+import com.commuteiq.platform.repository.projection.OpenPlanStopRow;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of SCHEDULED ride plans per date, used to add late riders to
+ * an existing plan or free a seat without re-running the pooling engine.
+ *
+ * A date is loaded from the database with a single query on first use and then
+ * kept in step with the online changes made through it. Callers mutate the
+ * index inside their transaction; if that transaction does not commit, the
+ * date is evicted and reloaded on next use, so the index never runs ahead of
+ * the database. Full plan generation evicts the date once it completes, and
+ * past dates are dropped shortly after midnight.
+ *
+ * The index is per instance and only picks candidates: other instances change
+ * the same plans, so callers lock the chosen plan's row and check it against
+ * {@link Insertion#getEmployeeIdsBefore()} / {@link Removal#getEmployeeIdsBefore()}
+ * before writing, and {@link #evict} the date when the database disagrees.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OpenPlanIndex {
+
+    private final RidePlanEmployeeRepository ridePlanEmployeeRepository;
+    private final OfficeLocationProperties officeLocationProperties;
+
+    private final Map<LocalDate, DatePlans> plansByDate = new ConcurrentHashMap<>();
+
+    @Value("${app.pooling.distance-threshold-km:2.0}")
+    private double distanceThresholdKm;
+
+    /**
+     * Reserve a seat for {@code rider} on the compatible plan with the cheapest
+     * insertion into its stop sequence. A plan is compatible when it is for the
+     * rider's office, has a free seat, the rider's pickup window overlaps every
+     * current rider's window, the rider's home is within the distance threshold
+     * of at least one stop, and the same-gender rule holds for every rider.
+     */
+    public Optional<Insertion> reserveSeat(LocalDate date, OpenStop rider) {
+        DatePlans plans = plansFor(date);
+        synchronized (plans) {
+            if (plans.byEmployee.containsKey(rider.employeeId)) {
+                return Optional.empty();
+            }
+            OpenPlan best = null;
+            int bestPosition = -1;
+            double bestDelta = Double.POSITIVE_INFINITY;
+
+            for (OpenPlan plan : plans.byOffice.getOrDefault(rider.office, List.of())) {
+                if (plan.stops.size() >= plan.capacity || !plan.accepts(rider, distanceThresholdKm))
+                    continue;
+                for (int gap = 0; gap <= plan.stops.size(); gap++) {
+                    double delta = plan.insertionDelta(rider, gap);
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        best = plan;
+                        bestPosition = gap;
+                    }
+                }
+            }
+
+            if (best == null) {
+                return Optional.empty();
+            }
+
+            List<Long> before = best.employeeIds();
+            best.stops.add(bestPosition, rider);
+            best.distanceKm = best.routeKm();
+            plans.byEmployee.put(rider.employeeId, best);
+            evictOnRollback(date);
+            return Optional.of(new Insertion(best.planId, bestPosition + 1, best.distanceKm, before));
+        }
+    }
+
+    /**
+     * Remove {@code employeeId} from the SCHEDULED plan it rides on for
+     * {@code date}, if any. Plans left without riders are dropped from the index.
+     */
+    public Optional<Removal> releaseSeat(LocalDate date, long employeeId) {
+        DatePlans plans = plansFor(date);
+        synchronized (plans) {
+            OpenPlan plan = plans.byEmployee.remove(employeeId);
+            if (plan == null) {
+                return Optional.empty();
+            }
+
+            List<Long> before = plan.employeeIds();
+            int position = plan.indexOf(employeeId);
+            plan.stops.remove(position);
+            plan.distanceKm = plan.routeKm();
+            if (plan.stops.isEmpty()) {
+                plans.byOffice.get(plan.office).remove(plan);
+            }
+            evictOnRollback(date);
+            return Optional.of(new Removal(plan.planId, position + 1, plan.distanceKm, plan.stops.size(),
+                    before));
+        }
+    }
+
+    /**
+     * Drop {@code date} now, e.g. when the database shows that another
+     * instance changed its plans; it is reloaded on next use.
+     */
+    public void evict(LocalDate date) {
+        plansByDate.remove(date);
+    }
+
+    /**
+     * Drop {@code date} once the current transaction completes (or now, outside
+     * a transaction), e.g. after plans were generated for it in bulk.
+     */
+    public void evictAfterCompletion(LocalDate date) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            plansByDate.remove(date);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                plansByDate.remove(date);
+            }
+        });
+    }
+
+    private void evictOnRollback(LocalDate date) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    plansByDate.remove(date);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop dates that have passed; their plans can no longer change.
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void evictPastDates() {
+        LocalDate today = LocalDate.now();
+        plansByDate.keySet().removeIf(d -> d.isBefore(today));
+    }
+
+    private DatePlans plansFor(LocalDate date) {
+        DatePlans plans = plansByDate.get(date);
+        if (plans != null) {
+            return plans;
+        }
+        // Queried outside the map so no bin lock is held during the round-trip; a concurrent load of the same date
+        // is discarded in favour of whichever was installed first
+        DatePlans loaded = load(date);
+        plans = plansByDate.putIfAbsent(date, loaded);
+        return plans != null ? plans : loaded;
+    }
+
+    private DatePlans load(LocalDate date) {
+        List<OpenPlanStopRow> rows = ridePlanEmployeeRepository.findStopRowsByDateAndStatus(date,
+                RidePlanStatus.SCHEDULED);
+
+        DatePlans plans = new DatePlans();
+        OpenPlan current = null;
+        for (OpenPlanStopRow row : rows) {
+            if (current == null || current.planId != row.getRidePlanId()) {
+                current = new OpenPlan(row.getRidePlanId(), row.getOfficeLocation(), row.getCapacity(),
+                        officeCoordinates(row.getOfficeLocation()));
+                plans.byOffice.computeIfAbsent(current.office, k -> new ArrayList<>()).add(current);
+            }
+            OpenStop stop = OpenStop.of(row.getEmployeeId(), row.getHomeLatitude(), row.getHomeLongitude(),
+                    row.getOfficeLocation(), row.getGender(), row.getPickupStartTime(), row.getPickupEndTime(),
+                    row.getSameGenderRequired());
+            current.stops.add(stop);
+            plans.byEmployee.put(stop.employeeId, current);
+        }
+        for (List<OpenPlan> officePlans : plans.byOffice.values()) {
+            for (OpenPlan plan : officePlans) {
+                plan.distanceKm = plan.routeKm();
+            }
+        }
+
+        log.debug("Loaded {} open ride plans for date: {}", plans.byOffice.values().stream()
+                .mapToInt(List::size).sum(), date);
+        return plans;
+    }
+
+    private double[] officeCoordinates(String office) {
+        List<Double> coordinates = officeLocationProperties.getOfficeCoordinates().get(office);
+        return coordinates != null && coordinates.size() == 2
+                ? new double[] { coordinates.get(0), coordinates.get(1) }
+                : null;
+    }
+
+    /**
+     * Rider data needed to check compatibility with an open plan.
+     */
+    public static final class OpenStop {
+
+        private final long employeeId;
+        private final double latitude;
+        private final double longitude;
+        private final double cosLatitude;
+        private final String office;
+        private final String gender;
+        private final int pickupStart;
+        private final int pickupEnd;
+        private final boolean sameGenderRequired;
+
+        private OpenStop(long employeeId, double latitude, double longitude, String office, String gender,
+                int pickupStart, int pickupEnd, boolean sameGenderRequired) {
+            this.employeeId = employeeId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.cosLatitude = GeoDistance.cosLatitude(latitude);
+            this.office = office;
+            this.gender = gender;
+            this.pickupStart = pickupStart;
+            this.pickupEnd = pickupEnd;
+            this.sameGenderRequired = sameGenderRequired;
+        }
+
+        /**
+         * Riders without a pickup window are flexible and overlap any window,
+         * as in {@link PlanningSnapshot}.
+         */
+        public static OpenStop of(long employeeId, double latitude, double longitude, String office,
+                String gender, LocalTime pickupStartTime, LocalTime pickupEndTime, Boolean sameGenderRequired) {
+            boolean flexible = pickupStartTime == null;
+            return new OpenStop(employeeId, latitude, longitude, office, gender.toUpperCase(Locale.ROOT),
+                    flexible ? 0 : toMinutes(pickupStartTime),
+                    flexible ? PlanningSnapshot.FULL_DAY_MINUTES : toMinutes(pickupEndTime),
+                    Boolean.TRUE.equals(sameGenderRequired));
+        }
+
+        private static int toMinutes(LocalTime time) {
+            return time.getHour() * 60 + time.getMinute();
+        }
+
+        private double distanceKm(OpenStop other) {
+            return GeoDistance.haversineKm(latitude, longitude, other.latitude, other.longitude);
+        }
+
+        private boolean isWithinKm(OpenStop other, double thresholdKm) {
+            return GeoDistance.mayBeWithinKm(latitude, longitude, cosLatitude, other.latitude, other.longitude,
+                    other.cosLatitude, thresholdKm) && distanceKm(other) <= thresholdKm;
+        }
+    }
+
+    /**
+     * Seat reserved on plan {@code ridePlanId} at 1-based {@code stopOrder};
+     * {@code distanceKm} is the plan's new route length. {@code employeeIdsBefore}
+     * are the plan's riders in stop order as this index saw them.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Insertion {
+        private final long ridePlanId;
+        private final int stopOrder;
+        private final double distanceKm;
+        private final List<Long> employeeIdsBefore;
+    }
+
+    /**
+     * Seat freed on plan {@code ridePlanId} at 1-based {@code stopOrder};
+     * {@code remainingRiders} is zero when the plan is now empty.
+     * {@code employeeIdsBefore} are the plan's riders in stop order as this
+     * index saw them.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Removal {
+        private final long ridePlanId;
+        private final int stopOrder;
+        private final double distanceKm;
+        private final int remainingRiders;
+        private final List<Long> employeeIdsBefore;
+    }
+
+    private static final class DatePlans {
+        private final Map<String, List<OpenPlan>> byOffice = new HashMap<>();
+        private final Map<Long, OpenPlan> byEmployee = new HashMap<>();
+    }
+
+    private static final class OpenPlan {
+
+        private final long planId;
+        private final String office;
+        private final int capacity;
+        private final double[] officeCoordinates;
+        private final List<OpenStop> stops = new ArrayList<>();
+        private double distanceKm;
+
+        private OpenPlan(long planId, String office, int capacity, double[] officeCoordinates) {
+            this.planId = planId;
+            this.office = office;
+            this.capacity = capacity;
+            this.officeCoordinates = officeCoordinates;
+        }
+
+        private boolean accepts(OpenStop rider, double distanceThresholdKm) {
+            boolean sameGender = rider.sameGenderRequired;
+            boolean near = false;
+            for (OpenStop stop : stops) {
+                if (rider.pickupStart > stop.pickupEnd || stop.pickupStart > rider.pickupEnd)
+                    return false;
+                sameGender |= stop.sameGenderRequired;
+                near = near || rider.isWithinKm(stop, distanceThresholdKm);
+            }
+            if (!near)
+                return false;
+            if (sameGender) {
+                for (OpenStop stop : stops) {
+                    if (!stop.gender.equals(rider.gender))
+                        return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Extra route length from inserting {@code rider} before stop {@code gap}
+         * (or after the last stop, before the office leg, when gap == size).
+         */
+        private double insertionDelta(OpenStop rider, int gap) {
+            OpenStop prev = gap > 0 ? stops.get(gap - 1) : null;
+            OpenStop next = gap < stops.size() ? stops.get(gap) : null;
+            double delta = 0.0;
+            if (prev != null) {
+                delta += prev.distanceKm(rider);
+            }
+            if (next != null) {
+                delta += rider.distanceKm(next);
+                if (prev != null) {
+                    delta -= prev.distanceKm(next);
+                }
+            } else if (officeCoordinates != null) {
+                delta += officeLegKm(rider);
+                if (prev != null) {
+                    delta -= officeLegKm(prev);
+                }
+            }
+            return delta;
+        }
+
+        private double routeKm() {
+            double total = 0.0;
+            for (int k = 1; k < stops.size(); k++) {
+                total += stops.get(k - 1).distanceKm(stops.get(k));
+            }
+            if (officeCoordinates != null && !stops.isEmpty()) {
+                total += officeLegKm(stops.get(stops.size() - 1));
+            }
+            return total;
+        }
+
+        private double officeLegKm(OpenStop stop) {
+            return GeoDistance.haversineKm(stop.latitude, stop.longitude, officeCoordinates[0],
+                    officeCoordinates[1]);
+        }
+
+        private List<Long> employeeIds() {
+            List<Long> ids = new ArrayList<>(stops.size());
+            for (OpenStop stop : stops) {
+                ids.add(stop.employeeId);
+            }
+            return ids;
+        }
+
+        private int indexOf(long employeeId) {
+            for (int k = 0; k < stops.size(); k++) {
+                if (stops.get(k).employeeId == employeeId)
+                    return k;
+            }
+            throw new IllegalStateException("Employee " + employeeId + " not on ride plan " + planId);
+        }
+    }
+}
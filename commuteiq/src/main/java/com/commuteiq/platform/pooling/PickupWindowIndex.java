@@ -0,0 +1,80 @@
+package com.commuteiq.platform.pooling;
+
+/**
+ * Sweep-line view of the pickup windows of one partition.
+ *
+ * Partition members are in snapshot order: timed windows ascending by start,
+ * followed by flexible employees (no preference), which overlap every window.
+ * For an anchor at position {@code i}, a later timed member can only overlap
+ * if it starts no later than the anchor's end, so the overlapping timed
+ * members form the contiguous run {@code (i, lastOverlapping(i)]}; flexible
+ * members {@code [flexibleFrom(), size)} are always candidates.
+ */
+public final class PickupWindowIndex {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int flexibleFrom;
+
+    private PickupWindowIndex(int[] starts, int[] ends, int flexibleFrom) {
+        this.starts = starts;
+        this.ends = ends;
+        this.flexibleFrom = flexibleFrom;
+    }
+
+    /**
+     * Index the windows of {@code members} (ascending snapshot indices).
+     */
+    public static PickupWindowIndex build(PlanningSnapshot snapshot, int[] members) {
+        int n = members.length;
+        int flexibleFrom = n;
+        while (flexibleFrom > 0 && snapshot.isFlexible(members[flexibleFrom - 1])) {
+            flexibleFrom--;
+        }
+
+        int[] starts = new int[flexibleFrom];
+        int[] ends = new int[n];
+        for (int k = 0; k < n; k++) {
+            if (k < flexibleFrom) {
+                starts[k] = snapshot.pickupStart(members[k]);
+            }
+            ends[k] = snapshot.pickupEnd(members[k]);
+        }
+        return new PickupWindowIndex(starts, ends, flexibleFrom);
+    }
+
+    /**
+     * Last position whose window may overlap the window at {@code position};
+     * every timed position after it starts after the anchor's window ends.
+     * Flexible anchors overlap everything up to the end of the partition.
+     */
+    public int lastOverlapping(int position) {
+        if (position >= flexibleFrom) {
+            return ends.length - 1;
+        }
+        // First timed position starting after the anchor's end, searched past the anchor
+        int key = ends[position];
+        int lo = position + 1;
+        int hi = flexibleFrom;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * First position of a flexible member, or {@code size()} if there is none.
+     */
+    public int flexibleFrom() {
+        return flexibleFrom;
+    }
+
+    public int size() {
+        return ends.length;
+    }
+}
@@ -0,0 +1,19 @@
+package com.commuteiq.platform.pooling;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A ride plan ready to be written: assigned vehicle and driver, route
+ * estimates, and the employees / ride requests in stop order.
+ */
+@Getter
+@AllArgsConstructor
+public class PlanDraft {
+    private Long vehicleId;
+    private Long driverId;
+    private double estimatedDistance;
+    private double estimatedDuration;
+    private long[] employeeIds;
+    private long[] requestIds;
+}
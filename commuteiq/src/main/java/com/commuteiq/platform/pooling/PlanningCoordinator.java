@@ -0,0 +1,155 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import com.commuteiq.platform.repository.PlanningLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-flight ride plan generation per date.
+ *
+ * - In this process, the first caller for a date becomes the leader and runs
+ * the planning; callers arriving while it runs join it and receive its result
+ * (or its failure) instead of planning the same requests again
+ * - Across instances, the leader holds a {@link com.commuteiq.platform.entity.PlanningLease}
+ * row for the date; a date leased by another live instance is rejected
+ * - The join-or-lead decision, including the lease round trip, runs under one
+ * of a fixed set of striped locks, so it is atomic per date while other dates
+ * decide and plan in parallel; the planning itself runs outside the lock
+ */
+@Component
+@Slf4j
+public class PlanningCoordinator {
+
+    private static final int STRIPES = 64;
+
+    private final PlanningLeaseRepository planningLeaseRepository;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<LocalDate, CompletableFuture<List<RidePlanResponse>>> inFlight = new ConcurrentHashMap<>();
+    private final String owner;
+
+    @Value("${app.pooling.lease-ttl-seconds:300}")
+    private long leaseTtlSeconds;
+
+    public PlanningCoordinator(PlanningLeaseRepository planningLeaseRepository) {
+        this.planningLeaseRepository = planningLeaseRepository;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        String instance = ManagementFactory.getRuntimeMXBean().getName();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        this.owner = instance.substring(0, Math.min(instance.length(), 90)) + "/" + suffix;
+    }
+
+    /**
+     * Lease held by the leader of a run.
+     */
+    public interface Lease {
+
+        /**
+         * Extend the lease; fails when it was lost (expired and taken over), so
+         * a chunk about to commit can roll back instead of racing the new holder.
+         */
+        void renew();
+    }
+
+    /**
+     * Run {@code planning} for {@code date} as leader, or join the run already
+     * in flight here; a joiner gets the leader's plans through {@code onJoin}
+     * before they are returned.
+     */
+    public List<RidePlanResponse> run(LocalDate date, Function<Lease, List<RidePlanResponse>> planning,
+            Consumer<List<RidePlanResponse>> onJoin) {
+        CompletableFuture<List<RidePlanResponse>> flight;
+        boolean leader = false;
+        ReentrantLock stripe = stripes[Math.floorMod(date.hashCode(), STRIPES)];
+        stripe.lock();
+        try {
+            flight = inFlight.get(date);
+            if (flight == null) {
+                acquireLease(date);
+                flight = new CompletableFuture<>();
+                inFlight.put(date, flight);
+                leader = true;
+            }
+        } finally {
+            stripe.unlock();
+        }
+
+        if (!leader) {
+            log.info("Joining ride plan generation already in flight for date: {}", date);
+            List<RidePlanResponse> plans = await(flight);
+            onJoin.accept(plans);
+            return plans;
+        }
+
+        try {
+            List<RidePlanResponse> plans = planning.apply(() -> renewLease(date));
+            flight.complete(plans);
+            return plans;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            stripe.lock();
+            try {
+                inFlight.remove(date, flight);
+                planningLeaseRepository.release(date, owner);
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private void acquireLease(LocalDate date) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(Duration.ofSeconds(leaseTtlSeconds));
+        if (planningLeaseRepository.takeOver(date, owner, now, expiresAt) > 0) {
+            return;
+        }
+        try {
+            planningLeaseRepository.insert(date, owner, now, expiresAt);
+        } catch (DataIntegrityViolationException e) {
+            throw new InvalidOperationException(
+                    "Ride plans for " + date + " are already being generated by another instance");
+        }
+    }
+
+    private void renewLease(LocalDate date) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofSeconds(leaseTtlSeconds));
+        if (planningLeaseRepository.renew(date, owner, expiresAt) == 0) {
+            throw new InvalidOperationException("Lost the planning lease for date: " + date);
+        }
+    }
+
+    private static List<RidePlanResponse> await(CompletableFuture<List<RidePlanResponse>> flight) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ride plan generation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
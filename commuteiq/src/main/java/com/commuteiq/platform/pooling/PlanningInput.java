@@ -0,0 +1,24 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.entity.Driver;
+import com.commuteiq.platform.entity.Vehicle;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Everything the pooling engine needs for one date: pending requests joined
+ * with employee and preference data, plus the vehicles and drivers not yet
+ * assigned to a plan on that date.
+ */
+@Getter
+@AllArgsConstructor
+public class PlanningInput {
+    private LocalDate date;
+    private List<PendingRequestRow> requests;
+    private List<Vehicle> availableVehicles;
+    private List<Driver> availableDrivers;
+}
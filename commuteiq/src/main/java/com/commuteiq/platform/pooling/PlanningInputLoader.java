@@ -0,0 +1,81 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.entity.Driver;
+import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.entity.Vehicle;
+import com.commuteiq.platform.repository.DriverRepository;
+import com.commuteiq.platform.repository.RidePlanRepository;
+import com.commuteiq.platform.repository.RideRequestRepository;
+import com.commuteiq.platform.repository.VehicleRepository;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Loads all planning inputs for a date in a constant number of queries:
+ * one projection query joining requests, employees and preferences, one
+ * query each for active vehicles and drivers, and two ID-only queries for
+ * the vehicles and drivers already used on that date.
+ *
+ * Horizon runs pass {@link WorkFromHomeDays} to leave out the requests of
+ * employees whose preference marks the date's weekday as a work-from-home day;
+ * those stay PENDING and are counted in the log. Loading a single date plans
+ * every PENDING request.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class PlanningInputLoader {
+
+    private final RideRequestRepository rideRequestRepository;
+    private final VehicleRepository vehicleRepository;
+    private final DriverRepository driverRepository;
+    private final RidePlanRepository ridePlanRepository;
+
+    public PlanningInput load(LocalDate date) {
+        return withFleet(date, rideRequestRepository.findRequestRowsByStatusAndDate(RideRequestStatus.PENDING, date));
+    }
+
+    /**
+     * Load inputs for {@code date} without the requests of employees working
+     * from home that weekday, reading work-from-home days through
+     * {@code workFromHomeDays}, which may be shared by the days of one run.
+     */
+    public PlanningInput load(LocalDate date, WorkFromHomeDays workFromHomeDays) {
+        DayOfWeek day = date.getDayOfWeek();
+        List<PendingRequestRow> pending = rideRequestRepository
+                .findRequestRowsByStatusAndDate(RideRequestStatus.PENDING, date);
+        List<PendingRequestRow> requests = pending.stream()
+                .filter(r -> !workFromHomeDays.isHomeOn(r.getWorkFromHomeDays(), day))
+                .collect(Collectors.toList());
+        if (requests.size() < pending.size()) {
+            log.info("Skipped {} of {} pending requests for {}: employees working from home on {}",
+                    pending.size() - requests.size(), pending.size(), date, day);
+        }
+        return withFleet(date, requests);
+    }
+
+    private PlanningInput withFleet(LocalDate date, List<PendingRequestRow> requests) {
+        Set<Long> usedVehicleIds = new HashSet<>(ridePlanRepository.findVehicleIdsByDate(date));
+        Set<Long> usedDriverIds = new HashSet<>(ridePlanRepository.findDriverIdsByDate(date));
+
+        List<Vehicle> vehicles = vehicleRepository.findByActiveTrue().stream()
+                .filter(v -> !usedVehicleIds.contains(v.getId()))
+                .collect(Collectors.toList());
+        List<Driver> drivers = driverRepository.findByActiveTrue().stream()
+                .filter(d -> !usedDriverIds.contains(d.getId()))
+                .collect(Collectors.toList());
+
+        return new PlanningInput(date, requests, vehicles, drivers);
+    }
+}
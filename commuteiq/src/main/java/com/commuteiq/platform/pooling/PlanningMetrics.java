@@ -0,0 +1,116 @@
+package com.commuteiq.platform.pooling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Micrometer meters for ride plan generation, exposed through
+ * {@code /actuator/metrics}. Every meter is tagged with the planned
+ * {@code date} and an {@code office}; meters for the run as a whole (phase
+ * timers, exhaustion) use office {@code all}.
+ *
+ * - {@code commuteiq.planning.phase} (timer, tag {@code phase}): load,
+ * snapshot, clustering, improvement, assignment, routing, write
+ * - {@code commuteiq.planning.requests.loaded}, {@code .clusters.built},
+ * {@code .clusters.unassigned}, {@code .rows.written}: counters per office
+ * - {@code commuteiq.planning.fleet.exhausted} (tag {@code resource}:
+ * vehicles or drivers): runs that left clusters unassigned
+ *
+ * Dates make a new series per planned day, so only the
+ * {@code app.pooling.metrics.retained-dates} most recently recorded dates are
+ * kept; the meters of the least recently recorded date are removed from the
+ * registry. Recency, not calendar order, decides, so re-planning or resuming
+ * an older date keeps its meters.
+ */
+@Component
+@RequiredArgsConstructor
+public class PlanningMetrics {
+
+    private static final String PREFIX = "commuteiq.planning.";
+    private static final String ALL_OFFICES = "all";
+
+    private final MeterRegistry meterRegistry;
+    // Access order: iteration starts at the least recently recorded date
+    private final Map<LocalDate, Boolean> dates = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Value("${app.pooling.metrics.retained-dates:14}")
+    private int retainedDates;
+
+    public void phase(LocalDate date, String phase, long nanos) {
+        register(date, Timer.builder(PREFIX + "phase")
+                .description("Wall time of one ride plan generation phase")
+                .tag("date", date.toString())
+                .tag("office", ALL_OFFICES)
+                .tag("phase", phase)::register)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void requestsLoaded(LocalDate date, String office, long requests) {
+        increment(date, "requests.loaded", "Pending ride requests planned", office, requests);
+    }
+
+    public void clustersBuilt(LocalDate date, String office, long clusters) {
+        increment(date, "clusters.built", "Candidate clusters before vehicle assignment", office, clusters);
+    }
+
+    public void clustersUnassigned(LocalDate date, String office, long clusters) {
+        increment(date, "clusters.unassigned", "Clusters left without a vehicle or driver", office, clusters);
+    }
+
+    public void rowsWritten(LocalDate date, String office, long rows) {
+        increment(date, "rows.written", "Plan, stop and request rows committed", office, rows);
+    }
+
+    public void fleetExhausted(LocalDate date, boolean vehicles) {
+        register(date, Counter.builder(PREFIX + "fleet.exhausted")
+                .description("Runs that ran out of vehicles or drivers")
+                .tag("date", date.toString())
+                .tag("office", ALL_OFFICES)
+                .tag("resource", vehicles ? "vehicles" : "drivers")::register)
+                .increment();
+    }
+
+    private void increment(LocalDate date, String name, String description, String office, long amount) {
+        register(date, Counter.builder(PREFIX + name)
+                .description(description)
+                .tag("date", date.toString())
+                .tag("office", office != null ? office : "unknown")::register)
+                .increment(amount);
+    }
+
+    /**
+     * Register a meter of {@code date} and mark the date as most recently
+     * recorded. Both happen under one lock, so a meter is never registered
+     * for a date whose meters another thread is removing.
+     */
+    private synchronized <M extends Meter> M register(LocalDate date, Function<MeterRegistry, M> builder) {
+        retain(date);
+        return builder.apply(meterRegistry);
+    }
+
+    private void retain(LocalDate date) {
+        if (dates.put(date, Boolean.TRUE) != null || dates.size() <= retainedDates) {
+            return;
+        }
+        Iterator<LocalDate> eldest = dates.keySet().iterator();
+        String expired = eldest.next().toString();
+        eldest.remove();
+        for (Meter meter : meterRegistry.getMeters()) {
+            if (meter.getId().getName().startsWith(PREFIX) && expired.equals(meter.getId().getTag("date"))) {
+                meterRegistry.remove(meter);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Offline replay of a {@link PlanningSnapshotFile}: clustering, local search,
+ * vehicle assignment and stop ordering exactly as {@code generatePlansForDate}
+ * runs them, with no database and no Spring context.
+ *
+ * Replays are deterministic: searches run to convergence instead of stopping
+ * at their budgets, the recorded restart count is used whatever the thread
+ * count, and distances are float-rounded through fresh matrices when the
+ * recorded run used the distance cache. The same file therefore always gives
+ * the same plans and {@link Result#digest()}, so it can serve as a regression
+ * and performance fixture.
+ *
+ * From the command line (with the application jar on the class path):
+ * {@code java -cp commuteiq.jar -Dloader.main=com.commuteiq.platform.pooling.PlanningReplay
+ * org.springframework.boot.loader.launch.PropertiesLauncher <snapshot file> [threads]}
+ */
+public final class PlanningReplay {
+
+    private final PoolingEngine engine;
+
+    public PlanningReplay(PoolingEngine engine) {
+        this.engine = engine;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PlanningReplay <snapshot file> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        PlanningSnapshotFile file = PlanningSnapshotFile.read(Path.of(args[0]));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Result result = new PlanningReplay(new PoolingEngine(pool, new OfficeLocationProperties())).run(file);
+            System.out.println(result);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public Result run(PlanningSnapshotFile file) {
+        PoolingParameters parameters = file.parameters().toBuilder().deterministic(true).build();
+        PlanningSnapshot snapshot = file.roundedDistances() ? withFreshMatrices(file.snapshot()) : file.snapshot();
+
+        long t0 = System.nanoTime();
+        Clusters greedy = engine.buildClusters(snapshot, parameters);
+        long t1 = System.nanoTime();
+        Clusters improved = engine.improveClusters(snapshot, greedy, parameters, file.offices());
+        long t2 = System.nanoTime();
+        VehicleAssignment assignment = VehicleAssigner.assign(snapshot, improved, file.vehicleCapacities(),
+                file.driverIds().length);
+        long t3 = System.nanoTime();
+        Routes routes = engine.planRoutes(snapshot, assignment.clusters(), parameters, file.offices());
+        long t4 = System.nanoTime();
+
+        // FNV-1a over every plan: vehicle, driver, riders in stop order, route length
+        Clusters clusters = routes.clusters();
+        long digest = 0xcbf29ce484222325L;
+        for (int c = 0; c < clusters.count(); c++) {
+            digest = mix(digest, file.vehicleIds()[assignment.vehicleIndex(c)]);
+            digest = mix(digest, file.driverIds()[c]);
+            for (int k = 0; k < clusters.size(c); k++) {
+                digest = mix(digest, snapshot.requestId(clusters.member(c, k)));
+            }
+            digest = mix(digest, Double.doubleToLongBits(routes.distanceKm(c)));
+        }
+
+        return new Result(snapshot.size(), clusters.count(), clusters.memberCount(),
+                assignment.unassignedRiders(), assignment.splitClusters(), routes.totalDistanceKm(), digest,
+                millis(t1 - t0), millis(t2 - t1), millis(t3 - t2), millis(t4 - t3));
+    }
+
+    private static PlanningSnapshot withFreshMatrices(PlanningSnapshot snapshot) {
+        OfficeDistanceMatrix[] matrices = new OfficeDistanceMatrix[snapshot.officeCount()];
+        for (int o = 0; o < matrices.length; o++) {
+            matrices[o] = new OfficeDistanceMatrix(0, Integer.MAX_VALUE);
+        }
+        int[] slots = new int[snapshot.size()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            slots[i] = matrices[snapshot.officeId(i)].addSlot(snapshot.latitude(i), snapshot.longitude(i));
+        }
+        return snapshot.withDistanceMatrices(matrices, slots);
+    }
+
+    private static long mix(long hash, long value) {
+        for (int b = 0; b < Long.BYTES; b++) {
+            hash ^= (value >>> (b * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+
+    /**
+     * Outcome of one replay. {@code digest} identifies the plans; timings are
+     * per phase in milliseconds.
+     */
+    public static final class Result {
+
+        private final int requests;
+        private final int plans;
+        private final int riders;
+        private final int unassignedRiders;
+        private final int splitClusters;
+        private final double totalDistanceKm;
+        private final long digest;
+        private final long clusteringMs;
+        private final long improvementMs;
+        private final long assignmentMs;
+        private final long routingMs;
+
+        private Result(int requests, int plans, int riders, int unassignedRiders, int splitClusters,
+                double totalDistanceKm, long digest, long clusteringMs, long improvementMs, long assignmentMs,
+                long routingMs) {
+            this.requests = requests;
+            this.plans = plans;
+            this.riders = riders;
+            this.unassignedRiders = unassignedRiders;
+            this.splitClusters = splitClusters;
+            this.totalDistanceKm = totalDistanceKm;
+            this.digest = digest;
+            this.clusteringMs = clusteringMs;
+            this.improvementMs = improvementMs;
+            this.assignmentMs = assignmentMs;
+            this.routingMs = routingMs;
+        }
+
+        public int plans() {
+            return plans;
+        }
+
+        public int riders() {
+            return riders;
+        }
+
+        public double totalDistanceKm() {
+            return totalDistanceKm;
+        }
+
+        public long digest() {
+            return digest;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d plans=%d riders=%d unassigned=%d splits=%d distanceKm=%.3f "
+                    + "digest=%016x clusteringMs=%d improvementMs=%d assignmentMs=%d routingMs=%d",
+                    requests, plans, riders, unassignedRiders, splitClusters, totalDistanceKm, digest,
+                    clusteringMs, improvementMs, assignmentMs, routingMs);
+        }
+    }
+}
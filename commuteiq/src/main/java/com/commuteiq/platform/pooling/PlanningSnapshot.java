@@ -0,0 +1,303 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Immutable struct-of-arrays view of the pending requests for one date,
+ * used by the pooling hot loop instead of entities or projection rows.
+ *
+ * Requests are stored in planning order: ascending pickup start time, with
+ * flexible employees (no commute preference) last. Index {@code i} addresses
+ * the same request in every array:
+ * - home coordinates as {@code double[]}, plus {@code cos(latitude)} and unit
+ * vectors precomputed for the geo pre-filter and {@link GeoKernel}
+ * - pickup windows as minutes of day; flexible employees get the full day,
+ * so window overlap needs no special case
+ * - office and gender as interned {@code int} codes (gender case-insensitive)
+ * - flexible and same-gender-required flags as bitsets
+ *
+ * Distances are computed on the fly unless the snapshot has been attached to
+ * a {@link DistanceMatrixCache}, in which case same-office pairs are served
+ * float-rounded from the office's cache. {@link #isWithinKm} still agrees
+ * with exact Haversine.
+ */
+public final class PlanningSnapshot {
+
+    public static final int FULL_DAY_MINUTES = 24 * 60;
+
+    // Float rounding of cached distances is below 6e-8 relative
+    private static final double CACHED_ROUNDING = 1e-7;
+
+    private final LocalDate date;
+    private final int size;
+
+    private final long[] requestIds;
+    private final long[] employeeIds;
+    private final String[] employeeNames;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] unitZ;
+    private final int[] pickupStart;
+    private final int[] pickupEnd;
+
+    private final int[] officeIds;
+    private final String[] officeNames;
+    private final int[] genderCodes;
+
+    private final BitSet flexible;
+    private final BitSet sameGenderRequired;
+
+    // Optional cached distances, per office id and per request slot
+    private final OfficeDistanceMatrix[] distanceMatrices;
+    private final int[] distanceSlots;
+
+    private PlanningSnapshot(LocalDate date, int size, long[] requestIds, long[] employeeIds, String[] employeeNames,
+            double[] latitudes, double[] longitudes, double[] cosLatitudes, double[] unitX, double[] unitY,
+            double[] unitZ, int[] pickupStart, int[] pickupEnd,
+            int[] officeIds, String[] officeNames, int[] genderCodes,
+            BitSet flexible, BitSet sameGenderRequired,
+            OfficeDistanceMatrix[] distanceMatrices, int[] distanceSlots) {
+        this.date = date;
+        this.size = size;
+        this.requestIds = requestIds;
+        this.employeeIds = employeeIds;
+        this.employeeNames = employeeNames;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cosLatitudes = cosLatitudes;
+        this.unitX = unitX;
+        this.unitY = unitY;
+        this.unitZ = unitZ;
+        this.pickupStart = pickupStart;
+        this.pickupEnd = pickupEnd;
+        this.officeIds = officeIds;
+        this.officeNames = officeNames;
+        this.genderCodes = genderCodes;
+        this.flexible = flexible;
+        this.sameGenderRequired = sameGenderRequired;
+        this.distanceMatrices = distanceMatrices;
+        this.distanceSlots = distanceSlots;
+    }
+
+    /**
+     * Build a snapshot from loader rows. Rows are stably sorted by pickup start
+     * time, so ties keep their load order.
+     */
+    public static PlanningSnapshot of(LocalDate date, List<PendingRequestRow> rows) {
+        List<PendingRequestRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(row -> row.getPickupStartTime() != null
+                ? row.getPickupStartTime()
+                : LocalTime.MAX));
+
+        int n = sorted.size();
+        long[] requestIds = new long[n];
+        long[] employeeIds = new long[n];
+        String[] employeeNames = new String[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int[] pickupStart = new int[n];
+        int[] pickupEnd = new int[n];
+        int[] officeIds = new int[n];
+        int[] genderCodes = new int[n];
+        BitSet flexible = new BitSet(n);
+        BitSet sameGenderRequired = new BitSet(n);
+
+        Map<String, Integer> offices = new LinkedHashMap<>();
+        Map<String, Integer> genders = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            PendingRequestRow row = sorted.get(i);
+            requestIds[i] = row.getRequestId();
+            employeeIds[i] = row.getEmployeeId();
+            employeeNames[i] = row.getEmployeeName();
+            latitudes[i] = row.getHomeLatitude();
+            longitudes[i] = row.getHomeLongitude();
+
+            if (row.getPickupStartTime() == null) {
+                flexible.set(i);
+                pickupStart[i] = 0;
+                pickupEnd[i] = FULL_DAY_MINUTES;
+            } else {
+                pickupStart[i] = toMinutes(row.getPickupStartTime());
+                pickupEnd[i] = toMinutes(row.getPickupEndTime());
+            }
+            if (Boolean.TRUE.equals(row.getSameGenderRequired())) {
+                sameGenderRequired.set(i);
+            }
+
+            officeIds[i] = offices.computeIfAbsent(row.getOfficeLocation(), k -> offices.size());
+            genderCodes[i] = genders.computeIfAbsent(row.getGender().toUpperCase(Locale.ROOT),
+                    k -> genders.size());
+        }
+
+        return withGeometry(date, requestIds, employeeIds, employeeNames, latitudes, longitudes,
+                pickupStart, pickupEnd, officeIds, offices.keySet().toArray(new String[0]), genderCodes,
+                flexible, sameGenderRequired);
+    }
+
+    /**
+     * Snapshot over columns already in planning order, e.g. read back from a
+     * {@link PlanningSnapshotFile}.
+     */
+    static PlanningSnapshot ofColumns(LocalDate date, long[] requestIds, long[] employeeIds, String[] employeeNames,
+            double[] latitudes, double[] longitudes, int[] pickupStart, int[] pickupEnd,
+            int[] officeIds, String[] officeNames, int[] genderCodes,
+            BitSet flexible, BitSet sameGenderRequired) {
+        return withGeometry(date, requestIds, employeeIds, employeeNames, latitudes, longitudes,
+                pickupStart, pickupEnd, officeIds, officeNames, genderCodes, flexible, sameGenderRequired);
+    }
+
+    private static PlanningSnapshot withGeometry(LocalDate date, long[] requestIds, long[] employeeIds,
+            String[] employeeNames, double[] latitudes, double[] longitudes, int[] pickupStart, int[] pickupEnd,
+            int[] officeIds, String[] officeNames, int[] genderCodes, BitSet flexible, BitSet sameGenderRequired) {
+        int n = requestIds.length;
+        double[] cosLatitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            cosLatitudes[i] = GeoDistance.cosLatitude(latitudes[i]);
+        }
+        double[] unitX = new double[n];
+        double[] unitY = new double[n];
+        double[] unitZ = new double[n];
+        GeoKernel.toUnitVectors(latitudes, longitudes, unitX, unitY, unitZ);
+        return new PlanningSnapshot(date, n, requestIds, employeeIds, employeeNames,
+                latitudes, longitudes, cosLatitudes, unitX, unitY, unitZ, pickupStart, pickupEnd,
+                officeIds, officeNames, genderCodes, flexible, sameGenderRequired, null, null);
+    }
+
+    /**
+     * Whether same-office distances are read through a distance matrix (and
+     * are therefore float-rounded).
+     */
+    public boolean hasDistanceMatrices() {
+        return distanceMatrices != null;
+    }
+
+    /**
+     * Same snapshot reading same-office distances from {@code matrices}
+     * (indexed by office id) at the given per-request slots.
+     */
+    PlanningSnapshot withDistanceMatrices(OfficeDistanceMatrix[] matrices, int[] slots) {
+        return new PlanningSnapshot(date, size, requestIds, employeeIds, employeeNames,
+                latitudes, longitudes, cosLatitudes, unitX, unitY, unitZ, pickupStart, pickupEnd,
+                officeIds, officeNames, genderCodes, flexible, sameGenderRequired, matrices, slots);
+    }
+
+    private static int toMinutes(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long requestId(int i) {
+        return requestIds[i];
+    }
+
+    public long employeeId(int i) {
+        return employeeIds[i];
+    }
+
+    public String employeeName(int i) {
+        return employeeNames[i];
+    }
+
+    public double latitude(int i) {
+        return latitudes[i];
+    }
+
+    public double longitude(int i) {
+        return longitudes[i];
+    }
+
+    public double unitX(int i) {
+        return unitX[i];
+    }
+
+    public double unitY(int i) {
+        return unitY[i];
+    }
+
+    public double unitZ(int i) {
+        return unitZ[i];
+    }
+
+    /**
+     * Cheap pre-filter: false only if the homes of {@code i} and {@code j} are
+     * certainly more than {@code thresholdKm} apart by {@link #distanceKm}.
+     */
+    public boolean mayBeWithinKm(int i, int j, double thresholdKm) {
+        return GeoDistance.mayBeWithinKm(latitudes[i], longitudes[i], cosLatitudes[i],
+                latitudes[j], longitudes[j], cosLatitudes[j], thresholdKm);
+    }
+
+    public int pickupStart(int i) {
+        return pickupStart[i];
+    }
+
+    public int pickupEnd(int i) {
+        return pickupEnd[i];
+    }
+
+    public int officeId(int i) {
+        return officeIds[i];
+    }
+
+    public int officeCount() {
+        return officeNames.length;
+    }
+
+    public String officeName(int officeId) {
+        return officeNames[officeId];
+    }
+
+    public int genderCode(int i) {
+        return genderCodes[i];
+    }
+
+    public boolean isFlexible(int i) {
+        return flexible.get(i);
+    }
+
+    public boolean requiresSameGender(int i) {
+        return sameGenderRequired.get(i);
+    }
+
+    /**
+     * Haversine distance in km between the homes of requests {@code i} and {@code j},
+     * float-rounded when served from a cached office matrix.
+     */
+    public double distanceKm(int i, int j) {
+        if (distanceMatrices != null && officeIds[i] == officeIds[j]) {
+            return distanceMatrices[officeIds[i]].distanceKm(distanceSlots[i], distanceSlots[j]);
+        }
+        return GeoDistance.haversineKm(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+    }
+
+    /**
+     * Whether the exact Haversine distance between the homes of {@code i} and
+     * {@code j} is at most {@code thresholdKm}. Cached distances decide unless
+     * they are within float rounding of the threshold, in which case the pair
+     * is recomputed.
+     */
+    public boolean isWithinKm(int i, int j, double thresholdKm) {
+        double d = distanceKm(i, j);
+        if (distanceMatrices != null && officeIds[i] == officeIds[j]
+                && Math.abs(d - thresholdKm) <= thresholdKm * CACHED_ROUNDING) {
+            d = GeoDistance.haversineKm(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+        }
+        return d <= thresholdKm;
+    }
+}
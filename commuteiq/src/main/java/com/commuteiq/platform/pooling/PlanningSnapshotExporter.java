@@ -0,0 +1,79 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.entity.Driver;
+import com.commuteiq.platform.entity.Vehicle;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Dumps the inputs of production planning runs as {@link PlanningSnapshotFile}s
+ * when {@code app.pooling.snapshot-export.enabled} is set, one file per run
+ * named {@code plan-<date>-<timestamp>.snap} in
+ * {@code app.pooling.snapshot-export.directory}. A failed export is logged and
+ * never fails the run.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PlanningSnapshotExporter {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final PoolingEngine poolingEngine;
+
+    @Value("${app.pooling.snapshot-export.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.pooling.snapshot-export.directory:${java.io.tmpdir}/commuteiq-snapshots}")
+    private Path directory;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param snapshot the snapshot as planned, possibly attached to the distance cache
+     */
+    public void export(PlanningSnapshot snapshot, List<Vehicle> vehicles, List<Driver> drivers) {
+        if (!enabled) {
+            return;
+        }
+        PoolingParameters defaults = poolingEngine.defaults();
+        PoolingParameters parameters = defaults.toBuilder()
+                .improvementRestarts(poolingEngine.restarts(defaults))
+                .build();
+
+        long[] vehicleIds = new long[vehicles.size()];
+        int[] capacities = new int[vehicles.size()];
+        String[] plates = new String[vehicles.size()];
+        for (int v = 0; v < vehicleIds.length; v++) {
+            vehicleIds[v] = vehicles.get(v).getId();
+            capacities[v] = vehicles.get(v).getCapacity();
+            plates[v] = vehicles.get(v).getPlateNumber();
+        }
+        long[] driverIds = drivers.stream().mapToLong(Driver::getId).toArray();
+
+        PlanningSnapshotFile file = new PlanningSnapshotFile(snapshot, parameters,
+                poolingEngine.officeCoordinates(snapshot), snapshot.hasDistanceMatrices(),
+                vehicleIds, capacities, plates, driverIds);
+        Path target = directory.resolve("plan-" + snapshot.getDate() + "-"
+                + TIMESTAMP.format(LocalDateTime.now()) + ".snap");
+        try {
+            Files.createDirectories(directory);
+            file.write(target);
+            log.info("Exported planning snapshot for {} ({} requests) to {}", snapshot.getDate(), snapshot.size(),
+                    target);
+        } catch (IOException e) {
+            log.warn("Could not export planning snapshot for {}: {}", snapshot.getDate(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.commuteiq.platform.pooling;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Everything one planning run saw, in a compact binary file that can be
+ * replayed without a database (see {@link PlanningReplay}).
+ *
+ * Layout (gzip-compressed, big-endian {@link DataOutputStream} encoding):
+ * - header: magic {@code CIQS}, format version, date as epoch day
+ * - parameters: threshold, max cluster size, budgets, improvement settings
+ * with the restart count resolved, and whether distances were float-rounded
+ * through the distance cache
+ * - offices: name and optional {@code [latitude, longitude]}
+ * - requests, column by column in planning order: request and employee IDs,
+ * coordinates, pickup windows in minutes, office and gender codes, and the
+ * flexible / same-gender flags as bitsets
+ * - vehicle pool (ID, capacity, plate) and driver pool (ID), in fleet order
+ *
+ * Employee and driver names are not written; replays report IDs only.
+ */
+public final class PlanningSnapshotFile {
+
+    private static final int MAGIC = 0x43495153; // "CIQS"
+    private static final short VERSION = 1;
+
+    private final PlanningSnapshot snapshot;
+    private final PoolingParameters parameters;
+    private final double[][] offices;
+    private final boolean roundedDistances;
+    private final long[] vehicleIds;
+    private final int[] vehicleCapacities;
+    private final String[] vehiclePlates;
+    private final long[] driverIds;
+
+    /**
+     * @param offices          {@code [latitude, longitude]} per office id of the snapshot, or null where unknown
+     * @param roundedDistances whether the run read distances through the distance cache
+     */
+    public PlanningSnapshotFile(PlanningSnapshot snapshot, PoolingParameters parameters, double[][] offices,
+            boolean roundedDistances, long[] vehicleIds, int[] vehicleCapacities, String[] vehiclePlates,
+            long[] driverIds) {
+        this.snapshot = snapshot;
+        this.parameters = parameters;
+        this.offices = offices;
+        this.roundedDistances = roundedDistances;
+        this.vehicleIds = vehicleIds;
+        this.vehicleCapacities = vehicleCapacities;
+        this.vehiclePlates = vehiclePlates;
+        this.driverIds = driverIds;
+    }
+
+    public PlanningSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public PoolingParameters parameters() {
+        return parameters;
+    }
+
+    public double[][] offices() {
+        return offices;
+    }
+
+    public boolean roundedDistances() {
+        return roundedDistances;
+    }
+
+    public long[] vehicleIds() {
+        return vehicleIds;
+    }
+
+    public int[] vehicleCapacities() {
+        return vehicleCapacities;
+    }
+
+    public String[] vehiclePlates() {
+        return vehiclePlates;
+    }
+
+    public long[] driverIds() {
+        return driverIds;
+    }
+
+    public void write(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    public void write(OutputStream target) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(target, 1 << 16));
+        DataOutputStream out = new DataOutputStream(gzip);
+        PlanningSnapshot s = snapshot;
+        int n = s.size();
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(s.getDate().toEpochDay());
+
+        out.writeDouble(parameters.getDistanceThresholdKm());
+        out.writeInt(parameters.getMaxClusterSize());
+        out.writeLong(parameters.getRouteBudgetMs());
+        out.writeBoolean(parameters.isImprovementEnabled());
+        out.writeLong(parameters.getImprovementBudgetMs());
+        out.writeInt(parameters.getImprovementRestarts());
+        out.writeDouble(parameters.getVehicleCostKm());
+        out.writeBoolean(roundedDistances);
+
+        out.writeInt(s.officeCount());
+        for (int o = 0; o < s.officeCount(); o++) {
+            out.writeUTF(s.officeName(o));
+            double[] office = offices[o];
+            out.writeBoolean(office != null);
+            if (office != null) {
+                out.writeDouble(office[0]);
+                out.writeDouble(office[1]);
+            }
+        }
+
+        out.writeInt(n);
+        for (int i = 0; i < n; i++)
+            out.writeLong(s.requestId(i));
+        for (int i = 0; i < n; i++)
+            out.writeLong(s.employeeId(i));
+        for (int i = 0; i < n; i++)
+            out.writeDouble(s.latitude(i));
+        for (int i = 0; i < n; i++)
+            out.writeDouble(s.longitude(i));
+        for (int i = 0; i < n; i++)
+            out.writeShort(s.pickupStart(i));
+        for (int i = 0; i < n; i++)
+            out.writeShort(s.pickupEnd(i));
+        for (int i = 0; i < n; i++)
+            out.writeShort(s.officeId(i));
+        for (int i = 0; i < n; i++)
+            out.writeShort(s.genderCode(i));
+        BitSet flexible = new BitSet(n);
+        BitSet sameGender = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            flexible.set(i, s.isFlexible(i));
+            sameGender.set(i, s.requiresSameGender(i));
+        }
+        writeBits(out, flexible);
+        writeBits(out, sameGender);
+
+        out.writeInt(vehicleIds.length);
+        for (int v = 0; v < vehicleIds.length; v++) {
+            out.writeLong(vehicleIds[v]);
+            out.writeInt(vehicleCapacities[v]);
+            out.writeUTF(vehiclePlates[v] != null ? vehiclePlates[v] : "");
+        }
+        out.writeInt(driverIds.length);
+        for (long driverId : driverIds) {
+            out.writeLong(driverId);
+        }
+
+        out.flush();
+        gzip.finish();
+        gzip.flush();
+    }
+
+    public static PlanningSnapshotFile read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public static PlanningSnapshotFile read(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(source, 1 << 16)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a planning snapshot file");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported planning snapshot version " + version);
+        }
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+
+        PoolingParameters parameters = PoolingParameters.builder()
+                .distanceThresholdKm(in.readDouble())
+                .maxClusterSize(in.readInt())
+                .routeBudgetMs(in.readLong())
+                .improvementEnabled(in.readBoolean())
+                .improvementBudgetMs(in.readLong())
+                .improvementRestarts(in.readInt())
+                .vehicleCostKm(in.readDouble())
+                .build();
+        boolean roundedDistances = in.readBoolean();
+
+        int officeCount = in.readInt();
+        String[] officeNames = new String[officeCount];
+        double[][] offices = new double[officeCount][];
+        for (int o = 0; o < officeCount; o++) {
+            officeNames[o] = in.readUTF();
+            if (in.readBoolean()) {
+                offices[o] = new double[] { in.readDouble(), in.readDouble() };
+            }
+        }
+
+        int n = in.readInt();
+        long[] requestIds = new long[n];
+        long[] employeeIds = new long[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int[] pickupStart = new int[n];
+        int[] pickupEnd = new int[n];
+        int[] officeIds = new int[n];
+        int[] genderCodes = new int[n];
+        for (int i = 0; i < n; i++)
+            requestIds[i] = in.readLong();
+        for (int i = 0; i < n; i++)
+            employeeIds[i] = in.readLong();
+        for (int i = 0; i < n; i++)
+            latitudes[i] = in.readDouble();
+        for (int i = 0; i < n; i++)
+            longitudes[i] = in.readDouble();
+        for (int i = 0; i < n; i++)
+            pickupStart[i] = in.readShort();
+        for (int i = 0; i < n; i++)
+            pickupEnd[i] = in.readShort();
+        for (int i = 0; i < n; i++)
+            officeIds[i] = in.readShort();
+        for (int i = 0; i < n; i++)
+            genderCodes[i] = in.readShort();
+        BitSet flexible = readBits(in);
+        BitSet sameGender = readBits(in);
+
+        int vehicleCount = in.readInt();
+        long[] vehicleIds = new long[vehicleCount];
+        int[] vehicleCapacities = new int[vehicleCount];
+        String[] vehiclePlates = new String[vehicleCount];
+        for (int v = 0; v < vehicleCount; v++) {
+            vehicleIds[v] = in.readLong();
+            vehicleCapacities[v] = in.readInt();
+            vehiclePlates[v] = in.readUTF();
+        }
+        long[] driverIds = new long[in.readInt()];
+        for (int d = 0; d < driverIds.length; d++) {
+            driverIds[d] = in.readLong();
+        }
+
+        PlanningSnapshot snapshot = PlanningSnapshot.ofColumns(date, requestIds, employeeIds, new String[n],
+                latitudes, longitudes, pickupStart, pickupEnd, officeIds, officeNames, genderCodes,
+                flexible, sameGender);
+        return new PlanningSnapshotFile(snapshot, parameters, offices, roundedDistances,
+                vehicleIds, vehicleCapacities, vehiclePlates, driverIds);
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBits(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
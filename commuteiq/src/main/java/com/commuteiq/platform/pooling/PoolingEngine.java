@@ -0,0 +1,239 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the pooling algorithm on a {@link PlanningSnapshot}. Independent
+ * office / pickup-window partitions are clustered concurrently on the
+ * planning pool and merged in anchor order, so the result does not depend
+ * on the number of threads. An optional local-search phase then improves the
+ * greedy clusters with parallel seeded restarts. Stop ordering runs per
+ * cluster, also in parallel.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PoolingEngine {
+
+    private final ForkJoinPool planningPool;
+    private final OfficeLocationProperties officeLocationProperties;
+
+    @Value("${app.pooling.distance-threshold-km:2.0}")
+    private double distanceThresholdKm;
+
+    @Value("${app.pooling.max-cluster-size:8}")
+    private int maxClusterSize;
+
+    @Value("${app.pooling.route-optimization-budget-ms:2000}")
+    private long routeBudgetMs;
+
+    @Value("${app.pooling.improvement.enabled:false}")
+    private boolean improvementEnabled;
+
+    @Value("${app.pooling.improvement.budget-ms:1000}")
+    private long improvementBudgetMs;
+
+    @Value("${app.pooling.improvement.restarts:0}")
+    private int improvementRestarts;
+
+    @Value("${app.pooling.improvement.vehicle-cost-km:10.0}")
+    private double vehicleCostKm;
+
+    /**
+     * Parameters from the {@code app.pooling.*} configuration.
+     */
+    public PoolingParameters defaults() {
+        return PoolingParameters.builder()
+                .distanceThresholdKm(distanceThresholdKm)
+                .maxClusterSize(maxClusterSize)
+                .routeBudgetMs(routeBudgetMs)
+                .improvementEnabled(improvementEnabled)
+                .improvementBudgetMs(improvementBudgetMs)
+                .improvementRestarts(improvementRestarts)
+                .vehicleCostKm(vehicleCostKm)
+                .build();
+    }
+
+    public Clusters buildClusters(PlanningSnapshot snapshot) {
+        return buildClusters(snapshot, defaults());
+    }
+
+    public Clusters buildClusters(PlanningSnapshot snapshot, PoolingParameters parameters) {
+        ClusterBuilder builder = new ClusterBuilder(parameters.getDistanceThresholdKm(),
+                parameters.getMaxClusterSize());
+        List<int[]> partitions = builder.partition(snapshot);
+        if (partitions.size() == 1) {
+            return builder.build(snapshot, partitions.get(0));
+        }
+
+        List<Callable<Clusters>> tasks = new ArrayList<>(partitions.size());
+        for (int[] partition : partitions) {
+            tasks.add(() -> builder.build(snapshot, partition));
+        }
+
+        Clusters clusters = Clusters.merge(invokeAll(tasks, "Clustering"));
+        log.debug("Built {} clusters from {} partitions", clusters.count(), partitions.size());
+        return clusters;
+    }
+
+    /**
+     * Improve greedy clusters by local search when enabled, running one seeded
+     * restart per planning thread (or {@code app.pooling.improvement.restarts})
+     * under a shared wall-clock budget and keeping the best-scoring result.
+     * Returns {@code clusters} unchanged if disabled or nothing improved.
+     */
+    public Clusters improveClusters(PlanningSnapshot snapshot, Clusters clusters) {
+        return improveClusters(snapshot, clusters, defaults());
+    }
+
+    public Clusters improveClusters(PlanningSnapshot snapshot, Clusters clusters, PoolingParameters parameters) {
+        return improveClusters(snapshot, clusters, parameters, officeCoordinates(snapshot));
+    }
+
+    /**
+     * @param offices {@code [latitude, longitude]} per office id, or null where unknown
+     */
+    public Clusters improveClusters(PlanningSnapshot snapshot, Clusters clusters, PoolingParameters parameters,
+            double[][] offices) {
+        if (!parameters.isImprovementEnabled() || clusters.count() < 2) {
+            return clusters;
+        }
+
+        long started = System.nanoTime();
+        long deadline = deadline(started, parameters.getImprovementBudgetMs(), parameters);
+        ClusterImprover improver = new ClusterImprover(snapshot, parameters.getDistanceThresholdKm(),
+                parameters.getMaxClusterSize(), parameters.getVehicleCostKm(), offices);
+        int restarts = restarts(parameters);
+
+        List<Callable<Clusters>> tasks = new ArrayList<>(restarts);
+        for (int r = 0; r < restarts; r++) {
+            long seed = r;
+            tasks.add(() -> improver.improve(clusters, seed, deadline));
+        }
+
+        // Ties go to the lowest seed, so equal results don't depend on scheduling
+        double baseline = improver.score(clusters);
+        Clusters best = clusters;
+        double bestScore = baseline;
+        for (Clusters candidate : invokeAll(tasks, "Cluster improvement")) {
+            double score = improver.score(candidate);
+            if (score < bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+
+        log.info("Local search: {} -> {} clusters, score {} -> {} ({} restarts, {} ms)",
+                clusters.count(), best.count(), Math.round(baseline * 100.0) / 100.0,
+                Math.round(bestScore * 100.0) / 100.0, restarts, (System.nanoTime() - started) / 1_000_000L);
+        return best;
+    }
+
+    /**
+     * Number of local-search restarts {@code parameters} asks for: the
+     * configured count, or one per planning thread.
+     */
+    public int restarts(PoolingParameters parameters) {
+        return parameters.getImprovementRestarts() > 0
+                ? parameters.getImprovementRestarts()
+                : planningPool.getParallelism();
+    }
+
+    /**
+     * Order each cluster's stops to shorten its route, processing clusters in
+     * parallel under the configured time budget. Every cluster gets at least a
+     * nearest-neighbour order; 2-opt / Or-opt improvement stops at the deadline.
+     */
+    public Routes planRoutes(PlanningSnapshot snapshot, Clusters clusters) {
+        return planRoutes(snapshot, clusters, defaults());
+    }
+
+    public Routes planRoutes(PlanningSnapshot snapshot, Clusters clusters, PoolingParameters parameters) {
+        return planRoutes(snapshot, clusters, parameters, officeCoordinates(snapshot));
+    }
+
+    /**
+     * @param offices {@code [latitude, longitude]} per office id, or null where unknown
+     */
+    public Routes planRoutes(PlanningSnapshot snapshot, Clusters clusters, PoolingParameters parameters,
+            double[][] offices) {
+        int[] ordered = new int[clusters.memberCount()];
+        double[] distanceKm = new double[clusters.count()];
+        long deadline = deadline(System.nanoTime(), parameters.getRouteBudgetMs(), parameters);
+
+        runParallel(clusters.count(), c -> {
+            int size = clusters.size(c);
+            double[] office = offices[snapshot.officeId(clusters.anchor(c))];
+            int[] order = new int[size];
+            distanceKm[c] = StopSequenceOptimizer.optimize(snapshot, clusters.membersOf(c), size, office, order,
+                    deadline);
+            int start = clusters.start(c);
+            for (int k = 0; k < size; k++) {
+                ordered[start + k] = clusters.member(c, order[k]);
+            }
+        });
+
+        return new Routes(clusters.withMembers(ordered), distanceKm);
+    }
+
+    /**
+     * Configured office coordinates per office id of {@code snapshot}.
+     */
+    public double[][] officeCoordinates(PlanningSnapshot snapshot) {
+        double[][] offices = new double[snapshot.officeCount()][];
+        for (int o = 0; o < offices.length; o++) {
+            List<Double> coordinates = officeLocationProperties.getOfficeCoordinates().get(snapshot.officeName(o));
+            if (coordinates != null && coordinates.size() == 2) {
+                offices[o] = new double[] { coordinates.get(0), coordinates.get(1) };
+            }
+        }
+        return offices;
+    }
+
+    private static long deadline(long now, long budgetMs, PoolingParameters parameters) {
+        return parameters.isDeterministic() ? Long.MAX_VALUE : now + budgetMs * 1_000_000L;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks, String phase) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : planningPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidOperationException("Ride plan generation was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(phase + " failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Run {@code body} for every index in {@code [0, count)} on the planning pool.
+     */
+    private void runParallel(int count, IntConsumer body) {
+        try {
+            planningPool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidOperationException("Ride plan generation was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Route planning failed", e.getCause());
+        }
+    }
+}
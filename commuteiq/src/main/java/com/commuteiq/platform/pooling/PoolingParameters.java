@@ -0,0 +1,28 @@
+package com.commuteiq.platform.pooling;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Tunable settings for one pooling run. Production runs use the
+ * {@code app.pooling.*} configuration (see {@link PoolingEngine#defaults()});
+ * what-if simulations derive variants with {@code toBuilder()}.
+ *
+ * {@code deterministic} runs local search and stop ordering to convergence
+ * instead of stopping at their wall-clock budgets, so results depend only on
+ * the input (used by snapshot replays).
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class PoolingParameters {
+    private final double distanceThresholdKm;
+    private final int maxClusterSize;
+    private final long routeBudgetMs;
+    private final boolean improvementEnabled;
+    private final long improvementBudgetMs;
+    private final int improvementRestarts;
+    private final double vehicleCostKm;
+    private final boolean deterministic;
+}
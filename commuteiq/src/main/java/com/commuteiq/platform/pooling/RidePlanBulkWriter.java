@@ -0,0 +1,214 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.repository.RideRequestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk write path for generated ride plans. Plans are written in chunks:
+ * one locking read of the chunk's ride requests that are still PENDING, one
+ * JDBC batch insert into ride_plans (returning generated IDs), one batch
+ * insert into ride_plan_employees, and one set-based UPDATE marking the
+ * chunk's ride requests as PLANNED.
+ *
+ * A run works from a snapshot that can be minutes old by the time a chunk is
+ * written. Riders whose request is no longer PENDING (cancelled meanwhile)
+ * are dropped from their plan, later stops move up, and a plan left without
+ * riders is not written; its route estimate is kept as planned. The PLANNED
+ * update is guarded by status too, and a chunk whose update count differs
+ * from what it locked is rolled back.
+ *
+ * Each chunk commits in its own transaction, so a failure keeps every chunk
+ * written before it and those requests are no longer PENDING; re-running the
+ * date continues with the rest. A {@link ChunkListener} can checkpoint inside
+ * each chunk's transaction and publish the chunk after it commits.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RidePlanBulkWriter {
+
+    /**
+     * Callbacks for one write. Plan IDs are in draft order; only
+     * {@code [from, to)} is filled in for the current chunk, with 0 for plans
+     * not written because all their riders were dropped. {@code dropped}
+     * holds the request IDs of the chunk's dropped riders.
+     */
+    public interface ChunkListener {
+
+        ChunkListener NONE = new ChunkListener() {
+        };
+
+        /**
+         * Inside the chunk's transaction, after its rows are written.
+         */
+        default void beforeCommit(int from, int to, long[] planIds, Set<Long> dropped) {
+        }
+
+        default void afterCommit(int from, int to, long[] planIds, Set<Long> dropped) {
+        }
+    }
+
+    private static final String SELECT_PENDING_FOR_UPDATE = "SELECT id FROM ride_requests " +
+            "WHERE id IN (:ids) AND status = :status FOR UPDATE";
+
+    private static final String INSERT_RIDE_PLAN = "INSERT INTO ride_plans " +
+            "(vehicle_id, driver_id, date, estimated_distance, estimated_duration, status, created_at, updated_at) " +
+            "VALUES (:vehicleId, :driverId, :date, :estimatedDistance, :estimatedDuration, :status, :now, :now)";
+
+    private static final String INSERT_RIDE_PLAN_EMPLOYEE = "INSERT INTO ride_plan_employees " +
+            "(ride_plan_id, employee_id, stop_order, created_at, updated_at) " +
+            "VALUES (:ridePlanId, :employeeId, :stopOrder, :now, :now)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final RideRequestRepository rideRequestRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.pooling.write-chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Write all drafts for a date and return the generated ride plan IDs in draft order.
+     */
+    public long[] write(LocalDate date, List<PlanDraft> drafts, LocalDateTime now) {
+        return write(date, drafts, now, ChunkListener.NONE);
+    }
+
+    public long[] write(LocalDate date, List<PlanDraft> drafts, LocalDateTime now, ChunkListener listener) {
+        long started = System.nanoTime();
+        long[] planIds = new long[drafts.size()];
+        long rows = 0;
+
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+        chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (int from = 0; from < drafts.size(); from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + chunkSize, drafts.size());
+            Set<Long> dropped = new HashSet<>();
+            rows += chunkTransaction.execute(status -> {
+                long written = writeChunk(date, drafts, chunkFrom, chunkTo, now, planIds, dropped);
+                listener.beforeCommit(chunkFrom, chunkTo, planIds, dropped);
+                return written;
+            });
+            if (!dropped.isEmpty()) {
+                log.info("Dropped {} riders no longer PENDING from ride plans for {}", dropped.size(), date);
+            }
+            listener.afterCommit(chunkFrom, chunkTo, planIds, dropped);
+        }
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        log.info("Wrote {} ride plans ({} rows) for {} in {} ms ({} rows/s)", drafts.size(), rows, date,
+                Math.round(seconds * 1000), Math.round(rows / seconds));
+        return planIds;
+    }
+
+    private long writeChunk(LocalDate date, List<PlanDraft> drafts, int from, int to, LocalDateTime now,
+            long[] planIds, Set<Long> dropped) {
+        // Lock the chunk's requests that are still PENDING; a concurrent cancel waits for this chunk
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            for (long requestId : drafts.get(i).getRequestIds()) {
+                requestIds.add(requestId);
+            }
+        }
+        Set<Long> pending = new HashSet<>(jdbcTemplate.queryForList(SELECT_PENDING_FOR_UPDATE,
+                new MapSqlParameterSource()
+                        .addValue("ids", requestIds)
+                        .addValue("status", RideRequestStatus.PENDING.name()),
+                Long.class));
+        for (Long requestId : requestIds) {
+            if (!pending.contains(requestId)) {
+                dropped.add(requestId);
+            }
+        }
+
+        List<SqlParameterSource> planParams = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            PlanDraft draft = drafts.get(i);
+            planIds[i] = 0;
+            if (riders(draft, pending) == 0) {
+                continue;
+            }
+            planParams.add(new MapSqlParameterSource()
+                    .addValue("vehicleId", draft.getVehicleId())
+                    .addValue("driverId", draft.getDriverId())
+                    .addValue("date", date)
+                    .addValue("estimatedDistance", draft.getEstimatedDistance())
+                    .addValue("estimatedDuration", draft.getEstimatedDuration())
+                    .addValue("status", RidePlanStatus.SCHEDULED.name())
+                    .addValue("now", now));
+        }
+        if (planParams.isEmpty()) {
+            return 0;
+        }
+
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(INSERT_RIDE_PLAN, planParams.toArray(new SqlParameterSource[0]), keyHolder,
+                new String[] { "id" });
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        int key = 0;
+        for (int i = from; i < to; i++) {
+            if (riders(drafts.get(i), pending) > 0) {
+                planIds[i] = ((Number) keys.get(key++).values().iterator().next()).longValue();
+            }
+        }
+
+        List<SqlParameterSource> stopParams = new ArrayList<>();
+        List<Long> plannedIds = new ArrayList<>(pending.size());
+        for (int i = from; i < to; i++) {
+            PlanDraft draft = drafts.get(i);
+            int stopOrder = 0;
+            for (int k = 0; k < draft.getEmployeeIds().length; k++) {
+                if (!pending.contains(draft.getRequestIds()[k])) {
+                    continue;
+                }
+                stopParams.add(new MapSqlParameterSource()
+                        .addValue("ridePlanId", planIds[i])
+                        .addValue("employeeId", draft.getEmployeeIds()[k])
+                        .addValue("stopOrder", ++stopOrder)
+                        .addValue("now", now));
+                plannedIds.add(draft.getRequestIds()[k]);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_RIDE_PLAN_EMPLOYEE, stopParams.toArray(new SqlParameterSource[0]));
+
+        int updated = rideRequestRepository.updateStatusByIdInAndStatus(plannedIds, RideRequestStatus.PENDING,
+                RideRequestStatus.PLANNED, now);
+        if (updated != plannedIds.size()) {
+            throw new IllegalStateException("Marked " + updated + " of " + plannedIds.size()
+                    + " ride requests PLANNED for " + date + "; rolling back the chunk");
+        }
+
+        return planParams.size() + stopParams.size() + updated;
+    }
+
+    private static int riders(PlanDraft draft, Set<Long> pending) {
+        int riders = 0;
+        for (long requestId : draft.getRequestIds()) {
+            if (pending.contains(requestId)) {
+                riders++;
+            }
+        }
+        return riders;
+    }
+}
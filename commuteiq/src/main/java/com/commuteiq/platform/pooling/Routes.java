@@ -0,0 +1,32 @@
+package com.commuteiq.platform.pooling;
+
+/**
+ * Clusters in optimized stop order together with each cluster's route
+ * length in km (including the office leg when the office is known).
+ */
+public final class Routes {
+
+    private final Clusters clusters;
+    private final double[] distanceKm;
+
+    public Routes(Clusters clusters, double[] distanceKm) {
+        this.clusters = clusters;
+        this.distanceKm = distanceKm;
+    }
+
+    public Clusters clusters() {
+        return clusters;
+    }
+
+    public double distanceKm(int cluster) {
+        return distanceKm[cluster];
+    }
+
+    public double totalDistanceKm() {
+        double total = 0.0;
+        for (double d : distanceKm) {
+            total += d;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,191 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.Arrays;
+
+/**
+ * Uniform latitude/longitude grid over employee home locations.
+ *
+ * The pooling engine builds one index per planning run and uses it to limit
+ * candidate search to the anchor's own cell and its eight neighbours.
+ * Cells are sized from the distance threshold so that any pair within the
+ * threshold (by Haversine distance) is guaranteed to fall in the same or an
+ * adjacent cell:
+ * - latitude step = threshold arc angle, since d >= R * |dLat|
+ * - longitude step = 2 * asin(sin(arc / 2) / cos(maxLat)), widened for the
+ * highest absolute latitude present in the data set
+ *
+ * The grid does not wrap at the antimeridian; commute areas never straddle it.
+ */
+public final class SpatialGridIndex {
+
+    // Guards against cell boundaries landing exactly on the threshold distance
+    private static final double CELL_PADDING = 1.0 + 1e-9;
+
+    private final int[] rowOf;
+    private final int[] colOf;
+
+    // Sorted distinct cell keys; points of cellKeys[c] are
+    // sortedPoints[cellStart[c] .. cellStart[c + 1]) in ascending index order
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] sortedPoints;
+
+    private SpatialGridIndex(int[] rowOf, int[] colOf, long[] cellKeys, int[] cellStart, int[] sortedPoints) {
+        this.rowOf = rowOf;
+        this.colOf = colOf;
+        this.cellKeys = cellKeys;
+        this.cellStart = cellStart;
+        this.sortedPoints = sortedPoints;
+    }
+
+    /**
+     * Build an index over the given points (degrees) for a Haversine threshold in km.
+     */
+    public static SpatialGridIndex build(double[] latitudes, double[] longitudes, double thresholdKm) {
+        int n = latitudes.length;
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxAbsLat = 0.0;
+        for (int i = 0; i < n; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(latitudes[i]));
+        }
+        if (n == 0) {
+            minLat = 0.0;
+            minLon = 0.0;
+        }
+
+        // A zero threshold still pools employees living at identical coordinates
+        double arc = Math.max(thresholdKm, 1e-6) / GeoDistance.EARTH_RADIUS_KM;
+        double cellLat = Math.toDegrees(arc) * CELL_PADDING;
+        double cosMin = Math.cos(Math.toRadians(maxAbsLat));
+        double sinRatio = Math.sin(arc / 2) / cosMin;
+        double cellLon = sinRatio >= 1.0 || cosMin <= 0.0
+                ? 360.0 * CELL_PADDING
+                : Math.toDegrees(2 * Math.asin(sinRatio)) * CELL_PADDING;
+
+        int[] rowOf = new int[n];
+        int[] colOf = new int[n];
+        long[] keyOf = new long[n];
+        for (int i = 0; i < n; i++) {
+            rowOf[i] = (int) Math.floor((latitudes[i] - minLat) / cellLat);
+            colOf[i] = (int) Math.floor((longitudes[i] - minLon) / cellLon);
+            keyOf[i] = key(rowOf[i], colOf[i]);
+        }
+
+        // Group point indices by cell, keeping ascending index order inside a cell
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> keyOf[a] != keyOf[b]
+                ? Long.compare(keyOf[a], keyOf[b])
+                : Integer.compare(a, b));
+
+        int[] sortedPoints = new int[n];
+        long[] keys = new long[n];
+        int[] starts = new int[n + 1];
+        int cells = 0;
+        for (int k = 0; k < n; k++) {
+            int p = order[k];
+            sortedPoints[k] = p;
+            if (cells == 0 || keys[cells - 1] != keyOf[p]) {
+                keys[cells] = keyOf[p];
+                starts[cells] = k;
+                cells++;
+            }
+        }
+        starts[cells] = n;
+
+        return new SpatialGridIndex(rowOf, colOf,
+                Arrays.copyOf(keys, cells), Arrays.copyOf(starts, cells + 1), sortedPoints);
+    }
+
+    /**
+     * Write into {@code out} every indexed point greater than {@code anchor} that lies
+     * in the anchor's cell or one of its neighbours, in ascending index order.
+     * {@code out} must be at least as long as the number of indexed points.
+     *
+     * @return the number of candidates written
+     */
+    public int candidatesAfter(int anchor, int[] out) {
+        return candidatesAfter(anchor, rowOf.length - 1, rowOf.length, out);
+    }
+
+    /**
+     * Like {@link #candidatesAfter(int, int[])}, restricted to points in
+     * {@code (anchor, lastIndex]} or {@code [tailFrom, size)}. Used with
+     * {@link PickupWindowIndex} so spatial and pickup-window filtering happen in
+     * one pass: each cell's points are ascending, so both ranges are located by
+     * binary search and only their points are visited.
+     */
+    public int candidatesAfter(int anchor, int lastIndex, int tailFrom, int[] out) {
+        return collect(rowOf[anchor], colOf[anchor], anchor, lastIndex, tailFrom, out);
+    }
+
+    /**
+     * Write into {@code out} every indexed point, including {@code point} itself,
+     * that lies in the point's cell or one of its neighbours, in ascending order.
+     */
+    public int neighbours(int point, int[] out) {
+        return collect(rowOf[point], colOf[point], -1, rowOf.length - 1, rowOf.length, out);
+    }
+
+    private int collect(int row, int col, int after, int lastIndex, int tailFrom, int[] out) {
+        int count = 0;
+        for (int r = row - 1; r <= row + 1; r++) {
+            if (r < 0)
+                continue;
+            for (int c = col - 1; c <= col + 1; c++) {
+                if (c < 0)
+                    continue;
+                int cell = Arrays.binarySearch(cellKeys, key(r, c));
+                if (cell < 0)
+                    continue;
+                int end = cellStart[cell + 1];
+                int k = firstAtLeast(cellStart[cell], end, after + 1);
+                for (; k < end && sortedPoints[k] <= lastIndex; k++) {
+                    out[count++] = sortedPoints[k];
+                }
+                if (tailFrom > lastIndex + 1) {
+                    k = firstAtLeast(k, end, tailFrom);
+                }
+                for (; k < end; k++) {
+                    if (sortedPoints[k] >= tailFrom)
+                        out[count++] = sortedPoints[k];
+                }
+            }
+        }
+        Arrays.sort(out, 0, count);
+        return count;
+    }
+
+    /**
+     * First position in {@code sortedPoints[from .. to)} holding a point >= {@code value}.
+     */
+    private int firstAtLeast(int from, int to, int value) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedPoints[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int size() {
+        return rowOf.length;
+    }
+
+    public int cellCount() {
+        return cellKeys.length;
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+}
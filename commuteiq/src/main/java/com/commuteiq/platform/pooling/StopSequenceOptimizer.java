@@ -0,0 +1,239 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.Arrays;
+
+/**
+ * Orders the pickup stops of one cluster to shorten its route.
+ *
+ * Works on a small row-major distance matrix where stops are indices
+ * {@code 0 .. stops - 1} and, when the office is known, index {@code stops}
+ * is the office. The route starts at any stop and ends at the office
+ * (or at the last stop when the office is unknown).
+ *
+ * Construction is nearest-neighbour (built backwards from the office when
+ * there is one, otherwise from the best starting stop), followed by 2-opt
+ * and Or-opt (segments of 1-3 stops, optionally reversed) first-improvement
+ * passes until no move helps or the deadline passes.
+ */
+public final class StopSequenceOptimizer {
+
+    private static final double EPSILON = 1e-9;
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+
+    private StopSequenceOptimizer() {
+    }
+
+    /**
+     * @param dist          row-major distance matrix of dimension {@code stops (+1 with office)}
+     * @param stops         number of pickup stops
+     * @param hasOffice     whether the last matrix index is the office
+     * @param order         receives the stop indices in visiting order (length >= stops)
+     * @param deadlineNanos {@link System#nanoTime()} after which improvement stops
+     * @return route length including the office leg
+     */
+    public static double optimize(double[] dist, int stops, boolean hasOffice, int[] order, long deadlineNanos) {
+        int dim = hasOffice ? stops + 1 : stops;
+        int[] seq = new int[dim];
+        int[] scratch = new int[dim];
+
+        if (hasOffice) {
+            nearestNeighbourToOffice(dist, dim, stops, seq);
+        } else {
+            nearestNeighbourOpen(dist, dim, stops, seq, scratch);
+        }
+
+        boolean improved = stops > 2;
+        while (improved && System.nanoTime() < deadlineNanos) {
+            improved = twoOpt(dist, dim, stops, seq);
+            improved |= orOpt(dist, dim, stops, hasOffice, seq, scratch);
+        }
+
+        System.arraycopy(seq, 0, order, 0, stops);
+        return pathLength(dist, dim, seq, dim);
+    }
+
+    /**
+     * Order the stops of riders {@code members[0 .. size)} of {@code snapshot},
+     * ending at {@code office} ({@code [latitude, longitude]}) when it is known.
+     *
+     * @param order receives indices into {@code members} in visiting order (length >= size)
+     * @return route length including the office leg
+     */
+    public static double optimize(PlanningSnapshot snapshot, int[] members, int size, double[] office, int[] order,
+            long deadlineNanos) {
+        boolean hasOffice = office != null;
+        int dim = hasOffice ? size + 1 : size;
+        double[] dist = new double[dim * dim];
+        for (int a = 0; a < size; a++) {
+            int ma = members[a];
+            for (int b = a + 1; b < size; b++) {
+                double d = snapshot.distanceKm(ma, members[b]);
+                dist[a * dim + b] = d;
+                dist[b * dim + a] = d;
+            }
+            if (hasOffice) {
+                double d = GeoDistance.haversineKm(snapshot.latitude(ma), snapshot.longitude(ma),
+                        office[0], office[1]);
+                dist[a * dim + size] = d;
+                dist[size * dim + a] = d;
+            }
+        }
+        return optimize(dist, size, hasOffice, order, deadlineNanos);
+    }
+
+    /**
+     * Length of the path visiting {@code seq[0 .. length)} in order.
+     */
+    public static double pathLength(double[] dist, int dim, int[] seq, int length) {
+        double total = 0.0;
+        for (int k = 1; k < length; k++) {
+            total += dist[seq[k - 1] * dim + seq[k]];
+        }
+        return total;
+    }
+
+    private static void nearestNeighbourToOffice(double[] dist, int dim, int stops, int[] seq) {
+        boolean[] used = new boolean[stops];
+        seq[stops] = stops;
+        int current = stops;
+        for (int pos = stops - 1; pos >= 0; pos--) {
+            int best = nearestUnused(dist, dim, stops, current, used);
+            used[best] = true;
+            seq[pos] = best;
+            current = best;
+        }
+    }
+
+    private static void nearestNeighbourOpen(double[] dist, int dim, int stops, int[] seq, int[] scratch) {
+        double bestLength = Double.POSITIVE_INFINITY;
+        boolean[] used = new boolean[stops];
+        for (int start = 0; start < stops; start++) {
+            Arrays.fill(used, false);
+            scratch[0] = start;
+            used[start] = true;
+            int current = start;
+            for (int pos = 1; pos < stops; pos++) {
+                int next = nearestUnused(dist, dim, stops, current, used);
+                used[next] = true;
+                scratch[pos] = next;
+                current = next;
+            }
+            double length = pathLength(dist, dim, scratch, stops);
+            if (length < bestLength - EPSILON) {
+                bestLength = length;
+                System.arraycopy(scratch, 0, seq, 0, stops);
+            }
+        }
+    }
+
+    private static int nearestUnused(double[] dist, int dim, int stops, int from, boolean[] used) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < stops; s++) {
+            if (!used[s] && dist[from * dim + s] < bestDistance) {
+                bestDistance = dist[from * dim + s];
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reverse segments seq[i..j] among the stops; the office, if any, stays last.
+     */
+    private static boolean twoOpt(double[] dist, int dim, int stops, int[] seq) {
+        boolean improved = false;
+        for (int i = 0; i < stops - 1; i++) {
+            for (int j = i + 1; j < stops; j++) {
+                double delta = 0.0;
+                if (i > 0) {
+                    delta += dist[seq[i - 1] * dim + seq[j]] - dist[seq[i - 1] * dim + seq[i]];
+                }
+                if (j + 1 < dim) {
+                    delta += dist[seq[i] * dim + seq[j + 1]] - dist[seq[j] * dim + seq[j + 1]];
+                }
+                if (delta < -EPSILON) {
+                    reverse(seq, i, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Move segments of 1-3 stops to another gap, in either orientation.
+     */
+    private static boolean orOpt(double[] dist, int dim, int stops, boolean hasOffice, int[] seq, int[] scratch) {
+        boolean improved = false;
+        for (int length = 1; length <= MAX_OR_OPT_SEGMENT && length < stops; length++) {
+            for (int i = 0; i + length <= stops; i++) {
+                int first = seq[i];
+                int last = seq[i + length - 1];
+                int prev = i > 0 ? seq[i - 1] : -1;
+                int next = i + length < dim ? seq[i + length] : -1;
+                double removeGain = cost(dist, dim, prev, first) + cost(dist, dim, last, next)
+                        - cost(dist, dim, prev, next);
+
+                // Gap g sits between seq[g - 1] and seq[g]; gaps touching the segment are no-ops
+                int bestGap = -1;
+                boolean bestReversed = false;
+                double bestDelta = -EPSILON;
+                int lastGap = hasOffice ? dim - 1 : dim;
+                for (int g = 0; g <= lastGap; g++) {
+                    if (g >= i && g <= i + length)
+                        continue;
+                    int a = g > 0 ? seq[g - 1] : -1;
+                    int b = g < dim ? seq[g] : -1;
+                    double base = cost(dist, dim, a, b);
+                    double forward = cost(dist, dim, a, first) + cost(dist, dim, last, b) - base - removeGain;
+                    double backward = cost(dist, dim, a, last) + cost(dist, dim, first, b) - base - removeGain;
+                    if (forward < bestDelta) {
+                        bestDelta = forward;
+                        bestGap = g;
+                        bestReversed = false;
+                    }
+                    if (backward < bestDelta) {
+                        bestDelta = backward;
+                        bestGap = g;
+                        bestReversed = true;
+                    }
+                }
+
+                if (bestGap >= 0) {
+                    moveSegment(seq, dim, i, length, bestGap, bestReversed, scratch);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static void moveSegment(int[] seq, int dim, int from, int length, int gap, boolean reversed,
+            int[] scratch) {
+        int w = 0;
+        for (int k = 0; k <= dim; k++) {
+            if (k == gap) {
+                for (int s = 0; s < length; s++) {
+                    scratch[w++] = reversed ? seq[from + length - 1 - s] : seq[from + s];
+                }
+            }
+            if (k < dim && (k < from || k >= from + length)) {
+                scratch[w++] = seq[k];
+            }
+        }
+        System.arraycopy(scratch, 0, seq, 0, dim);
+    }
+
+    private static double cost(double[] dist, int dim, int a, int b) {
+        return a < 0 || b < 0 ? 0.0 : dist[a * dim + b];
+    }
+
+    private static void reverse(int[] seq, int i, int j) {
+        while (i < j) {
+            int tmp = seq[i];
+            seq[i++] = seq[j];
+            seq[j--] = tmp;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.commuteiq.platform.pooling;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link GeoKernel} computing chord lengths with the JDK Vector API. Only
+ * loaded reflectively when {@code jdk.incubator.vector} is present.
+ */
+final class VectorGeoKernel extends GeoKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void distancesKm(double x, double y, double z, double[] xs, double[] ys, double[] zs, int count,
+            double[] out) {
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector vz = DoubleVector.broadcast(SPECIES, z);
+        int k = 0;
+        for (int bound = SPECIES.loopBound(count); k < bound; k += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, k).sub(vx);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, k).sub(vy);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, zs, k).sub(vz);
+            dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt().mul(0.5).intoArray(out, k);
+        }
+        for (; k < count; k++) {
+            double dx = xs[k] - x;
+            double dy = ys[k] - y;
+            double dz = zs[k] - z;
+            out[k] = Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5;
+        }
+        halfChordsToKm(out, count);
+    }
+}
@@ -0,0 +1,130 @@
+package com.commuteiq.platform.pooling;
+
+import java.util.*;
+
+/**
+ * Best-fit-decreasing vehicle assignment over a capacity-ordered index.
+ *
+ * Clusters are served largest first. Each takes the smallest free vehicle
+ * whose capacity fits it, in O(log V). A cluster larger than every free
+ * vehicle is split into geographically coherent parts (balanced cuts along
+ * the wider lat/lon axis) that fit the largest free vehicle, and the parts
+ * go back into the queue. No cluster is ever seated beyond
+ * {@code Vehicle.capacity}.
+ */
+public final class VehicleAssigner {
+
+    private VehicleAssigner() {
+    }
+
+    /**
+     * @param capacities seat count of each free vehicle, in fleet order
+     * @param maxPlans   upper bound on plans, e.g. the number of free drivers
+     */
+    public static VehicleAssignment assign(PlanningSnapshot snapshot, Clusters clusters, int[] capacities,
+            int maxPlans) {
+        // capacity -> free vehicle indices in fleet order
+        TreeMap<Integer, ArrayDeque<Integer>> fleet = new TreeMap<>();
+        for (int v = 0; v < capacities.length; v++) {
+            if (capacities[v] > 0) {
+                fleet.computeIfAbsent(capacities[v], k -> new ArrayDeque<>()).addLast(v);
+            }
+        }
+
+        // Largest first; ties by anchor so the outcome is deterministic
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> a.length != b.length
+                ? Integer.compare(b.length, a.length)
+                : Integer.compare(a[0], b[0]));
+        for (int c = 0; c < clusters.count(); c++) {
+            queue.add(clusters.membersOf(c));
+        }
+
+        List<int[]> assigned = new ArrayList<>();
+        List<Integer> vehicles = new ArrayList<>();
+        int splits = 0;
+        int unassignedClusters = 0;
+        int unassignedRiders = 0;
+        int[] unassignedByOffice = new int[snapshot.officeCount()];
+        boolean vehiclesExhausted = false;
+
+        while (!queue.isEmpty()) {
+            int[] cluster = queue.poll();
+            if (fleet.isEmpty() || assigned.size() >= maxPlans) {
+                unassignedClusters++;
+                unassignedRiders += cluster.length;
+                unassignedByOffice[snapshot.officeId(cluster[0])]++;
+                vehiclesExhausted |= fleet.isEmpty();
+                continue;
+            }
+
+            Map.Entry<Integer, ArrayDeque<Integer>> fit = fleet.ceilingEntry(cluster.length);
+            if (fit == null) {
+                int largest = fleet.lastKey();
+                queue.addAll(split(snapshot, cluster, largest));
+                splits++;
+                continue;
+            }
+
+            int vehicle = fit.getValue().pollFirst();
+            if (fit.getValue().isEmpty()) {
+                fleet.remove(fit.getKey());
+            }
+            assigned.add(cluster);
+            vehicles.add(vehicle);
+        }
+
+        // Present plans in anchor order, independent of assignment order
+        Integer[] order = new Integer[assigned.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> assigned.get(i)[0]));
+
+        List<int[]> ordered = new ArrayList<>(order.length);
+        int[] vehicleIndex = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            ordered.add(assigned.get(order[k]));
+            vehicleIndex[k] = vehicles.get(order[k]);
+        }
+
+        return new VehicleAssignment(Clusters.of(ordered), vehicleIndex, unassignedClusters, unassignedRiders,
+                splits, unassignedByOffice, vehiclesExhausted);
+    }
+
+    /**
+     * Cut a cluster into ceil(size / capacity) balanced parts along the axis
+     * with the larger spread. Each part keeps planning order.
+     */
+    static List<int[]> split(PlanningSnapshot snapshot, int[] cluster, int capacity) {
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int m : cluster) {
+            minLat = Math.min(minLat, snapshot.latitude(m));
+            maxLat = Math.max(maxLat, snapshot.latitude(m));
+            minLon = Math.min(minLon, snapshot.longitude(m));
+            maxLon = Math.max(maxLon, snapshot.longitude(m));
+        }
+        double meanLat = Math.toRadians((minLat + maxLat) / 2);
+        boolean byLatitude = (maxLat - minLat) >= (maxLon - minLon) * Math.cos(meanLat);
+
+        Integer[] sorted = new Integer[cluster.length];
+        for (int i = 0; i < cluster.length; i++)
+            sorted[i] = cluster[i];
+        Arrays.sort(sorted, Comparator.comparingDouble((Integer m) -> byLatitude
+                ? snapshot.latitude(m)
+                : snapshot.longitude(m)).thenComparingInt(m -> m));
+
+        int parts = (cluster.length + capacity - 1) / capacity;
+        List<int[]> result = new ArrayList<>(parts);
+        int from = 0;
+        for (int p = 0; p < parts; p++) {
+            int to = (int) ((long) cluster.length * (p + 1) / parts);
+            int[] part = new int[to - from];
+            for (int k = from; k < to; k++)
+                part[k - from] = sorted[k];
+            Arrays.sort(part);
+            result.add(part);
+            from = to;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.commuteiq.platform.pooling;
+
+/**
+ * Result of vehicle assignment: the final clusters (oversized ones split),
+ * the index of the vehicle assigned to each, and what was left unassigned
+ * because the fleet or driver pool ran out.
+ */
+public final class VehicleAssignment {
+
+    private final Clusters clusters;
+    private final int[] vehicleIndex;
+    private final int unassignedClusters;
+    private final int unassignedRiders;
+    private final int splitClusters;
+    private final int[] unassignedClustersByOffice;
+    private final boolean vehiclesExhausted;
+
+    public VehicleAssignment(Clusters clusters, int[] vehicleIndex, int unassignedClusters, int unassignedRiders,
+            int splitClusters, int[] unassignedClustersByOffice, boolean vehiclesExhausted) {
+        this.clusters = clusters;
+        this.vehicleIndex = vehicleIndex;
+        this.unassignedClusters = unassignedClusters;
+        this.unassignedRiders = unassignedRiders;
+        this.splitClusters = splitClusters;
+        this.unassignedClustersByOffice = unassignedClustersByOffice;
+        this.vehiclesExhausted = vehiclesExhausted;
+    }
+
+    /**
+     * Assigned clusters only, in anchor order.
+     */
+    public Clusters clusters() {
+        return clusters;
+    }
+
+    /**
+     * Index into the vehicle pool passed to {@link VehicleAssigner#assign}.
+     */
+    public int vehicleIndex(int cluster) {
+        return vehicleIndex[cluster];
+    }
+
+    public int unassignedClusters() {
+        return unassignedClusters;
+    }
+
+    public int unassignedRiders() {
+        return unassignedRiders;
+    }
+
+    /**
+     * Unassigned clusters of one office id of the snapshot.
+     */
+    public int unassignedClusters(int officeId) {
+        return unassignedClustersByOffice[officeId];
+    }
+
+    /**
+     * Whether clusters were left because no vehicle remained; otherwise any
+     * unassigned clusters are due to the driver pool running out.
+     */
+    public boolean vehiclesExhausted() {
+        return vehiclesExhausted;
+    }
+
+    /**
+     * Number of clusters that had to be split to fit the largest free vehicle.
+     */
+    public int splitClusters() {
+        return splitClusters;
+    }
+}
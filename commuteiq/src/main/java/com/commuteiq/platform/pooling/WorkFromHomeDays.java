@@ -0,0 +1,70 @@
+package com.commuteiq.platform.pooling;
+
+import java.time.DayOfWeek;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weekday bitmasks for {@code CommutePreference.workFromHomeDays}.
+ *
+ * The stored value is free-form; tokens separated by anything other than
+ * letters and digits are read as day names or prefixes of at least two
+ * letters ("MON", "Tue", "thurs") or ISO day numbers 1-7 (1 = Monday).
+ * Unknown tokens are ignored. Bit {@code d - 1} is set for ISO day {@code d}.
+ *
+ * An instance memoises parsed masks by their raw value, so a multi-day run
+ * parses each distinct value once and filters riders per day with a bit test.
+ * Instances are safe to share between threads.
+ */
+public final class WorkFromHomeDays {
+
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    private final Map<String, Integer> masks = new ConcurrentHashMap<>();
+
+    public boolean isHomeOn(String workFromHomeDays, DayOfWeek day) {
+        if (workFromHomeDays == null || workFromHomeDays.isBlank()) {
+            return false;
+        }
+        return isSet(masks.computeIfAbsent(workFromHomeDays, WorkFromHomeDays::parse), day);
+    }
+
+    public static boolean isSet(int mask, DayOfWeek day) {
+        return (mask & bit(day)) != 0;
+    }
+
+    public static int parse(String workFromHomeDays) {
+        int mask = 0;
+        if (workFromHomeDays == null) {
+            return mask;
+        }
+        for (String token : workFromHomeDays.split("[^A-Za-z0-9]+")) {
+            DayOfWeek day = dayOf(token);
+            if (day != null) {
+                mask |= bit(day);
+            }
+        }
+        return mask;
+    }
+
+    private static int bit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    private static DayOfWeek dayOf(String token) {
+        if (token.length() == 1 && token.charAt(0) >= '1' && token.charAt(0) <= '7') {
+            return DayOfWeek.of(token.charAt(0) - '0');
+        }
+        if (token.length() < 2) {
+            return null;
+        }
+        String upper = token.toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DAYS) {
+            if (day.name().startsWith(upper)) {
+                return day;
+            }
+        }
+        return null;
+    }
+}
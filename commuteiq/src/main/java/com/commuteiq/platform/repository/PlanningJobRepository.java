@@ -0,0 +1,71 @@
+package com.commuteiq.platform.repository;
+
+import com.commuteiq.platform.entity.PlanningJob;
+import com.commuteiq.platform.entity.PlanningJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PlanningJobRepository extends JpaRepository<PlanningJob, Long> {
+
+    Optional<PlanningJob> findFirstByDateAndStatusInOrderByIdDesc(LocalDate date, Collection<PlanningJobStatus> statuses);
+
+    List<PlanningJob> findByStatusIn(Collection<PlanningJobStatus> statuses);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.status = :status, j.updatedAt = :now WHERE j.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") PlanningJobStatus status, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.status = :status, j.startedAt = :now, j.finishedAt = NULL, " +
+            "j.errorMessage = NULL, j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id = :id")
+    int markStarted(@Param("id") Long id, @Param("status") PlanningJobStatus status, @Param("now") LocalDateTime now);
+
+    /**
+     * Runs in the caller's chunk transaction, so the checkpoint commits with the plans.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.committedPlans = j.committedPlans + :plans, " +
+            "j.committedRiders = j.committedRiders + :riders, j.updatedAt = :now WHERE j.id = :id")
+    int recordCheckpoint(@Param("id") Long id, @Param("plans") int plans, @Param("riders") int riders,
+            @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.totalPlans = j.committedPlans + :remaining, j.updatedAt = :now " +
+            "WHERE j.id = :id")
+    int updateTotalPlans(@Param("id") Long id, @Param("remaining") int remaining, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.status = :status, j.errorMessage = :error, j.finishedAt = :now, " +
+            "j.updatedAt = :now WHERE j.id = :id")
+    int markFinished(@Param("id") Long id, @Param("status") PlanningJobStatus status,
+            @Param("error") String error, @Param("now") LocalDateTime now);
+
+    /**
+     * Fail a job left QUEUED or RUNNING by a lost instance; a job that made
+     * progress since {@code staleBefore} is left alone.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningJob j SET j.status = :status, j.errorMessage = :error, j.finishedAt = :now, " +
+            "j.updatedAt = :now WHERE j.id = :id AND j.status IN :statuses " +
+            "AND (j.updatedAt IS NULL OR j.updatedAt < :staleBefore)")
+    int markAbandoned(@Param("id") Long id, @Param("statuses") Collection<PlanningJobStatus> statuses,
+            @Param("status") PlanningJobStatus status, @Param("error") String error,
+            @Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,47 @@
+package com.commuteiq.platform.repository;
+
+import com.commuteiq.platform.entity.PlanningLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Repository
+public interface PlanningLeaseRepository extends JpaRepository<PlanningLease, LocalDate> {
+
+    boolean existsByDateAndExpiresAtAfter(LocalDate date, LocalDateTime now);
+
+    /**
+     * Plain INSERT, so a concurrent holder makes it fail on the primary key
+     * instead of being overwritten as {@code save} would.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO planning_leases (date, owner, acquired_at, expires_at) " +
+            "VALUES (:date, :owner, :now, :expiresAt)", nativeQuery = true)
+    int insert(@Param("date") LocalDate date, @Param("owner") String owner, @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningLease l SET l.owner = :owner, l.acquiredAt = :now, l.expiresAt = :expiresAt " +
+            "WHERE l.date = :date AND (l.expiresAt < :now OR l.owner = :owner)")
+    int takeOver(@Param("date") LocalDate date, @Param("owner") String owner, @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanningLease l SET l.expiresAt = :expiresAt WHERE l.date = :date AND l.owner = :owner")
+    int renew(@Param("date") LocalDate date, @Param("owner") String owner,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PlanningLease l WHERE l.date = :date AND l.owner = :owner")
+    int release(@Param("date") LocalDate date, @Param("owner") String owner);
+}
@@ -1,9 +1,16 @@
 package com.commuteiq.platform.repository;
 
 import com.commuteiq.platform.entity.RidePlanEmployee;
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.repository.projection.OpenPlanStopRow;
+import com.commuteiq.platform.repository.projection.RouteStopRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -12,4 +19,38 @@ public interface RidePlanEmployeeRepository extends JpaRepository<RidePlanEmploy
     List<RidePlanEmployee> findByRidePlanId(Long ridePlanId);
 
     List<RidePlanEmployee> findByEmployeeId(Long employeeId);
+
+    @Query("SELECT new com.commuteiq.platform.repository.projection.OpenPlanStopRow(" +
+            "rp.id, v.capacity, rpe.stopOrder, e.id, e.homeLatitude, e.homeLongitude, e.officeLocation, e.gender, " +
+            "p.pickupStartTime, p.pickupEndTime, p.sameGenderRequired) " +
+            "FROM RidePlanEmployee rpe JOIN rpe.ridePlan rp JOIN rp.vehicle v JOIN rpe.employee e " +
+            "LEFT JOIN e.commutePreference p " +
+            "WHERE rp.date = :date AND rp.status = :status ORDER BY rp.id, rpe.stopOrder")
+    List<OpenPlanStopRow> findStopRowsByDateAndStatus(@Param("date") LocalDate date,
+            @Param("status") RidePlanStatus status);
+
+    @Query("SELECT new com.commuteiq.platform.repository.projection.RouteStopRow(" +
+            "rpe.stopOrder, e.homeLatitude, e.homeLongitude, e.officeLocation) " +
+            "FROM RidePlanEmployee rpe JOIN rpe.employee e " +
+            "WHERE rpe.ridePlan.id = :ridePlanId ORDER BY rpe.stopOrder")
+    List<RouteStopRow> findRouteStopsByRidePlanId(@Param("ridePlanId") Long ridePlanId);
+
+    @Query("SELECT rpe.employee.id FROM RidePlanEmployee rpe WHERE rpe.ridePlan.id = :ridePlanId " +
+            "ORDER BY rpe.stopOrder")
+    List<Long> findEmployeeIdsByRidePlanId(@Param("ridePlanId") Long ridePlanId);
+
+    @Query("SELECT COUNT(rpe) > 0 FROM RidePlanEmployee rpe " +
+            "WHERE rpe.employee.id = :employeeId AND rpe.ridePlan.date = :date AND rpe.ridePlan.status = :status")
+    boolean existsByEmployeeIdAndDateAndStatus(@Param("employeeId") Long employeeId, @Param("date") LocalDate date,
+            @Param("status") RidePlanStatus status);
+
+    @Modifying
+    @Query("UPDATE RidePlanEmployee rpe SET rpe.stopOrder = rpe.stopOrder + :delta " +
+            "WHERE rpe.ridePlan.id = :ridePlanId AND rpe.stopOrder >= :fromOrder")
+    int shiftStopOrders(@Param("ridePlanId") Long ridePlanId, @Param("fromOrder") int fromOrder,
+            @Param("delta") int delta);
+
+    @Modifying
+    @Query("DELETE FROM RidePlanEmployee rpe WHERE rpe.ridePlan.id = :ridePlanId AND rpe.employee.id = :employeeId")
+    int deleteByRidePlanIdAndEmployeeId(@Param("ridePlanId") Long ridePlanId, @Param("employeeId") Long employeeId);
 }
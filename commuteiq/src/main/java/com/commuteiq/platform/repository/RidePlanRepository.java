@@ -2,15 +2,20 @@ package com.commuteiq.platform.repository;
 
 import com.commuteiq.platform.entity.RidePlan;
 import com.commuteiq.platform.entity.RidePlanStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RidePlanRepository extends JpaRepository<RidePlan, Long> {
@@ -32,4 +37,30 @@ public interface RidePlanRepository extends JpaRepository<RidePlan, Long> {
 
     @Query("SELECT rp FROM RidePlan rp WHERE rp.driver.id = :driverId AND rp.date = :date")
     List<RidePlan> findByDriverIdAndDate(@Param("driverId") Long driverId, @Param("date") LocalDate date);
+
+    @Query("SELECT DISTINCT rp.vehicle.id FROM RidePlan rp WHERE rp.date = :date " +
+            "AND rp.status <> com.commuteiq.platform.entity.RidePlanStatus.CANCELLED")
+    List<Long> findVehicleIdsByDate(@Param("date") LocalDate date);
+
+    @Query("SELECT DISTINCT rp.driver.id FROM RidePlan rp WHERE rp.date = :date " +
+            "AND rp.status <> com.commuteiq.platform.entity.RidePlanStatus.CANCELLED")
+    List<Long> findDriverIdsByDate(@Param("date") LocalDate date);
+
+    /**
+     * Lock a plan's row for the rest of the transaction, so seat changes on
+     * the same plan from any instance are serialized.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT rp FROM RidePlan rp WHERE rp.id = :id")
+    Optional<RidePlan> findByIdForUpdate(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE RidePlan rp SET rp.estimatedDistance = :distance, rp.estimatedDuration = :duration, " +
+            "rp.updatedAt = :now WHERE rp.id = :id")
+    int updateEstimates(@Param("id") Long id, @Param("distance") Double distance,
+            @Param("duration") Double duration, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RidePlan rp SET rp.status = :status, rp.updatedAt = :now WHERE rp.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") RidePlanStatus status, @Param("now") LocalDateTime now);
 }
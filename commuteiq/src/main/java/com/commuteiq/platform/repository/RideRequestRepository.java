@@ -2,12 +2,18 @@ package com.commuteiq.platform.repository;
 
 import com.commuteiq.platform.entity.RideRequest;
 import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,4 +26,23 @@ public interface RideRequestRepository extends JpaRepository<RideRequest, Long>
     List<RideRequest> findByRequestDate(LocalDate requestDate);
 
     long countByStatusAndRequestDate(RideRequestStatus status, LocalDate requestDate);
+
+    @Query("SELECT new com.commuteiq.platform.repository.projection.PendingRequestRow(" +
+            "r.id, e.id, e.name, e.gender, e.homeLatitude, e.homeLongitude, e.officeLocation, " +
+            "p.pickupStartTime, p.pickupEndTime, p.sameGenderRequired, p.workFromHomeDays) " +
+            "FROM RideRequest r JOIN r.employee e LEFT JOIN e.commutePreference p " +
+            "WHERE r.status = :status AND r.requestDate = :date ORDER BY r.id")
+    List<PendingRequestRow> findRequestRowsByStatusAndDate(@Param("status") RideRequestStatus status,
+            @Param("date") LocalDate date);
+
+    /**
+     * Move the given requests from {@code expected} to {@code status}; requests
+     * no longer in {@code expected} (e.g. cancelled meanwhile) are left as they are.
+     */
+    @Modifying
+    @Query("UPDATE RideRequest r SET r.status = :status, r.updatedAt = :now " +
+            "WHERE r.id IN :ids AND r.status = :expected")
+    int updateStatusByIdInAndStatus(@Param("ids") Collection<Long> ids,
+            @Param("expected") RideRequestStatus expected, @Param("status") RideRequestStatus status,
+            @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,27 @@
+package com.commuteiq.platform.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalTime;
+
+/**
+ * One stop of a SCHEDULED ride plan with the data needed to insert or remove
+ * riders online: plan capacity plus the stop's employee location, office,
+ * gender and (optional) commute preference.
+ */
+@Getter
+@AllArgsConstructor
+public class OpenPlanStopRow {
+    private Long ridePlanId;
+    private Integer capacity;
+    private Integer stopOrder;
+    private Long employeeId;
+    private Double homeLatitude;
+    private Double homeLongitude;
+    private String officeLocation;
+    private String gender;
+    private LocalTime pickupStartTime;
+    private LocalTime pickupEndTime;
+    private Boolean sameGenderRequired;
+}
@@ -0,0 +1,27 @@
+package com.commuteiq.platform.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalTime;
+
+/**
+ * Flat read model of a pending ride request joined with its employee and
+ * (optional) commute preference. Preference columns are null for employees
+ * without a preference, who are treated as fully flexible.
+ */
+@Getter
+@AllArgsConstructor
+public class PendingRequestRow {
+    private Long requestId;
+    private Long employeeId;
+    private String employeeName;
+    private String gender;
+    private Double homeLatitude;
+    private Double homeLongitude;
+    private String officeLocation;
+    private LocalTime pickupStartTime;
+    private LocalTime pickupEndTime;
+    private Boolean sameGenderRequired;
+    private String workFromHomeDays;
+}
@@ -0,0 +1,17 @@
+package com.commuteiq.platform.repository.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One stop of a ride plan in stop order: the rider's home location and
+ * office, used to lay out the plan's route corridor.
+ */
+@Getter
+@AllArgsConstructor
+public class RouteStopRow {
+    private Integer stopOrder;
+    private Double homeLatitude;
+    private Double homeLongitude;
+    private String officeLocation;
+}
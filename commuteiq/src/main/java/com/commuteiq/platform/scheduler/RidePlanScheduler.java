@@ -1,34 +1,44 @@
 package com.commuteiq.platform.scheduler;
 
-import com.commuteiq.platform.service.RidePlanningService;
+import com.commuteiq.platform.dto.response.PlanningJobResponse;
+import com.commuteiq.platform.service.PlanningJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Daily scheduler that automatically generates ride plans for the next day
- * from all pending ride requests. Runs at 10:00 PM every day.
+ * from all pending ride requests. Runs at 10:00 PM every day, submitting
+ * planning jobs like {@code POST /api/ride-plans/generate-horizon} does for the
+ * next {@code app.pooling.horizon-days} days (1 by default); days already
+ * planned the night before only pick up requests still PENDING.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class RidePlanScheduler {
 
-    private final RidePlanningService ridePlanningService;
+    private final PlanningJobService planningJobService;
+
+    @Value("${app.pooling.horizon-days:1}")
+    private int horizonDays;
 
     @Scheduled(cron = "0 0 22 * * *")
     public void generateNextDayRidePlans() {
         LocalDate tomorrow = LocalDate.now().plusDays(1);
-        log.info("Scheduler triggered: generating ride plans for {}", tomorrow);
+        LocalDate last = tomorrow.plusDays(Math.max(1, horizonDays) - 1);
+        log.info("Scheduler triggered: generating ride plans for {} to {}", tomorrow, last);
 
         try {
-            var plans = ridePlanningService.generatePlansForDate(tomorrow);
-            log.info("Scheduler completed: {} ride plans generated for {}", plans.size(), tomorrow);
+            List<PlanningJobResponse> jobs = planningJobService.submitHorizon(tomorrow, last);
+            log.info("Scheduler submitted {} planning jobs for {} to {}", jobs.size(), tomorrow, last);
         } catch (Exception e) {
-            log.error("Scheduler failed for date {}: {}", tomorrow, e.getMessage(), e);
+            log.error("Scheduler failed for dates {} to {}: {}", tomorrow, last, e.getMessage(), e);
         }
     }
 }
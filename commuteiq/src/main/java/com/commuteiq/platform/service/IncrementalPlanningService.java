@@ -0,0 +1,22 @@
+package com.commuteiq.platform.service;
+
+import com.commuteiq.platform.entity.RideRequest;
+
+/**
+ * Keeps already generated ride plans up to date as requests arrive or are
+ * cancelled, without re-running the full pooling engine.
+ */
+public interface IncrementalPlanningService {
+
+    /**
+     * Add the rider of a new request to a compatible SCHEDULED plan for its
+     * date and mark it PLANNED. Returns false if no plan can take the rider.
+     */
+    boolean assignToOpenPlan(RideRequest rideRequest);
+
+    /**
+     * Free the seat a PLANNED request holds on a SCHEDULED plan. Returns false
+     * if the request is not on a plan that can still change.
+     */
+    boolean releaseSeat(RideRequest rideRequest);
+}
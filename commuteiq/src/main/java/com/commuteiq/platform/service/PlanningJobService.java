@@ -0,0 +1,29 @@
+package com.commuteiq.platform.service;
+
+import com.commuteiq.platform.dto.response.PlanningJobResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface PlanningJobService {
+
+    PlanningJobResponse submit(LocalDate date);
+
+    /**
+     * Submit one job per date from {@code from} to {@code to} inclusive, planned
+     * together in parallel. Dates with an active job get that job back.
+     */
+    List<PlanningJobResponse> submitHorizon(LocalDate from, LocalDate to);
+
+    PlanningJobResponse resume(Long jobId);
+
+    PlanningJobResponse getJob(Long jobId);
+
+    /**
+     * Write the job's committed plans to {@code out} as NDJSON, following the
+     * job until it finishes.
+     */
+    void streamPlans(Long jobId, OutputStream out) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.commuteiq.platform.service;
+
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+
+import java.util.List;
+
+/**
+ * Progress callbacks for one ride plan generation run.
+ */
+public interface PlanningProgressListener {
+
+    PlanningProgressListener NONE = new PlanningProgressListener() {
+    };
+
+    /**
+     * Plans are built and about to be written.
+     */
+    default void planned(int plans, int riders) {
+    }
+
+    /**
+     * Inside the transaction of a chunk of plans, after its rows are written;
+     * once for all plans, outside any transaction, when the run joined one
+     * already in flight for the date.
+     */
+    default void chunkWritten(int plans, int riders) {
+    }
+
+    /**
+     * A chunk of plans has been committed.
+     */
+    default void chunkCommitted(List<RidePlanResponse> plans) {
+    }
+
+    /**
+     * A phase of the run finished after {@code nanos} of wall time. Phases, in
+     * order: load, snapshot, clustering, improvement, assignment, routing,
+     * write. Not called when the run joined one already in flight.
+     */
+    default void phaseCompleted(String phase, long nanos) {
+    }
+}
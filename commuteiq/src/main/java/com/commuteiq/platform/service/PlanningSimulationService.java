@@ -0,0 +1,9 @@
+package com.commuteiq.platform.service;
+
+import com.commuteiq.platform.dto.request.PlanningSimulationRequest;
+import com.commuteiq.platform.dto.response.PlanningSimulationResponse;
+
+public interface PlanningSimulationService {
+
+    PlanningSimulationResponse simulate(PlanningSimulationRequest request);
+}
@@ -4,8 +4,20 @@ import com.commuteiq.platform.dto.response.RidePlanResponse;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public interface RidePlanningService {
 
     List<RidePlanResponse> generatePlansForDate(LocalDate date);
+
+    List<RidePlanResponse> generatePlansForDate(LocalDate date, PlanningProgressListener listener);
+
+    /**
+     * Plan every date from {@code from} to {@code to} inclusive in parallel,
+     * returning one future per date in date order.
+     */
+    Map<LocalDate, CompletableFuture<List<RidePlanResponse>>> generatePlansForRange(LocalDate from, LocalDate to,
+            Function<LocalDate, PlanningProgressListener> listeners);
 }
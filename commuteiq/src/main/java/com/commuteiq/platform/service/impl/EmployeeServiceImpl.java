@@ -7,6 +7,7 @@ import com.commuteiq.platform.entity.CommutePreference;
 import com.commuteiq.platform.entity.Employee;
 import com.commuteiq.platform.exception.ResourceNotFoundException;
 import com.commuteiq.platform.mapper.EmployeeMapper;
+import com.commuteiq.platform.pooling.DistanceMatrixCache;
 import com.commuteiq.platform.repository.CommutePreferenceRepository;
 import com.commuteiq.platform.repository.EmployeeRepository;
 import com.commuteiq.platform.service.EmployeeService;
@@ -16,6 +17,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Objects;
+
 @Service
 @RequiredArgsConstructor
 @Transactional
@@ -24,6 +27,7 @@ public class EmployeeServiceImpl implements EmployeeService {
     private final EmployeeRepository employeeRepository;
     private final CommutePreferenceRepository commutePreferenceRepository;
     private final EmployeeMapper employeeMapper;
+    private final DistanceMatrixCache distanceMatrixCache;
 
     @Override
     public EmployeeResponse createEmployee(EmployeeRequest request) {
@@ -52,8 +56,18 @@ public class EmployeeServiceImpl implements EmployeeService {
     public EmployeeResponse updateEmployee(Long id, EmployeeRequest request) {
         Employee employee = employeeRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Employee", "id", id));
+        String office = employee.getOfficeLocation();
+        Double latitude = employee.getHomeLatitude();
+        Double longitude = employee.getHomeLongitude();
         employeeMapper.updateEntity(request, employee);
         Employee saved = employeeRepository.save(employee);
+
+        // Only this employee's cached distances depend on their home location
+        if (!Objects.equals(office, saved.getOfficeLocation())
+                || !Objects.equals(latitude, saved.getHomeLatitude())
+                || !Objects.equals(longitude, saved.getHomeLongitude())) {
+            distanceMatrixCache.evictEmployee(office, id);
+        }
         return employeeMapper.toResponse(saved);
     }
 
@@ -0,0 +1,174 @@
+package com.commuteiq.platform.service.impl;
+
+import com.commuteiq.platform.entity.CommutePreference;
+import com.commuteiq.platform.entity.Employee;
+import com.commuteiq.platform.entity.RidePlan;
+import com.commuteiq.platform.entity.RidePlanEmployee;
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.entity.RideRequest;
+import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.pooling.OpenPlanIndex;
+import com.commuteiq.platform.repository.CommutePreferenceRepository;
+import com.commuteiq.platform.repository.RidePlanEmployeeRepository;
+import com.commuteiq.platform.repository.RidePlanRepository;
+import com.commuteiq.platform.service.IncrementalPlanningService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Online plan maintenance on top of {@link OpenPlanIndex}.
+ *
+ * - A new request joins the open plan with the cheapest insertion; later stops
+ * shift down one place and the plan's distance/duration estimates are updated
+ * - A cancelled PLANNED request is removed in place; later stops shift up, and
+ * a plan left without riders is CANCELLED so its vehicle and driver are free
+ * for the next generation run
+ * - The index is per instance, so it only proposes the plan: the plan's row is
+ * locked and its status, riders and free seats are checked in the database
+ * before writing. When another instance changed the plan, the date is
+ * reloaded and the change retried, up to {@value #MAX_ATTEMPTS} times
+ * - An employee who already rides on a SCHEDULED plan that date is not added
+ * again
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class IncrementalPlanningServiceImpl implements IncrementalPlanningService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OpenPlanIndex openPlanIndex;
+    private final CommutePreferenceRepository commutePreferenceRepository;
+    private final RidePlanRepository ridePlanRepository;
+    private final RidePlanEmployeeRepository ridePlanEmployeeRepository;
+
+    @Value("${app.pooling.online-enabled:true}")
+    private boolean onlineEnabled;
+
+    @Override
+    public boolean assignToOpenPlan(RideRequest rideRequest) {
+        if (!onlineEnabled) {
+            return false;
+        }
+
+        Employee employee = rideRequest.getEmployee();
+        CommutePreference preference = commutePreferenceRepository.findByEmployeeId(employee.getId()).orElse(null);
+        OpenPlanIndex.OpenStop rider = OpenPlanIndex.OpenStop.of(employee.getId(),
+                employee.getHomeLatitude(), employee.getHomeLongitude(), employee.getOfficeLocation(),
+                employee.getGender(),
+                preference != null ? preference.getPickupStartTime() : null,
+                preference != null ? preference.getPickupEndTime() : null,
+                preference != null ? preference.getSameGenderRequired() : null);
+
+        LocalDate date = rideRequest.getRequestDate();
+        if (ridePlanEmployeeRepository.existsByEmployeeIdAndDateAndStatus(employee.getId(), date,
+                RidePlanStatus.SCHEDULED)) {
+            log.info("Employee {} already rides on a scheduled plan for {}", employee.getId(), date);
+            return false;
+        }
+
+        OpenPlanIndex.Insertion insertion = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && insertion == null; attempt++) {
+            Optional<OpenPlanIndex.Insertion> reserved = openPlanIndex.reserveSeat(date, rider);
+            if (reserved.isEmpty()) {
+                return false;
+            }
+            OpenPlanIndex.Insertion candidate = reserved.get();
+            RidePlan plan = lockUnchanged(candidate.getRidePlanId(), candidate.getEmployeeIdsBefore());
+            if (plan != null && candidate.getEmployeeIdsBefore().size() < plan.getVehicle().getCapacity()) {
+                insertion = candidate;
+            } else {
+                openPlanIndex.evict(date);
+            }
+        }
+        if (insertion == null) {
+            log.warn("Open plans for {} kept changing, leaving employee {} PENDING", date, employee.getId());
+            return false;
+        }
+
+        ridePlanEmployeeRepository.shiftStopOrders(insertion.getRidePlanId(), insertion.getStopOrder(), 1);
+        ridePlanEmployeeRepository.save(RidePlanEmployee.builder()
+                .ridePlan(ridePlanRepository.getReferenceById(insertion.getRidePlanId()))
+                .employee(employee)
+                .stopOrder(insertion.getStopOrder())
+                .build());
+        updateEstimates(insertion.getRidePlanId(), insertion.getDistanceKm());
+        rideRequest.setStatus(RideRequestStatus.PLANNED);
+
+        log.info("Added employee {} to ride plan {} at stop {}", employee.getId(), insertion.getRidePlanId(),
+                insertion.getStopOrder());
+        return true;
+    }
+
+    @Override
+    public boolean releaseSeat(RideRequest rideRequest) {
+        if (rideRequest.getStatus() != RideRequestStatus.PLANNED) {
+            return false;
+        }
+
+        Long employeeId = rideRequest.getEmployee().getId();
+        LocalDate date = rideRequest.getRequestDate();
+        OpenPlanIndex.Removal removal = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && removal == null; attempt++) {
+            Optional<OpenPlanIndex.Removal> released = openPlanIndex.releaseSeat(date, employeeId);
+            if (released.isEmpty()) {
+                return false;
+            }
+            OpenPlanIndex.Removal candidate = released.get();
+            if (lockUnchanged(candidate.getRidePlanId(), candidate.getEmployeeIdsBefore()) != null) {
+                removal = candidate;
+            } else {
+                openPlanIndex.evict(date);
+            }
+        }
+        if (removal == null) {
+            log.warn("Open plans for {} kept changing, could not remove employee {}", date, employeeId);
+            return false;
+        }
+
+        ridePlanEmployeeRepository.deleteByRidePlanIdAndEmployeeId(removal.getRidePlanId(), employeeId);
+        if (removal.getRemainingRiders() == 0) {
+            ridePlanRepository.updateStatus(removal.getRidePlanId(), RidePlanStatus.CANCELLED, LocalDateTime.now());
+            log.info("Cancelled ride plan {} after its last rider left", removal.getRidePlanId());
+            return true;
+        }
+
+        ridePlanEmployeeRepository.shiftStopOrders(removal.getRidePlanId(), removal.getStopOrder() + 1, -1);
+        updateEstimates(removal.getRidePlanId(), removal.getDistanceKm());
+        log.info("Removed employee {} from ride plan {}", employeeId, removal.getRidePlanId());
+        return true;
+    }
+
+    /**
+     * Lock the plan's row and check that it is still SCHEDULED with exactly
+     * the riders, in stop order, that the index planned against.
+     *
+     * @return the locked plan, or null when the index is stale
+     */
+    private RidePlan lockUnchanged(long ridePlanId, List<Long> employeeIdsBefore) {
+        RidePlan plan = ridePlanRepository.findByIdForUpdate(ridePlanId).orElse(null);
+        if (plan == null || plan.getStatus() != RidePlanStatus.SCHEDULED
+                || !ridePlanEmployeeRepository.findEmployeeIdsByRidePlanId(ridePlanId).equals(employeeIdsBefore)) {
+            log.info("Ride plan {} was changed elsewhere, reloading its date", ridePlanId);
+            return null;
+        }
+        return plan;
+    }
+
+    private void updateEstimates(long ridePlanId, double distanceKm) {
+        double estimatedDuration = distanceKm / 30.0 * 60.0; // Assume 30 km/h avg → minutes
+        ridePlanRepository.updateEstimates(ridePlanId,
+                Math.round(distanceKm * 100.0) / 100.0,
+                Math.round(estimatedDuration * 100.0) / 100.0,
+                LocalDateTime.now());
+    }
+}
@@ -0,0 +1,416 @@
+package com.commuteiq.platform.service.impl;
+
+import com.commuteiq.platform.dto.response.PlanningJobResponse;
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.entity.PlanningJob;
+import com.commuteiq.platform.entity.PlanningJobStatus;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import com.commuteiq.platform.exception.ResourceNotFoundException;
+import com.commuteiq.platform.repository.PlanningJobRepository;
+import com.commuteiq.platform.repository.PlanningLeaseRepository;
+import com.commuteiq.platform.service.PlanningJobService;
+import com.commuteiq.platform.service.PlanningProgressListener;
+import com.commuteiq.platform.service.RidePlanService;
+import com.commuteiq.platform.service.RidePlanningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs ride plan generation as background jobs.
+ *
+ * - Submitting stores a QUEUED {@link PlanningJob} and returns at once; the
+ * run happens on the planning job executor. A date with a QUEUED or RUNNING
+ * job gets that job back, and jobs that still race join the same run
+ * - Plans are committed in chunks, and each chunk's transaction also advances
+ * the job's checkpoint, so a FAILED job shows exactly what was committed
+ * - A horizon submits one job per date but runs them as a single task that
+ * plans the dates in parallel
+ * - Resuming a FAILED job, or a QUEUED/RUNNING one that is no longer live,
+ * re-runs its date; committed requests are already PLANNED, so only the
+ * remaining PENDING ones are planned
+ * - While an attempt runs, its committed plans are kept in memory for NDJSON
+ * streaming; afterwards the stream is served from the database. A follower
+ * waiting for plans writes an empty keep-alive line every few seconds, which
+ * also ends the stream once the client is gone, and gives up shortly before
+ * {@code spring.mvc.async.request-timeout}
+ * - A QUEUED or RUNNING job only counts as active while it is live: queued or
+ * running here, its date leased by some instance, or updated within the lease
+ * TTL. Jobs left behind by a lost instance are marked FAILED at startup and
+ * whenever their date is submitted again
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlanningJobServiceImpl implements PlanningJobService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int MAX_HORIZON_DAYS = 14;
+    private static final List<PlanningJobStatus> ACTIVE = List.of(PlanningJobStatus.QUEUED, PlanningJobStatus.RUNNING);
+    private static final String ABANDONED = "Planning job was abandoned by its instance";
+    private static final long KEEP_ALIVE_MILLIS = 15_000L;
+
+    private final PlanningJobRepository planningJobRepository;
+    private final PlanningLeaseRepository planningLeaseRepository;
+    private final RidePlanningService ridePlanningService;
+    private final RidePlanService ridePlanService;
+    private final ThreadPoolTaskExecutor planningJobExecutor;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, JobFeed> feeds = new ConcurrentHashMap<>();
+
+    @Value("${app.pooling.lease-ttl-seconds:300}")
+    private long leaseTtlSeconds;
+
+    @Value("${spring.mvc.async.request-timeout:30m}")
+    private Duration streamTimeout;
+
+    /**
+     * Fail QUEUED and RUNNING jobs that no instance is working on anymore,
+     * e.g. after a crash.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failAbandonedJobs() {
+        int failed = 0;
+        for (PlanningJob job : planningJobRepository.findByStatusIn(ACTIVE)) {
+            if (!isLive(job) && abandon(job)) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("Marked {} abandoned planning jobs as FAILED", failed);
+        }
+    }
+
+    @Override
+    public PlanningJobResponse submit(LocalDate date) {
+        PlanningJob active = findActive(date);
+        if (active != null) {
+            return toResponse(active);
+        }
+        PlanningJob job = planningJobRepository.save(PlanningJob.builder().date(date).build());
+        start(job);
+        log.info("Queued planning job {} for date: {}", job.getId(), date);
+        return toResponse(job);
+    }
+
+    @Override
+    public List<PlanningJobResponse> submitHorizon(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new InvalidOperationException("Horizon end " + to + " is before its start " + from);
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_HORIZON_DAYS) {
+            throw new InvalidOperationException("A planning horizon can span at most " + MAX_HORIZON_DAYS + " days");
+        }
+
+        List<PlanningJob> jobs = new ArrayList<>();
+        List<PlanningJobResponse> responses = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            PlanningJob active = findActive(date);
+            if (active != null) {
+                responses.add(toResponse(active));
+            } else {
+                PlanningJob job = planningJobRepository.save(PlanningJob.builder().date(date).build());
+                jobs.add(job);
+                responses.add(toResponse(job));
+            }
+        }
+        if (jobs.isEmpty()) {
+            return responses;
+        }
+
+        Map<LocalDate, Long> jobIds = new HashMap<>();
+        Map<LocalDate, JobFeed> jobFeeds = new HashMap<>();
+        for (PlanningJob job : jobs) {
+            JobFeed feed = new JobFeed();
+            feeds.put(job.getId(), feed);
+            jobIds.put(job.getDate(), job.getId());
+            jobFeeds.put(job.getDate(), feed);
+        }
+        try {
+            planningJobExecutor.execute(() -> runHorizon(from, to, jobIds, jobFeeds));
+        } catch (TaskRejectedException e) {
+            for (PlanningJob job : jobs) {
+                rejected(job.getId(), jobFeeds.get(job.getDate()));
+            }
+            throw new InvalidOperationException("Planning queue is full, try again later");
+        }
+        log.info("Queued {} planning jobs for {} to {}", jobs.size(), from, to);
+        return responses;
+    }
+
+    @Override
+    public PlanningJobResponse resume(Long jobId) {
+        PlanningJob job = findJob(jobId);
+        boolean abandoned = ACTIVE.contains(job.getStatus()) && !isLive(job);
+        if (job.getStatus() != PlanningJobStatus.FAILED && !abandoned) {
+            throw new InvalidOperationException("Only FAILED or abandoned planning jobs can be resumed");
+        }
+        start(job);
+        log.info("Resuming planning job {} for date: {} after {} committed plans", jobId, job.getDate(),
+                job.getCommittedPlans());
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public PlanningJobResponse getJob(Long jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public void streamPlans(Long jobId, OutputStream out) throws IOException {
+        PlanningJob job = findJob(jobId);
+        JobFeed feed = feeds.get(jobId);
+        if (feed == null) {
+            writeLines(ridePlanService.getRidePlansByDate(job.getDate()), out);
+            return;
+        }
+
+        int sent = 0;
+        long deadline = System.nanoTime() + streamTimeout.minusMillis(KEEP_ALIVE_MILLIS).toNanos();
+        try {
+            List<RidePlanResponse> next;
+            while ((next = feed.next(sent, KEEP_ALIVE_MILLIS)) != null) {
+                if (!next.isEmpty()) {
+                    writeLines(next, out);
+                    sent += next.size();
+                } else if (System.nanoTime() - deadline > 0) {
+                    log.info("Stopped streaming planning job {} after {} plans before the request timed out",
+                            jobId, sent);
+                    return;
+                } else {
+                    // Fails with an IOException once the client has gone away
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming planning job " + jobId);
+        }
+    }
+
+    private void start(PlanningJob job) {
+        JobFeed feed = new JobFeed();
+        feeds.put(job.getId(), feed);
+        planningJobRepository.updateStatus(job.getId(), PlanningJobStatus.QUEUED, LocalDateTime.now());
+        try {
+            planningJobExecutor.execute(() -> run(job.getId(), job.getDate(), feed));
+        } catch (TaskRejectedException e) {
+            rejected(job.getId(), feed);
+            throw new InvalidOperationException("Planning queue is full, try again later");
+        }
+    }
+
+    private void rejected(Long jobId, JobFeed feed) {
+        feeds.remove(jobId, feed);
+        feed.finish();
+        planningJobRepository.markFinished(jobId, PlanningJobStatus.FAILED, "Planning queue is full",
+                LocalDateTime.now());
+    }
+
+    private void run(Long jobId, LocalDate date, JobFeed feed) {
+        planningJobRepository.markStarted(jobId, PlanningJobStatus.RUNNING, LocalDateTime.now());
+        try {
+            ridePlanningService.generatePlansForDate(date, progressListener(jobId, feed));
+            finished(jobId, date, feed, null);
+        } catch (Exception e) {
+            finished(jobId, date, feed, e);
+        }
+    }
+
+    /**
+     * Dates of the range without a job in {@code jobIds} already had an active
+     * job; they are still planned and join that job's run if it is in flight.
+     */
+    private void runHorizon(LocalDate from, LocalDate to, Map<LocalDate, Long> jobIds,
+            Map<LocalDate, JobFeed> jobFeeds) {
+        for (Long jobId : jobIds.values()) {
+            planningJobRepository.markStarted(jobId, PlanningJobStatus.RUNNING, LocalDateTime.now());
+        }
+        Map<LocalDate, CompletableFuture<List<RidePlanResponse>>> days;
+        try {
+            days = ridePlanningService.generatePlansForRange(from, to, date -> jobIds.containsKey(date)
+                    ? progressListener(jobIds.get(date), jobFeeds.get(date))
+                    : PlanningProgressListener.NONE);
+        } catch (Exception e) {
+            jobIds.forEach((date, jobId) -> finished(jobId, date, jobFeeds.get(date), e));
+            return;
+        }
+
+        days.forEach((date, day) -> {
+            Long jobId = jobIds.get(date);
+            try {
+                day.join();
+                if (jobId != null) {
+                    finished(jobId, date, jobFeeds.get(date), null);
+                }
+            } catch (CompletionException e) {
+                Exception cause = e.getCause() instanceof Exception ex ? ex : e;
+                if (jobId != null) {
+                    finished(jobId, date, jobFeeds.get(date), cause);
+                } else {
+                    log.warn("Horizon planning for date {} failed: {}", date, cause.getMessage());
+                }
+            }
+        });
+    }
+
+    private PlanningProgressListener progressListener(Long jobId, JobFeed feed) {
+        return new PlanningProgressListener() {
+            @Override
+            public void planned(int plans, int riders) {
+                planningJobRepository.updateTotalPlans(jobId, plans, LocalDateTime.now());
+            }
+
+            @Override
+            public void chunkWritten(int plans, int riders) {
+                planningJobRepository.recordCheckpoint(jobId, plans, riders, LocalDateTime.now());
+            }
+
+            @Override
+            public void chunkCommitted(List<RidePlanResponse> plans) {
+                feed.publish(plans);
+            }
+        };
+    }
+
+    private void finished(Long jobId, LocalDate date, JobFeed feed, Exception error) {
+        try {
+            if (error == null) {
+                planningJobRepository.markFinished(jobId, PlanningJobStatus.COMPLETED, null, LocalDateTime.now());
+                log.info("Planning job {} completed for date: {}", jobId, date);
+            } else {
+                log.error("Planning job {} failed for date {}: {}", jobId, date, error.getMessage(), error);
+                String message = String.valueOf(error.getMessage());
+                planningJobRepository.markFinished(jobId, PlanningJobStatus.FAILED,
+                        message.substring(0, Math.min(message.length(), MAX_ERROR_LENGTH)), LocalDateTime.now());
+            }
+        } finally {
+            feeds.remove(jobId, feed);
+            feed.finish();
+        }
+    }
+
+    private PlanningJob findActive(LocalDate date) {
+        PlanningJob active = planningJobRepository.findFirstByDateAndStatusInOrderByIdDesc(date, ACTIVE)
+                .orElse(null);
+        // Each pass fails the job found or sees it changed by someone else, so this ends
+        while (active != null && !isLive(active)) {
+            abandon(active);
+            active = planningJobRepository.findFirstByDateAndStatusInOrderByIdDesc(date, ACTIVE).orElse(null);
+        }
+        if (active != null) {
+            log.info("Planning job {} for date {} is still {}, returning it", active.getId(), date,
+                    active.getStatus());
+        }
+        return active;
+    }
+
+    private boolean isLive(PlanningJob job) {
+        if (feeds.containsKey(job.getId())) {
+            return true;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return planningLeaseRepository.existsByDateAndExpiresAtAfter(job.getDate(), now)
+                || job.getUpdatedAt() != null && job.getUpdatedAt().isAfter(now.minusSeconds(leaseTtlSeconds));
+    }
+
+    private boolean abandon(PlanningJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean failed = planningJobRepository.markAbandoned(job.getId(), ACTIVE, PlanningJobStatus.FAILED,
+                ABANDONED, now.minusSeconds(leaseTtlSeconds), now) > 0;
+        if (failed) {
+            log.warn("Planning job {} for date {} was {} with no live instance, marked FAILED", job.getId(),
+                    job.getDate(), job.getStatus());
+        }
+        return failed;
+    }
+
+    private void writeLines(List<RidePlanResponse> plans, OutputStream out) throws IOException {
+        for (RidePlanResponse plan : plans) {
+            out.write(objectMapper.writeValueAsBytes(plan));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private PlanningJob findJob(Long jobId) {
+        return planningJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("PlanningJob", "id", jobId));
+    }
+
+    private PlanningJobResponse toResponse(PlanningJob job) {
+        return PlanningJobResponse.builder()
+                .id(job.getId())
+                .date(job.getDate())
+                .status(job.getStatus().name())
+                .totalPlans(job.getTotalPlans())
+                .committedPlans(job.getCommittedPlans())
+                .committedRiders(job.getCommittedRiders())
+                .attempts(job.getAttempts())
+                .errorMessage(job.getErrorMessage())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .createdAt(job.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Plans committed by the running attempt, in commit order.
+     */
+    private static final class JobFeed {
+
+        private final List<RidePlanResponse> plans = new ArrayList<>();
+        private boolean finished;
+
+        synchronized void publish(List<RidePlanResponse> chunk) {
+            plans.addAll(chunk);
+            notifyAll();
+        }
+
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * Plans after the first {@code from}, waiting up to {@code timeoutMillis}
+         * for more while the attempt runs: empty if none arrived in time, null
+         * once it has finished and everything was returned.
+         */
+        synchronized List<RidePlanResponse> next(int from, long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+            long remaining = timeoutMillis;
+            while (plans.size() <= from && !finished && remaining > 0) {
+                wait(remaining);
+                remaining = (deadline - System.nanoTime()) / 1_000_000L;
+            }
+            if (plans.size() <= from && finished) {
+                return null;
+            }
+            return new ArrayList<>(plans.subList(from, plans.size()));
+        }
+    }
+}
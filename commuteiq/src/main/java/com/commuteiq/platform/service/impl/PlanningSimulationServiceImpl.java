@@ -0,0 +1,151 @@
+package com.commuteiq.platform.service.impl;
+
+import com.commuteiq.platform.dto.request.PlanningSimulationRequest;
+import com.commuteiq.platform.dto.response.PlanningSimulationResponse;
+import com.commuteiq.platform.entity.Vehicle;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import com.commuteiq.platform.pooling.Clusters;
+import com.commuteiq.platform.pooling.DistanceMatrixCache;
+import com.commuteiq.platform.pooling.PlanningInput;
+import com.commuteiq.platform.pooling.PlanningInputLoader;
+import com.commuteiq.platform.pooling.PlanningSnapshot;
+import com.commuteiq.platform.pooling.PoolingEngine;
+import com.commuteiq.platform.pooling.PoolingParameters;
+import com.commuteiq.platform.pooling.Routes;
+import com.commuteiq.platform.pooling.VehicleAssigner;
+import com.commuteiq.platform.pooling.VehicleAssignment;
+import com.commuteiq.platform.service.PlanningSimulationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * What-if planning: runs the pooling engine for one date under several
+ * parameter sets and reports summary metrics, without writing anything.
+ *
+ * Inputs are loaded once (read-only) into a single snapshot that every
+ * scenario shares, together with the distance cache. Scenarios then run
+ * concurrently on the planning pool, each going through clustering, optional
+ * local search, vehicle assignment and stop ordering exactly as generation
+ * would, so the numbers match what {@code /generate} would produce.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlanningSimulationServiceImpl implements PlanningSimulationService {
+
+    private final PlanningInputLoader planningInputLoader;
+    private final PoolingEngine poolingEngine;
+    private final DistanceMatrixCache distanceMatrixCache;
+    private final ForkJoinPool planningPool;
+
+    @Override
+    public PlanningSimulationResponse simulate(PlanningSimulationRequest request) {
+        PlanningInput input = planningInputLoader.load(request.getDate());
+        PlanningSnapshot snapshot = distanceMatrixCache.attach(PlanningSnapshot.of(request.getDate(),
+                input.getRequests()));
+        int[] fleet = input.getAvailableVehicles().stream().mapToInt(Vehicle::getCapacity).toArray();
+        PoolingParameters defaults = poolingEngine.defaults();
+
+        List<Callable<PlanningSimulationResponse.ScenarioResult>> tasks = new ArrayList<>();
+        for (int s = 0; s < request.getScenarios().size(); s++) {
+            PlanningSimulationRequest.Scenario scenario = request.getScenarios().get(s);
+            String name = scenario.getName() != null ? scenario.getName() : "scenario-" + (s + 1);
+            tasks.add(() -> runScenario(name, scenario, snapshot, fleet, input.getAvailableDrivers().size(),
+                    defaults));
+        }
+
+        List<PlanningSimulationResponse.ScenarioResult> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<PlanningSimulationResponse.ScenarioResult> future : planningPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidOperationException("Planning simulation was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Planning simulation failed", e.getCause());
+        }
+
+        log.info("Simulated {} scenarios for {} pending requests on {}", results.size(), snapshot.size(),
+                request.getDate());
+        return PlanningSimulationResponse.builder()
+                .date(request.getDate())
+                .pendingRequests(snapshot.size())
+                .availableVehicles(fleet.length)
+                .availableDrivers(input.getAvailableDrivers().size())
+                .scenarios(results)
+                .build();
+    }
+
+    private PlanningSimulationResponse.ScenarioResult runScenario(String name,
+            PlanningSimulationRequest.Scenario scenario, PlanningSnapshot snapshot, int[] fleet,
+            int availableDrivers, PoolingParameters defaults) {
+        long started = System.nanoTime();
+
+        PoolingParameters parameters = defaults.toBuilder()
+                .distanceThresholdKm(scenario.getDistanceThresholdKm() != null
+                        ? scenario.getDistanceThresholdKm()
+                        : defaults.getDistanceThresholdKm())
+                .maxClusterSize(scenario.getMaxClusterSize() != null
+                        ? scenario.getMaxClusterSize()
+                        : defaults.getMaxClusterSize())
+                .improvementEnabled(scenario.getLocalSearch() != null
+                        ? scenario.getLocalSearch()
+                        : defaults.isImprovementEnabled())
+                .build();
+
+        int[] capacities = scenario.getVehicleCapacities() != null
+                ? scenario.getVehicleCapacities().stream().mapToInt(Integer::intValue).toArray()
+                : fleet;
+        if (scenario.getMaxVehicles() != null && scenario.getMaxVehicles() < capacities.length) {
+            capacities = Arrays.copyOf(capacities, scenario.getMaxVehicles());
+        }
+        int drivers = scenario.getDriverCount() != null ? scenario.getDriverCount() : availableDrivers;
+
+        PlanningSimulationResponse.ScenarioResult.ScenarioResultBuilder result =
+                PlanningSimulationResponse.ScenarioResult.builder()
+                        .name(name)
+                        .distanceThresholdKm(parameters.getDistanceThresholdKm())
+                        .maxClusterSize(parameters.getMaxClusterSize());
+
+        if (snapshot.size() == 0 || capacities.length == 0 || drivers == 0) {
+            return result
+                    .unassignedRiders(snapshot.size())
+                    .occupancyPercentage(0.0)
+                    .totalDistanceKm(0.0)
+                    .elapsedMs((System.nanoTime() - started) / 1_000_000L)
+                    .build();
+        }
+
+        Clusters candidates = poolingEngine.improveClusters(snapshot,
+                poolingEngine.buildClusters(snapshot, parameters), parameters);
+        VehicleAssignment assignment = VehicleAssigner.assign(snapshot, candidates, capacities, drivers);
+        Routes routes = poolingEngine.planRoutes(snapshot, assignment.clusters(), parameters);
+
+        Clusters planned = routes.clusters();
+        long seats = 0;
+        for (int c = 0; c < planned.count(); c++) {
+            seats += capacities[assignment.vehicleIndex(c)];
+        }
+        double occupancy = seats == 0 ? 0.0 : (double) planned.memberCount() / seats * 100.0;
+
+        return result
+                .vehiclesUsed(planned.count())
+                .ridersPlanned(planned.memberCount())
+                .unassignedRiders(assignment.unassignedRiders())
+                .splitClusters(assignment.splitClusters())
+                .occupancyPercentage(Math.round(occupancy * 100.0) / 100.0)
+                .totalDistanceKm(Math.round(routes.totalDistanceKm() * 100.0) / 100.0)
+                .elapsedMs((System.nanoTime() - started) / 1_000_000L)
+                .build();
+    }
+}
@@ -3,322 +3,333 @@ package com.commuteiq.platform.service.impl;
 import com.commuteiq.platform.dto.response.RidePlanResponse;
 import com.commuteiq.platform.entity.*;
 import com.commuteiq.platform.exception.InvalidOperationException;
-import com.commuteiq.platform.repository.*;
+import com.commuteiq.platform.pooling.Clusters;
+import com.commuteiq.platform.pooling.DistanceMatrixCache;
+import com.commuteiq.platform.pooling.OpenPlanIndex;
+import com.commuteiq.platform.pooling.PlanDraft;
+import com.commuteiq.platform.pooling.PlanningInput;
+import com.commuteiq.platform.pooling.PlanningCoordinator;
+import com.commuteiq.platform.pooling.PlanningInputLoader;
+import com.commuteiq.platform.pooling.PlanningMetrics;
+import com.commuteiq.platform.pooling.PlanningSnapshot;
+import com.commuteiq.platform.pooling.PlanningSnapshotExporter;
+import com.commuteiq.platform.pooling.PoolingEngine;
+import com.commuteiq.platform.pooling.RidePlanBulkWriter;
+import com.commuteiq.platform.pooling.Routes;
+import com.commuteiq.platform.pooling.VehicleAssigner;
+import com.commuteiq.platform.pooling.VehicleAssignment;
+import com.commuteiq.platform.pooling.WorkFromHomeDays;
+import com.commuteiq.platform.service.PlanningProgressListener;
 import com.commuteiq.platform.service.RidePlanningService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Smart Pooling Engine — groups pending ride requests into optimized ride
  * plans.
  *
  * Algorithm:
- * 1. Fetch all PENDING ride requests for the target date
- * 2. Load commute preferences for each employee
- * 3. Sort requests by pickup window start time
- * 4. Greedily cluster requests using:
+ * 1. Load all PENDING ride requests for the target date together with
+ * employee and commute preference data; horizon runs skip employees working
+ * from home that weekday (see {@link PlanningInputLoader})
+ * 2. Sort requests by pickup window start time into a {@link PlanningSnapshot}
+ * 3. Greedily cluster requests with the {@link PoolingEngine} using:
  * - Haversine distance between employee homes (< configurable threshold)
  * - Overlapping pickup time windows
  * - Same-gender constraint when required by any member
  * - Vehicle capacity limit
- * 5. Assign available vehicles and drivers to each cluster
- * 6. Compute estimated distance/duration and stop order
- * 7. Persist RidePlan + RidePlanEmployee records, mark requests as PLANNED
+ * then optionally improve them by local search (see {@link com.commuteiq.platform.pooling.ClusterImprover})
+ * 4. Assign vehicles best-fit-decreasing by capacity, splitting clusters that
+ * exceed the largest free vehicle, and pair each plan with a driver
+ * 5. Order stops per cluster (nearest neighbour + 2-opt / Or-opt) and derive
+ * estimated distance/duration from the optimized route
+ * 6. Persist RidePlan + RidePlanEmployee records and mark requests as PLANNED
+ * in chunked JDBC batches, one transaction per chunk, leaving out riders
+ * whose request was cancelled since step 1 (see {@link RidePlanBulkWriter})
+ *
+ * Runs are single-flight per date: a call for a date that is already being
+ * planned joins that run (see {@link PlanningCoordinator}). A multi-day
+ * horizon plans its dates in parallel on the day executor, sharing parsed
+ * work-from-home days. Planning a single date plans every PENDING request,
+ * since an employee who asked for a ride on a work-from-home day wants one.
+ *
+ * Each phase is timed and counted per date and office (see {@link PlanningMetrics}).
+ *
+ * Requests created or cancelled after generation are applied to the scheduled
+ * plans online (see {@link com.commuteiq.platform.service.IncrementalPlanningService}).
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Transactional
 public class RidePlanningServiceImpl implements RidePlanningService {
 
-    private final RideRequestRepository rideRequestRepository;
-    private final EmployeeRepository employeeRepository;
-    private final CommutePreferenceRepository commutePreferenceRepository;
-    private final VehicleRepository vehicleRepository;
-    private final DriverRepository driverRepository;
-    private final RidePlanRepository ridePlanRepository;
-    private final RidePlanEmployeeRepository ridePlanEmployeeRepository;
+    private final PlanningInputLoader planningInputLoader;
+    private final PoolingEngine poolingEngine;
+    private final RidePlanBulkWriter ridePlanBulkWriter;
+    private final OpenPlanIndex openPlanIndex;
+    private final DistanceMatrixCache distanceMatrixCache;
+    private final PlanningCoordinator planningCoordinator;
+    private final ThreadPoolTaskExecutor planningDayExecutor;
+    private final PlanningSnapshotExporter planningSnapshotExporter;
+    private final PlanningMetrics planningMetrics;
 
-    @Value("${app.pooling.distance-threshold-km:2.0}")
-    private double distanceThresholdKm;
+    @Override
+    public List<RidePlanResponse> generatePlansForDate(LocalDate date) {
+        return generatePlansForDate(date, PlanningProgressListener.NONE);
+    }
 
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    @Override
+    public List<RidePlanResponse> generatePlansForDate(LocalDate date, PlanningProgressListener listener) {
+        return generatePlansForDate(date, listener, null);
+    }
 
     @Override
-    public List<RidePlanResponse> generatePlansForDate(LocalDate date) {
+    public Map<LocalDate, CompletableFuture<List<RidePlanResponse>>> generatePlansForRange(LocalDate from,
+            LocalDate to, Function<LocalDate, PlanningProgressListener> listeners) {
+        if (to.isBefore(from)) {
+            throw new InvalidOperationException("Horizon end " + to + " is before its start " + from);
+        }
+        log.info("Starting ride plan generation for {} to {}", from, to);
+
+        // Days are independent: each is its own single-flight run with its own fleet
+        WorkFromHomeDays workFromHomeDays = new WorkFromHomeDays();
+        Map<LocalDate, CompletableFuture<List<RidePlanResponse>>> results = new LinkedHashMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            LocalDate day = date;
+            PlanningProgressListener listener = listeners.apply(day);
+            results.put(day, CompletableFuture.supplyAsync(
+                    () -> generatePlansForDate(day, listener, workFromHomeDays), planningDayExecutor));
+        }
+        return results;
+    }
+
+    private List<RidePlanResponse> generatePlansForDate(LocalDate date, PlanningProgressListener listener,
+            WorkFromHomeDays workFromHomeDays) {
+        return planningCoordinator.run(date, lease -> plan(date, listener, workFromHomeDays, lease), plans -> {
+            // Joined another run: report its plans as one committed chunk
+            int riders = plans.stream().mapToInt(p -> p.getEmployees().size()).sum();
+            listener.planned(plans.size(), riders);
+            listener.chunkWritten(plans.size(), riders);
+            listener.chunkCommitted(plans);
+        });
+    }
+
+    /**
+     * @param workFromHomeDays skips riders working from home that day; null
+     *                         (outside horizon runs) plans every request
+     */
+    private List<RidePlanResponse> plan(LocalDate date, PlanningProgressListener listener,
+            WorkFromHomeDays workFromHomeDays, PlanningCoordinator.Lease lease) {
         log.info("Starting ride plan generation for date: {}", date);
 
-        // 1. Fetch all PENDING requests for the date
-        List<RideRequest> pendingRequests = rideRequestRepository
-                .findByStatusAndRequestDate(RideRequestStatus.PENDING, date);
+        // 1. Load pending requests, employees, preferences and free fleet in bulk
+        long phaseStart = System.nanoTime();
+        PlanningInput input = workFromHomeDays != null
+                ? planningInputLoader.load(date, workFromHomeDays)
+                : planningInputLoader.load(date);
+        phaseStart = phaseCompleted(date, listener, "load", phaseStart);
 
-        if (pendingRequests.isEmpty()) {
+        if (input.getRequests().isEmpty()) {
+            listener.planned(0, 0);
             log.info("No pending requests found for date: {}", date);
             return Collections.emptyList();
         }
 
-        // 2. Build a lookup of employee -> preference
-        Map<Long, CommutePreference> preferenceMap = new HashMap<>();
-        for (RideRequest req : pendingRequests) {
-            Long empId = req.getEmployee().getId();
-            commutePreferenceRepository.findByEmployeeId(empId)
-                    .ifPresent(pref -> preferenceMap.put(empId, pref));
-        }
-
-        // 3. Sort requests by pickup start time (employees without preference go last)
-        pendingRequests.sort(Comparator.comparing(req -> {
-            CommutePreference pref = preferenceMap.get(req.getEmployee().getId());
-            return pref != null ? pref.getPickupStartTime() : java.time.LocalTime.MAX;
-        }));
-
-        // 4. Greedy clustering
-        List<List<RideRequest>> clusters = buildClusters(pendingRequests, preferenceMap);
+        // 2. Sort requests into a primitive snapshot (employees without preference go last),
+        // reading home-to-home distances through the per-office cache; optionally dump it for replay
+        PlanningSnapshot snapshot = distanceMatrixCache.attach(PlanningSnapshot.of(date, input.getRequests()));
+        planningSnapshotExporter.export(snapshot, input.getAvailableVehicles(), input.getAvailableDrivers());
+        phaseStart = phaseCompleted(date, listener, "snapshot", phaseStart);
 
-        // 5. Assign vehicles and drivers
-        List<Vehicle> availableVehicles = vehicleRepository.findByActiveTrue();
-        List<Driver> availableDrivers = driverRepository.findByActiveTrue();
+        // 3. Greedy clustering, one independent partition per office and window run,
+        // then optional local-search improvement
+        Clusters greedyClusters = poolingEngine.buildClusters(snapshot);
+        phaseStart = phaseCompleted(date, listener, "clustering", phaseStart);
+        Clusters candidateClusters = poolingEngine.improveClusters(snapshot, greedyClusters);
+        phaseStart = phaseCompleted(date, listener, "improvement", phaseStart);
 
-        // Filter out vehicles/drivers already assigned for this date
-        Set<Long> usedVehicleIds = ridePlanRepository.findByDate(date).stream()
-                .map(rp -> rp.getVehicle().getId())
-                .collect(Collectors.toSet());
-        Set<Long> usedDriverIds = ridePlanRepository.findByDate(date).stream()
-                .map(rp -> rp.getDriver().getId())
-                .collect(Collectors.toSet());
-
-        availableVehicles = availableVehicles.stream()
-                .filter(v -> !usedVehicleIds.contains(v.getId()))
-                .collect(Collectors.toList());
-        availableDrivers = availableDrivers.stream()
-                .filter(d -> !usedDriverIds.contains(d.getId()))
-                .collect(Collectors.toList());
+        // 4. Assign vehicles (best fit, splitting oversized clusters) and drivers
+        List<Vehicle> availableVehicles = input.getAvailableVehicles();
+        List<Driver> availableDrivers = input.getAvailableDrivers();
 
         if (availableVehicles.isEmpty() || availableDrivers.isEmpty()) {
             throw new InvalidOperationException("No available vehicles or drivers for date: " + date);
         }
 
-        // 6. Create RidePlans
-        List<RidePlanResponse> results = new ArrayList<>();
-        int vehicleIndex = 0;
-        int driverIndex = 0;
+        int[] capacities = availableVehicles.stream().mapToInt(Vehicle::getCapacity).toArray();
+        VehicleAssignment assignment = VehicleAssigner.assign(snapshot, candidateClusters, capacities,
+                availableDrivers.size());
+        if (assignment.splitClusters() > 0) {
+            log.info("Split {} clusters to fit vehicle capacity for date: {}", assignment.splitClusters(), date);
+        }
+        if (assignment.unassignedClusters() > 0) {
+            log.warn("Ran out of vehicles/drivers. {} clusters ({} riders) remain unassigned.",
+                    assignment.unassignedClusters(), assignment.unassignedRiders());
+        }
+        recordClusters(snapshot, candidateClusters, assignment);
+        phaseStart = phaseCompleted(date, listener, "assignment", phaseStart);
 
-        for (List<RideRequest> cluster : clusters) {
-            if (vehicleIndex >= availableVehicles.size() || driverIndex >= availableDrivers.size()) {
-                log.warn("Ran out of vehicles/drivers. {} clusters remain unassigned.",
-                        clusters.size() - results.size());
-                break;
-            }
+        // 5. Order stops within each assigned cluster and build plan drafts
+        Routes routes = poolingEngine.planRoutes(snapshot, assignment.clusters());
+        Clusters clusters = routes.clusters();
 
-            // Find a vehicle with enough capacity
-            Vehicle vehicle = null;
-            for (int i = vehicleIndex; i < availableVehicles.size(); i++) {
-                if (availableVehicles.get(i).getCapacity() >= cluster.size()) {
-                    vehicle = availableVehicles.get(i);
-                    availableVehicles.remove(i);
-                    break;
-                }
-            }
+        List<PlanDraft> drafts = new ArrayList<>(clusters.count());
 
-            if (vehicle == null) {
-                // Use any available vehicle even if smaller (split may be needed)
-                vehicle = availableVehicles.get(vehicleIndex++);
-            }
-
-            Driver driver = availableDrivers.get(driverIndex++);
+        for (int c = 0; c < clusters.count(); c++) {
+            int clusterSize = clusters.size(c);
+            Vehicle vehicle = availableVehicles.get(assignment.vehicleIndex(c));
+            Driver driver = availableDrivers.get(c);
 
-            // Compute estimated distance (sum of Haversine distances between consecutive
-            // stops)
-            double totalDistance = computeRouteDistance(cluster);
+            // Estimated distance of the optimized stop sequence (plus office leg when known)
+            double totalDistance = routes.distanceKm(c);
             double estimatedDuration = totalDistance / 30.0 * 60.0; // Assume 30 km/h avg → minutes
 
-            RidePlan ridePlan = RidePlan.builder()
-                    .vehicle(vehicle)
-                    .driver(driver)
-                    .date(date)
-                    .estimatedDistance(Math.round(totalDistance * 100.0) / 100.0)
-                    .estimatedDuration(Math.round(estimatedDuration * 100.0) / 100.0)
-                    .status(RidePlanStatus.SCHEDULED)
-                    .build();
-
-            RidePlan savedPlan = ridePlanRepository.save(ridePlan);
-
-            // Create RidePlanEmployee entries with stop order
-            List<RidePlanResponse.RidePlanEmployeeResponse> employeeResponses = new ArrayList<>();
-            for (int i = 0; i < cluster.size(); i++) {
-                RideRequest req = cluster.get(i);
-                RidePlanEmployee rpe = RidePlanEmployee.builder()
-                        .ridePlan(savedPlan)
-                        .employee(req.getEmployee())
-                        .stopOrder(i + 1)
-                        .build();
-                ridePlanEmployeeRepository.save(rpe);
-
-                // Mark the ride request as PLANNED
-                req.setStatus(RideRequestStatus.PLANNED);
-                rideRequestRepository.save(req);
-
-                employeeResponses.add(RidePlanResponse.RidePlanEmployeeResponse.builder()
-                        .employeeId(req.getEmployee().getId())
-                        .employeeName(req.getEmployee().getName())
-                        .stopOrder(i + 1)
-                        .build());
+            long[] employeeIds = new long[clusterSize];
+            long[] requestIds = new long[clusterSize];
+            for (int i = 0; i < clusterSize; i++) {
+                employeeIds[i] = snapshot.employeeId(clusters.member(c, i));
+                requestIds[i] = snapshot.requestId(clusters.member(c, i));
             }
 
-            results.add(RidePlanResponse.builder()
-                    .id(savedPlan.getId())
-                    .vehicleId(vehicle.getId())
-                    .vehiclePlateNumber(vehicle.getPlateNumber())
-                    .driverId(driver.getId())
-                    .driverName(driver.getName())
-                    .date(date)
-                    .estimatedDistance(savedPlan.getEstimatedDistance())
-                    .estimatedDuration(savedPlan.getEstimatedDuration())
-                    .status(savedPlan.getStatus().name())
-                    .employees(employeeResponses)
-                    .createdAt(savedPlan.getCreatedAt())
-                    .build());
+            drafts.add(new PlanDraft(vehicle.getId(), driver.getId(),
+                    Math.round(totalDistance * 100.0) / 100.0,
+                    Math.round(estimatedDuration * 100.0) / 100.0,
+                    employeeIds, requestIds));
         }
-
-        log.info("Generated {} ride plans for date: {}", results.size(), date);
-        return results;
-    }
-
-    /**
-     * Greedy clustering algorithm.
-     * For each unassigned request, try to add it to an existing cluster if:
-     * - It is within the distance threshold of the cluster centroid
-     * - Its pickup window overlaps with the cluster's window
-     * - Gender constraints are satisfied
-     * - Cluster hasn't exceeded a reasonable max size (will be bounded by vehicle
-     * capacity later)
-     */
-    private List<List<RideRequest>> buildClusters(List<RideRequest> requests,
-            Map<Long, CommutePreference> preferenceMap) {
-        List<List<RideRequest>> clusters = new ArrayList<>();
-        boolean[] assigned = new boolean[requests.size()];
-        int maxClusterSize = 8; // Will be further limited by vehicle capacity
-
-        for (int i = 0; i < requests.size(); i++) {
-            if (assigned[i])
-                continue;
-
-            List<RideRequest> cluster = new ArrayList<>();
-            cluster.add(requests.get(i));
-            assigned[i] = true;
-
-            Employee anchor = requests.get(i).getEmployee();
-            CommutePreference anchorPref = preferenceMap.get(anchor.getId());
-
-            for (int j = i + 1; j < requests.size(); j++) {
-                if (assigned[j])
-                    continue;
-                if (cluster.size() >= maxClusterSize)
-                    break;
-
-                Employee candidate = requests.get(j).getEmployee();
-                CommutePreference candidatePref = preferenceMap.get(candidate.getId());
-
-                // Check distance
-                double distance = haversineDistance(
-                        anchor.getHomeLatitude(), anchor.getHomeLongitude(),
-                        candidate.getHomeLatitude(), candidate.getHomeLongitude());
-
-                if (distance > distanceThresholdKm)
-                    continue;
-
-                // Check pickup window overlap
-                if (!pickupWindowsOverlap(anchorPref, candidatePref))
-                    continue;
-
-                // Check gender constraint
-                if (!genderConstraintSatisfied(cluster, candidate, preferenceMap))
-                    continue;
-
-                // Check same office location
-                if (!anchor.getOfficeLocation().equals(candidate.getOfficeLocation()))
-                    continue;
-
-                cluster.add(requests.get(j));
-                assigned[j] = true;
+        phaseStart = phaseCompleted(date, listener, "routing", phaseStart);
+
+        // 6. Persist plans, stops and PLANNED statuses in bulk, reporting each committed chunk
+        lease.renew();
+        listener.planned(drafts.size(), clusters.memberCount());
+        LocalDateTime now = LocalDateTime.now();
+        List<RidePlanResponse> results = new ArrayList<>(drafts.size());
+        RidePlanBulkWriter.ChunkListener chunkListener = new RidePlanBulkWriter.ChunkListener() {
+            @Override
+            public void beforeCommit(int from, int to, long[] planIds, Set<Long> dropped) {
+                lease.renew();
+                int plans = 0;
+                int riders = 0;
+                for (int c = from; c < to; c++) {
+                    if (planIds[c] != 0) {
+                        plans++;
+                        riders += clusters.size(c);
+                    }
+                }
+                listener.chunkWritten(plans, riders - dropped.size());
             }
 
-            clusters.add(cluster);
+            @Override
+            public void afterCommit(int from, int to, long[] planIds, Set<Long> dropped) {
+                recordRowsWritten(snapshot, clusters, from, to, planIds, dropped);
+                List<RidePlanResponse> chunk = new ArrayList<>(to - from);
+                for (int c = from; c < to; c++) {
+                    if (planIds[c] != 0) {
+                        chunk.add(toResponse(snapshot, clusters, c, planIds[c], drafts.get(c),
+                                availableVehicles.get(assignment.vehicleIndex(c)), availableDrivers.get(c), now,
+                                dropped));
+                    }
+                }
+                results.addAll(chunk);
+                listener.chunkCommitted(chunk);
+            }
+        };
+        try {
+            ridePlanBulkWriter.write(date, drafts, now, chunkListener);
+        } finally {
+            // Chunks committed before a failure stay, so the index must be reloaded either way
+            openPlanIndex.evictAfterCompletion(date);
         }
+        phaseCompleted(date, listener, "write", phaseStart);
 
-        return clusters;
+        log.info("Generated {} ride plans for date: {}", results.size(), date);
+        return results;
     }
 
-    /**
-     * Haversine formula to compute distance in km between two lat/lon points.
-     */
-    private double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                        * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return EARTH_RADIUS_KM * c;
+    private long phaseCompleted(LocalDate date, PlanningProgressListener listener, String phase, long phaseStart) {
+        long now = System.nanoTime();
+        planningMetrics.phase(date, phase, now - phaseStart);
+        listener.phaseCompleted(phase, now - phaseStart);
+        return now;
     }
 
-    /**
-     * Check if two employees' pickup windows overlap.
-     * If either has no preference, assume overlap (they're flexible).
-     */
-    private boolean pickupWindowsOverlap(CommutePreference pref1, CommutePreference pref2) {
-        if (pref1 == null || pref2 == null)
-            return true;
-        // Overlap exists if one's start is before the other's end AND vice versa
-        return !pref1.getPickupStartTime().isAfter(pref2.getPickupEndTime())
-                && !pref2.getPickupStartTime().isAfter(pref1.getPickupEndTime());
+    private void recordClusters(PlanningSnapshot snapshot, Clusters candidates, VehicleAssignment assignment) {
+        int[] requests = new int[snapshot.officeCount()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            requests[snapshot.officeId(i)]++;
+        }
+        int[] built = new int[snapshot.officeCount()];
+        for (int c = 0; c < candidates.count(); c++) {
+            built[snapshot.officeId(candidates.anchor(c))]++;
+        }
+        for (int o = 0; o < snapshot.officeCount(); o++) {
+            planningMetrics.requestsLoaded(snapshot.getDate(), snapshot.officeName(o), requests[o]);
+            planningMetrics.clustersBuilt(snapshot.getDate(), snapshot.officeName(o), built[o]);
+            planningMetrics.clustersUnassigned(snapshot.getDate(), snapshot.officeName(o),
+                    assignment.unassignedClusters(o));
+        }
+        if (assignment.unassignedClusters() > 0) {
+            planningMetrics.fleetExhausted(snapshot.getDate(), assignment.vehiclesExhausted());
+        }
     }
 
-    /**
-     * Check gender constraint: if ANY member of the cluster (or the candidate)
-     * requires same-gender rides, the candidate must match the cluster's gender.
-     */
-    private boolean genderConstraintSatisfied(List<RideRequest> cluster, Employee candidate,
-            Map<Long, CommutePreference> preferenceMap) {
-        // Check if candidate requires same gender
-        CommutePreference candidatePref = preferenceMap.get(candidate.getId());
-        boolean candidateRequires = candidatePref != null
-                && Boolean.TRUE.equals(candidatePref.getSameGenderRequired());
-
-        // Check if any cluster member requires same gender
-        boolean clusterRequires = cluster.stream().anyMatch(req -> {
-            CommutePreference pref = preferenceMap.get(req.getEmployee().getId());
-            return pref != null && Boolean.TRUE.equals(pref.getSameGenderRequired());
-        });
-
-        if (!candidateRequires && !clusterRequires)
-            return true;
-
-        // If any requires same gender, all must be same gender
-        String clusterGender = cluster.get(0).getEmployee().getGender();
-        return clusterGender.equalsIgnoreCase(candidate.getGender());
+    private void recordRowsWritten(PlanningSnapshot snapshot, Clusters clusters, int from, int to, long[] planIds,
+            Set<Long> dropped) {
+        // One plan row per written plan, plus one stop row and one request update per rider kept
+        long[] rows = new long[snapshot.officeCount()];
+        for (int c = from; c < to; c++) {
+            if (planIds[c] == 0) {
+                continue;
+            }
+            long riders = 0;
+            for (int i = 0; i < clusters.size(c); i++) {
+                if (!dropped.contains(snapshot.requestId(clusters.member(c, i)))) {
+                    riders++;
+                }
+            }
+            rows[snapshot.officeId(clusters.anchor(c))] += 1 + 2 * riders;
+        }
+        for (int o = 0; o < rows.length; o++) {
+            if (rows[o] > 0) {
+                planningMetrics.rowsWritten(snapshot.getDate(), snapshot.officeName(o), rows[o]);
+            }
+        }
     }
 
-    /**
-     * Compute total route distance as sum of consecutive Haversine distances.
-     */
-    private double computeRouteDistance(List<RideRequest> cluster) {
-        if (cluster.size() <= 1)
-            return 0.0;
-        double total = 0.0;
-        for (int i = 0; i < cluster.size() - 1; i++) {
-            Employee e1 = cluster.get(i).getEmployee();
-            Employee e2 = cluster.get(i + 1).getEmployee();
-            total += haversineDistance(
-                    e1.getHomeLatitude(), e1.getHomeLongitude(),
-                    e2.getHomeLatitude(), e2.getHomeLongitude());
+    private RidePlanResponse toResponse(PlanningSnapshot snapshot, Clusters clusters, int c, long planId,
+            PlanDraft draft, Vehicle vehicle, Driver driver, LocalDateTime now, Set<Long> dropped) {
+        List<RidePlanResponse.RidePlanEmployeeResponse> employeeResponses = new ArrayList<>();
+        for (int i = 0; i < clusters.size(c); i++) {
+            int member = clusters.member(c, i);
+            if (dropped.contains(snapshot.requestId(member))) {
+                continue;
+            }
+            employeeResponses.add(RidePlanResponse.RidePlanEmployeeResponse.builder()
+                    .employeeId(snapshot.employeeId(member))
+                    .employeeName(snapshot.employeeName(member))
+                    .stopOrder(employeeResponses.size() + 1)
+                    .build());
         }
-        return total;
+
+        return RidePlanResponse.builder()
+                .id(planId)
+                .vehicleId(draft.getVehicleId())
+                .vehiclePlateNumber(vehicle.getPlateNumber())
+                .driverId(draft.getDriverId())
+                .driverName(driver.getName())
+                .date(snapshot.getDate())
+                .estimatedDistance(draft.getEstimatedDistance())
+                .estimatedDuration(draft.getEstimatedDuration())
+                .status(RidePlanStatus.SCHEDULED.name())
+                .employees(employeeResponses)
+                .createdAt(now)
+                .build();
     }
 }
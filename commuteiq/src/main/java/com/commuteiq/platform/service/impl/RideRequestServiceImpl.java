@@ -10,6 +10,7 @@ import com.commuteiq.platform.exception.ResourceNotFoundException;
 import com.commuteiq.platform.mapper.RideRequestMapper;
 import com.commuteiq.platform.repository.EmployeeRepository;
 import com.commuteiq.platform.repository.RideRequestRepository;
+import com.commuteiq.platform.service.IncrementalPlanningService;
 import com.commuteiq.platform.service.RideRequestService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -29,6 +30,7 @@ public class RideRequestServiceImpl implements RideRequestService {
     private final RideRequestRepository rideRequestRepository;
     private final EmployeeRepository employeeRepository;
     private final RideRequestMapper rideRequestMapper;
+    private final IncrementalPlanningService incrementalPlanningService;
 
     @Override
     public RideRequestResponse createRideRequest(RideRequestDto request) {
@@ -42,6 +44,9 @@ public class RideRequestServiceImpl implements RideRequestService {
                 .build();
 
         RideRequest saved = rideRequestRepository.save(rideRequest);
+
+        // Join an already generated plan if one has room; otherwise wait for the next run
+        incrementalPlanningService.assignToOpenPlan(saved);
         return rideRequestMapper.toResponse(saved);
     }
 
@@ -74,8 +79,10 @@ public class RideRequestServiceImpl implements RideRequestService {
         RideRequest rideRequest = rideRequestRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("RideRequest", "id", id));
 
-        if (rideRequest.getStatus() != RideRequestStatus.PENDING) {
-            throw new InvalidOperationException("Only PENDING ride requests can be cancelled");
+        if (rideRequest.getStatus() != RideRequestStatus.PENDING
+                && !incrementalPlanningService.releaseSeat(rideRequest)) {
+            throw new InvalidOperationException(
+                    "Only PENDING ride requests or requests on a scheduled plan can be cancelled");
         }
 
         rideRequest.setStatus(RideRequestStatus.CANCELLED);
@@ -0,0 +1,121 @@
+package com.commuteiq.platform.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Decoded location message: an ordered batch of timestamped points for one
+ * ride plan, or a resume request. A single ping is a batch of one point
+ * without a sequence number.
+ *
+ * Mutable and growable so that decoders can refill the same per-session
+ * instance for every message instead of allocating per ping. Point arrays
+ * only grow, up to {@link #MAX_POINTS}.
+ *
+ * Timestamps, speed and heading are optional: 0 timestamp means unknown
+ * (the arrival time is used), NaN speed or heading means unknown.
+ */
+public final class LocationBatch {
+
+    /**
+     * Sequence of a message that carries none (a single legacy ping).
+     */
+    public static final long NO_SEQUENCE = -1;
+
+    public static final int MAX_POINTS = 512;
+
+    long ridePlanId;
+    long firstSequence = NO_SEQUENCE;
+    boolean resume;
+    int count;
+    double[] latitudes = new double[1];
+    double[] longitudes = new double[1];
+    long[] timestamps = new long[1];
+    float[] speeds = new float[1];
+    float[] headings = new float[1];
+
+    public long getRidePlanId() {
+        return ridePlanId;
+    }
+
+    /**
+     * Sequence number of the first point; point {@code k} has
+     * {@code firstSequence + k}. {@link #NO_SEQUENCE} when not sequenced.
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Whether this is a resume request asking for the last processed
+     * sequence rather than carrying points.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public double latitude(int k) {
+        return latitudes[k];
+    }
+
+    public double longitude(int k) {
+        return longitudes[k];
+    }
+
+    public long timestampMillis(int k) {
+        return timestamps[k];
+    }
+
+    public float speedMetersPerSecond(int k) {
+        return speeds[k];
+    }
+
+    public float headingDegrees(int k) {
+        return headings[k];
+    }
+
+    void reset() {
+        ridePlanId = 0;
+        firstSequence = NO_SEQUENCE;
+        resume = false;
+        count = 0;
+    }
+
+    /**
+     * Append an empty point (unknown time, speed and heading).
+     *
+     * @return its index, or -1 when the batch is full
+     */
+    int addPoint() {
+        if (count == MAX_POINTS) {
+            return -1;
+        }
+        if (count == latitudes.length) {
+            int capacity = Math.min(MAX_POINTS, latitudes.length * 2);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+            headings = Arrays.copyOf(headings, capacity);
+        }
+        int k = count++;
+        latitudes[k] = Double.NaN;
+        longitudes[k] = Double.NaN;
+        timestamps[k] = 0;
+        speeds[k] = Float.NaN;
+        headings[k] = Float.NaN;
+        return k;
+    }
+
+    boolean hasValidPoints() {
+        for (int k = 0; k < count; k++) {
+            if (!LocationFrames.validCoordinates(latitudes[k], longitudes[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package com.commuteiq.platform.websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary location sub-protocol ({@value #PROTOCOL}), negotiated through
+ * {@code Sec-WebSocket-Protocol}. All values are big-endian.
+ *
+ * Client to server:
+ * - {@code 0x01} location (41 bytes): type, ridePlanId (int64, positive),
+ * then one point
+ * - {@code 0x02} batch (19 + 32 per point): type, ridePlanId, sequence of the
+ * first point (int64), point count (uint16, 1 to {@value LocationBatch#MAX_POINTS}),
+ * then the points in sequence order
+ * - {@code 0x03} resume (9 bytes): type, ridePlanId; asks for the last
+ * processed sequence after a reconnect
+ *
+ * A point is latitude and longitude (float64 degrees), timestamp (int64
+ * epoch ms, 0 if unknown), speed (float32 m/s) and heading (float32 degrees
+ * clockwise from north); NaN speed or heading means unknown.
+ *
+ * Server to client:
+ * - {@code 0x81} ack (9 bytes): type, ridePlanId
+ * - {@code 0x82} deviation alert (13 bytes): type, ridePlanId, deviation
+ * (float32 meters)
+ * - {@code 0x83} error (2 bytes): type, error code
+ * - {@code 0x84} sequence ack (17 bytes): type, ridePlanId, highest sequence
+ * processed for the ride plan (int64, -1 if none); answers batches and
+ * resume requests
+ */
+final class LocationFrames {
+
+    static final String PROTOCOL = "commuteiq.location.v1.binary";
+
+    static final byte LOCATION = 0x01;
+    static final byte BATCH = 0x02;
+    static final byte RESUME = 0x03;
+    static final byte ACK = (byte) 0x81;
+    static final byte ALERT = (byte) 0x82;
+    static final byte ERROR = (byte) 0x83;
+    static final byte SEQUENCE_ACK = (byte) 0x84;
+
+    static final int POINT_LENGTH = 32;
+    static final int LOCATION_LENGTH = 9 + POINT_LENGTH;
+    static final int BATCH_HEADER_LENGTH = 19;
+    static final int RESUME_LENGTH = 9;
+
+    /**
+     * Error codes of {@link #ERROR} frames.
+     */
+    static final byte ERROR_MALFORMED = 1;
+    static final byte ERROR_UNKNOWN_TYPE = 2;
+    static final byte ERROR_INTERNAL = 3;
+
+    private LocationFrames() {
+    }
+
+    /**
+     * Decode a location, batch or resume frame into {@code target}.
+     *
+     * @return 0 on success, otherwise the error code to report
+     */
+    static byte decode(ByteBuffer frame, LocationBatch target) {
+        target.reset();
+        if (!frame.hasRemaining()) {
+            return ERROR_MALFORMED;
+        }
+        int start = frame.position();
+        int length = frame.remaining();
+        byte type = frame.get(start);
+        if (type == LOCATION) {
+            if (length != LOCATION_LENGTH) {
+                return ERROR_MALFORMED;
+            }
+            target.ridePlanId = frame.getLong(start + 1);
+            readPoint(frame, start + 9, target);
+        } else if (type == BATCH) {
+            if (length < BATCH_HEADER_LENGTH) {
+                return ERROR_MALFORMED;
+            }
+            target.ridePlanId = frame.getLong(start + 1);
+            target.firstSequence = frame.getLong(start + 9);
+            int count = Short.toUnsignedInt(frame.getShort(start + 17));
+            if (count == 0 || count > LocationBatch.MAX_POINTS || target.firstSequence < 0
+                    || length != BATCH_HEADER_LENGTH + count * POINT_LENGTH) {
+                return ERROR_MALFORMED;
+            }
+            for (int k = 0; k < count; k++) {
+                readPoint(frame, start + BATCH_HEADER_LENGTH + k * POINT_LENGTH, target);
+            }
+        } else if (type == RESUME) {
+            if (length != RESUME_LENGTH) {
+                return ERROR_MALFORMED;
+            }
+            target.ridePlanId = frame.getLong(start + 1);
+            target.resume = true;
+        } else {
+            return ERROR_UNKNOWN_TYPE;
+        }
+        // Same rule as the JSON protocol: ride plan ids are positive
+        if (target.ridePlanId <= 0) {
+            return ERROR_MALFORMED;
+        }
+        return target.hasValidPoints() ? 0 : ERROR_MALFORMED;
+    }
+
+    private static void readPoint(ByteBuffer frame, int at, LocationBatch target) {
+        int k = target.addPoint();
+        target.latitudes[k] = frame.getDouble(at);
+        target.longitudes[k] = frame.getDouble(at + 8);
+        target.timestamps[k] = frame.getLong(at + 16);
+        target.speeds[k] = frame.getFloat(at + 24);
+        target.headings[k] = frame.getFloat(at + 28);
+    }
+
+    static boolean validCoordinates(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    static ByteBuffer ack(long ridePlanId) {
+        return ByteBuffer.allocate(9).put(ACK).putLong(ridePlanId).flip();
+    }
+
+    static ByteBuffer sequenceAck(long ridePlanId, long sequence) {
+        return ByteBuffer.allocate(17).put(SEQUENCE_ACK).putLong(ridePlanId).putLong(sequence).flip();
+    }
+
+    static ByteBuffer alert(long ridePlanId, double deviationMeters) {
+        return ByteBuffer.allocate(13).put(ALERT).putLong(ridePlanId).putFloat((float) deviationMeters).flip();
+    }
+
+    static ByteBuffer error(byte code) {
+        return ByteBuffer.allocate(2).put(ERROR).put(code).flip();
+    }
+}
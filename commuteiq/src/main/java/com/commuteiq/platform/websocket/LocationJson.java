@@ -0,0 +1,186 @@
+package com.commuteiq.platform.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+
+/**
+ * JSON text format of the location endpoint, read and written without
+ * building trees, maps or reflective serializers.
+ *
+ * - messages are streamed with a {@link JsonParser} straight into a reused
+ * {@link LocationBatch}; unknown fields are skipped and a malformed message
+ * is reported as a result, not an exception
+ * - single ping: {@code ridePlanId}, {@code latitude} and {@code longitude},
+ * optionally {@code timestamp} (epoch ms), {@code speed} and {@code heading}
+ * - batch: {@code ridePlanId}, {@code sequence} of the first point and
+ * {@code points}, an array of point objects with the same fields
+ * - resume: {@code ridePlanId} and {@code "resume": true}
+ * - acks and alerts are appended to a per-thread {@link StringBuilder} that is
+ * reused across messages, and become the {@link TextMessage} payload as a
+ * String; the container encodes it once when sending. The malformed-input
+ * reply is a single shared message
+ */
+final class LocationJson {
+
+    private static final String ACK_PREFIX = "{\"status\":\"OK\",\"ridePlanId\":";
+    private static final String ALERT_PREFIX = "{\"alert\":\"ROUTE_DEVIATION\",\"ridePlanId\":";
+    private static final String ALERT_MESSAGE = ",\"message\":\"Route deviation detected: ";
+    private static final String ALERT_SUFFIX = "m\"}";
+    private static final String SEQUENCE = ",\"sequence\":";
+
+    static final TextMessage MALFORMED = new TextMessage(
+            "{\"status\":\"ERROR\",\"message\":\"Malformed location update\"}");
+    static final TextMessage INTERNAL_ERROR = new TextMessage(
+            "{\"status\":\"ERROR\",\"message\":\"Could not process location update\"}");
+
+    // Replies are built on the handling thread; the builder is reused across messages
+    private static final ThreadLocal<StringBuilder> REPLY = ThreadLocal.withInitial(() -> new StringBuilder(96));
+
+    private LocationJson() {
+    }
+
+    /**
+     * Parse one message into {@code target}: a single ping (top-level
+     * coordinates), a batch ({@code sequence} and {@code points}) or a resume
+     * request ({@code "resume": true}).
+     *
+     * @return whether the payload was a well-formed message
+     */
+    static boolean parse(JsonFactory factory, String payload, LocationBatch target) {
+        target.reset();
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        long timestamp = 0;
+        float speed = Float.NaN;
+        float heading = Float.NaN;
+        boolean batch = false;
+        try (JsonParser parser = factory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == null) {
+                    return false;
+                }
+                if (field.equals("points")) {
+                    if (value != JsonToken.START_ARRAY || !parsePoints(parser, target)) {
+                        return false;
+                    }
+                    batch = true;
+                    continue;
+                }
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // Lenient like the tree model: numeric strings are accepted, anything else reads as unset
+                switch (field) {
+                    case "ridePlanId" -> target.ridePlanId = parser.getValueAsLong(0);
+                    case "sequence" -> target.firstSequence = parser.getValueAsLong(LocationBatch.NO_SEQUENCE);
+                    case "resume" -> target.resume = parser.getValueAsBoolean(false);
+                    case "latitude" -> latitude = parser.getValueAsDouble(Double.NaN);
+                    case "longitude" -> longitude = parser.getValueAsDouble(Double.NaN);
+                    case "timestamp" -> timestamp = parser.getValueAsLong(0);
+                    case "speed" -> speed = (float) parser.getValueAsDouble(Double.NaN);
+                    case "heading" -> heading = (float) parser.getValueAsDouble(Double.NaN);
+                    default -> {
+                    }
+                }
+            }
+            if (token != JsonToken.END_OBJECT || target.ridePlanId <= 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            // Includes parse errors; their messages are never rendered here
+            return false;
+        }
+
+        if (target.resume) {
+            target.count = 0;
+            return true;
+        }
+        if (!batch) {
+            int k = target.addPoint();
+            target.latitudes[k] = latitude;
+            target.longitudes[k] = longitude;
+            target.timestamps[k] = timestamp;
+            target.speeds[k] = speed;
+            target.headings[k] = heading;
+            target.firstSequence = LocationBatch.NO_SEQUENCE;
+        } else if (target.firstSequence < 0) {
+            target.firstSequence = LocationBatch.NO_SEQUENCE;
+        }
+        return target.size() > 0 && target.hasValidPoints();
+    }
+
+    private static boolean parsePoints(JsonParser parser, LocationBatch target) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            int k = target.addPoint();
+            if (k < 0) {
+                return false;
+            }
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == null) {
+                    return false;
+                }
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "latitude" -> target.latitudes[k] = parser.getValueAsDouble(Double.NaN);
+                    case "longitude" -> target.longitudes[k] = parser.getValueAsDouble(Double.NaN);
+                    case "timestamp" -> target.timestamps[k] = parser.getValueAsLong(0);
+                    case "speed" -> target.speeds[k] = (float) parser.getValueAsDouble(Double.NaN);
+                    case "heading" -> target.headings[k] = (float) parser.getValueAsDouble(Double.NaN);
+                    default -> {
+                    }
+                }
+            }
+            if (token != JsonToken.END_OBJECT) {
+                return false;
+            }
+        }
+        return token == JsonToken.END_ARRAY;
+    }
+
+    /**
+     * @param ridePlanId a parsed, hence positive, ride plan id
+     */
+    static TextMessage ack(long ridePlanId) {
+        StringBuilder out = reply().append(ACK_PREFIX).append(ridePlanId).append('}');
+        return new TextMessage(out.toString());
+    }
+
+    /**
+     * Ack of a batch or resume request with the highest sequence processed
+     * for the ride plan, or -1 if none.
+     */
+    static TextMessage sequenceAck(long ridePlanId, long sequence) {
+        StringBuilder out = reply().append(ACK_PREFIX).append(ridePlanId)
+                .append(SEQUENCE).append(Math.max(sequence, -1L)).append('}');
+        return new TextMessage(out.toString());
+    }
+
+    static TextMessage alert(long ridePlanId, double deviationMeters) {
+        StringBuilder out = reply().append(ALERT_PREFIX).append(ridePlanId)
+                .append(ALERT_MESSAGE).append(Math.round(deviationMeters)).append(ALERT_SUFFIX);
+        return new TextMessage(out.toString());
+    }
+
+    private static StringBuilder reply() {
+        StringBuilder out = REPLY.get();
+        out.setLength(0);
+        return out;
+    }
+}
@@ -1,119 +1,355 @@
 package com.commuteiq.platform.websocket;
 
 import com.commuteiq.platform.entity.SafetyEventType;
-import com.commuteiq.platform.service.SafetyService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.commuteiq.platform.pooling.GeoDistance;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocket handler for real-time driver location tracking.
  *
  * Drivers send JSON messages with format:
  * { "ridePlanId": 123, "latitude": 12.9716, "longitude": 77.5946 }
+ * which are streamed into a per-session {@link LocationBatch} and acked
+ * with replies built directly as Strings (see {@link LocationJson}).
+ *
+ * Either format can also carry an ordered batch of timestamped points with
+ * the sequence number of its first point. A batch is processed in one pass
+ * and acked with the highest sequence processed for the ride plan; a driver
+ * that reconnects sends a resume request to learn that sequence and only
+ * sends what follows it. Points the server has already processed are
+ * skipped if sent again.
+ *
+ * Drivers that request the {@value LocationFrames#PROTOCOL} sub-protocol in
+ * the handshake instead send fixed-layout binary frames, which also carry the
+ * fix time, speed and heading, and get binary acks and alerts (see
+ * {@link LocationFrames}). Sessions that request no sub-protocol keep the
+ * JSON format.
  *
  * The handler tracks the last known position for each ride plan and
- * checks for route deviation exceeding a configurable threshold.
- * If deviation is detected, a SafetyEvent of type ROUTE_DEVIATION is created.
+ * checks for route deviation exceeding a configurable threshold:
+ * - on the first fix of a ride plan, its planned stops are loaded once into a
+ * {@link RouteCorridor} starting at that fix, in the background, and each fix
+ * after it is installed is matched against it;
+ * {@code app.route.deviation-threshold-meters} is the distance from the
+ * planned route
+ * - an excursion is reported once, when the vehicle leaves the corridor, and
+ * again only after it has returned
+ * - plans without stops, and fixes that arrive while the corridor is still
+ * loading, fall back to comparing each fix with the previous one
+ * If deviation is detected, a SafetyEvent of type ROUTE_DEVIATION is queued
+ * for the {@link SafetyEventWriter}, off the WebSocket thread.
+ *
+ * Tracks are dropped once no batch has arrived for
+ * {@code app.route.track-ttl-hours}; a driver resuming after that starts over
+ * with a new track.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class LocationTrackingHandler extends TextWebSocketHandler {
+public class LocationTrackingHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
 
-    private final SafetyService safetyService;
+    private static final String BATCH_ATTRIBUTE = LocationBatch.class.getName();
+
+    private final SafetyEventWriter safetyEventWriter;
+    private final RouteCorridorLoader routeCorridorLoader;
+    private final ThreadPoolTaskExecutor routeCorridorExecutor;
     private final ObjectMapper objectMapper;
 
     @Value("${app.route.deviation-threshold-meters:500}")
     private double deviationThresholdMeters;
 
-    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    @Value("${app.route.track-ttl-hours:12}")
+    private long trackTtlHours;
+
+    // Latest fix, processed sequence and route corridor per ride plan
+    private final ConcurrentHashMap<Long, RideTrack> tracks = new ConcurrentHashMap<>();
 
-    // Track last known positions per ride plan
-    private final ConcurrentHashMap<Long, double[]> lastKnownPositions = new ConcurrentHashMap<>();
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(LocationFrames.PROTOCOL);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        log.info("WebSocket connection established: {}", session.getId());
+        session.getAttributes().put(BATCH_ATTRIBUTE, new LocationBatch());
+        log.info("WebSocket connection established: {} protocol: {}", session.getId(),
+                isBinary(session) ? LocationFrames.PROTOCOL : "json");
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        LocationBatch batch = (LocationBatch) session.getAttributes().get(BATCH_ATTRIBUTE);
+        if (!LocationJson.parse(objectMapper.getFactory(), message.getPayload(), batch)) {
+            session.sendMessage(LocationJson.MALFORMED);
+            return;
+        }
+        long ridePlanId = batch.getRidePlanId();
+        if (batch.isResume()) {
+            session.sendMessage(LocationJson.sequenceAck(ridePlanId, lastSequence(ridePlanId)));
+            return;
+        }
+
         try {
-            JsonNode payload = objectMapper.readTree(message.getPayload());
-
-            Long ridePlanId = payload.get("ridePlanId").asLong();
-            double latitude = payload.get("latitude").asDouble();
-            double longitude = payload.get("longitude").asDouble();
-
-            log.debug("Location update for ridePlan {}: [{}, {}]", ridePlanId, latitude, longitude);
-
-            // Check for route deviation against last known position
-            double[] lastPosition = lastKnownPositions.get(ridePlanId);
-            if (lastPosition != null) {
-                double distance = haversineDistanceMeters(
-                        lastPosition[0], lastPosition[1], latitude, longitude);
-
-                if (distance > deviationThresholdMeters) {
-                    log.warn("Route deviation detected for ridePlan {}: {} meters", ridePlanId, distance);
-
-                    safetyService.recordSafetyEvent(
-                            ridePlanId,
-                            SafetyEventType.ROUTE_DEVIATION,
-                            String.format("Route deviation of %.1f meters detected. " +
-                                    "From [%.6f, %.6f] to [%.6f, %.6f]",
-                                    distance, lastPosition[0], lastPosition[1], latitude, longitude));
-
-                    // Send alert back to driver
-                    session.sendMessage(new TextMessage(
-                            objectMapper.writeValueAsString(
-                                    java.util.Map.of(
-                                            "alert", "ROUTE_DEVIATION",
-                                            "message", "Route deviation detected: " + Math.round(distance) + "m",
-                                            "ridePlanId", ridePlanId))));
-                }
+            double deviation = track(batch);
+            if (deviation >= 0) {
+                // Send alert back to driver
+                session.sendMessage(LocationJson.alert(ridePlanId, deviation));
             }
 
-            // Update last known position
-            lastKnownPositions.put(ridePlanId, new double[] { latitude, longitude });
-
             // Acknowledge receipt
-            session.sendMessage(new TextMessage(
-                    objectMapper.writeValueAsString(
-                            java.util.Map.of("status", "OK", "ridePlanId", ridePlanId))));
+            session.sendMessage(batch.getFirstSequence() == LocationBatch.NO_SEQUENCE
+                    ? LocationJson.ack(ridePlanId)
+                    : LocationJson.sequenceAck(ridePlanId, lastSequence(ridePlanId)));
 
         } catch (Exception e) {
             log.error("Error processing location update: {}", e.getMessage());
-            session.sendMessage(new TextMessage(
-                    objectMapper.writeValueAsString(
-                            java.util.Map.of("status", "ERROR", "message", e.getMessage()))));
+            session.sendMessage(LocationJson.INTERNAL_ERROR);
         }
     }
 
     @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        log.info("WebSocket connection closed: {} status: {}", session.getId(), status);
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        if (!isBinary(session)) {
+            session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Binary frames require the "
+                    + LocationFrames.PROTOCOL + " sub-protocol"));
+            return;
+        }
+        LocationBatch batch = (LocationBatch) session.getAttributes().get(BATCH_ATTRIBUTE);
+        byte error = LocationFrames.decode(message.getPayload(), batch);
+        if (error != 0) {
+            session.sendMessage(new BinaryMessage(LocationFrames.error(error)));
+            return;
+        }
+        long ridePlanId = batch.getRidePlanId();
+        if (batch.isResume()) {
+            session.sendMessage(new BinaryMessage(LocationFrames.sequenceAck(ridePlanId, lastSequence(ridePlanId))));
+            return;
+        }
+
+        try {
+            double deviation = track(batch);
+            if (deviation >= 0) {
+                session.sendMessage(new BinaryMessage(LocationFrames.alert(ridePlanId, deviation)));
+            }
+            session.sendMessage(new BinaryMessage(batch.getFirstSequence() == LocationBatch.NO_SEQUENCE
+                    ? LocationFrames.ack(ridePlanId)
+                    : LocationFrames.sequenceAck(ridePlanId, lastSequence(ridePlanId))));
+        } catch (Exception e) {
+            log.error("Error processing location update: {}", e.getMessage());
+            session.sendMessage(new BinaryMessage(LocationFrames.error(LocationFrames.ERROR_INTERNAL)));
+        }
+    }
+
+    /**
+     * Process a batch in one pass, in sequence order.
+     *
+     * - points at or below the ride plan's last processed sequence were
+     * already handled before a reconnect and are skipped
+     * - points are placed in time by their own timestamps (arrival time when
+     * unknown); a point older than the latest fix is late catch-up data and is
+     * not compared against it
+     * - a point's sequence only counts as processed once its deviation check
+     * succeeded and any safety event was queued, so a failed batch can be
+     * resumed
+     *
+     * @return the largest deviation in meters detected and queued, otherwise -1
+     */
+    private double track(LocationBatch batch) {
+        long arrivalMillis = System.currentTimeMillis();
+        while (true) {
+            RideTrack track = tracks.computeIfAbsent(batch.getRidePlanId(), id -> new RideTrack());
+            synchronized (track) {
+                // Skip a track evicted between the lookup and the lock; the next lookup starts a new one
+                if (!track.evicted) {
+                    track.touchedMillis = arrivalMillis;
+                    return track(batch, track, arrivalMillis);
+                }
+            }
+        }
+    }
+
+    // Caller holds the track's monitor
+    private double track(LocationBatch batch, RideTrack track, long arrivalMillis) {
+        long ridePlanId = batch.getRidePlanId();
+        double maxDeviation = -1;
+        for (int k = 0; k < batch.size(); k++) {
+            long sequence = batch.getFirstSequence() == LocationBatch.NO_SEQUENCE
+                    ? LocationBatch.NO_SEQUENCE
+                    : batch.getFirstSequence() + k;
+            if (sequence != LocationBatch.NO_SEQUENCE && sequence <= track.lastSequence) {
+                continue;
+            }
+            double latitude = batch.latitude(k);
+            double longitude = batch.longitude(k);
+            long timestamp = batch.timestampMillis(k) > 0 ? batch.timestampMillis(k) : arrivalMillis;
+            if (log.isDebugEnabled()) {
+                log.debug("Location update for ridePlan {}: [{}, {}] at {}", ridePlanId, latitude, longitude,
+                        timestamp);
+            }
+
+            if (!track.hasFix || timestamp >= track.timestampMillis) {
+                if (!track.corridorRequested) {
+                    loadCorridor(ridePlanId, track, latitude, longitude);
+                }
+                maxDeviation = Math.max(maxDeviation, checkDeviation(ridePlanId, track, latitude, longitude));
+                track.moveTo(latitude, longitude, timestamp);
+            }
+            if (sequence != LocationBatch.NO_SEQUENCE) {
+                track.lastSequence = sequence;
+            }
+        }
+        return maxDeviation;
     }
 
     /**
-     * Haversine formula returning distance in meters.
+     * Start building the ride plan's route corridor from its first fix on the
+     * corridor executor; the caller holds the track's monitor and does not
+     * wait. A failed load is not retried, and the ride plan then keeps the
+     * jump check; a load rejected by a full executor is retried on the next
+     * fix.
      */
-    private double haversineDistanceMeters(double lat1, double lon1, double lat2, double lon2) {
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                        * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return EARTH_RADIUS_METERS * c;
+    private void loadCorridor(long ridePlanId, RideTrack track, double latitude, double longitude) {
+        track.corridorRequested = true;
+        try {
+            CompletableFuture.supplyAsync(() -> routeCorridorLoader.load(ridePlanId, latitude, longitude),
+                    routeCorridorExecutor)
+                    .whenComplete((corridor, error) -> installCorridor(ridePlanId, track, corridor, error));
+        } catch (RejectedExecutionException e) {
+            track.corridorRequested = false;
+            log.debug("Route corridor loader busy, ridePlan {} retries on its next fix", ridePlanId);
+        }
+    }
+
+    private void installCorridor(long ridePlanId, RideTrack track, RouteCorridor corridor, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            log.error("Could not load route corridor for ridePlan {}: {}", ridePlanId, cause.getMessage());
+            return;
+        }
+        if (corridor == null) {
+            log.info("No planned route for ridePlan {}, checking deviation between consecutive fixes", ridePlanId);
+            return;
+        }
+        synchronized (track) {
+            // The cursor starts at the trip start; the first match moves it to wherever the vehicle is by now
+            track.corridor = corridor;
+            track.segment = 0;
+        }
+    }
+
+    /**
+     * Check a fix for route deviation against the ride plan's route corridor,
+     * or against its latest fix when it has none.
+     *
+     * @return the deviation in meters when one was detected and queued, otherwise -1
+     */
+    private double checkDeviation(long ridePlanId, RideTrack track, double latitude, double longitude) {
+        if (track.corridor != null) {
+            return checkCorridor(ridePlanId, track, latitude, longitude);
+        }
+        if (!track.hasFix) {
+            return -1;
+        }
+        double distance = GeoDistance.haversineKm(track.latitude, track.longitude, latitude, longitude) * 1000.0;
+        if (distance <= deviationThresholdMeters) {
+            return -1;
+        }
+        log.warn("Route deviation detected for ridePlan {}: {} meters", ridePlanId, distance);
+
+        // Written asynchronously; never blocks this WebSocket thread
+        safetyEventWriter.submit(
+                ridePlanId,
+                SafetyEventType.ROUTE_DEVIATION,
+                String.format("Route deviation of %.1f meters detected. " +
+                        "From [%.6f, %.6f] to [%.6f, %.6f]",
+                        distance, track.latitude, track.longitude, latitude, longitude));
+        return distance;
+    }
+
+    private double checkCorridor(long ridePlanId, RideTrack track, double latitude, double longitude) {
+        double distance = track.corridor.match(latitude, longitude, track, deviationThresholdMeters);
+        if (distance <= deviationThresholdMeters) {
+            track.offRoute = false;
+            return -1;
+        }
+        if (track.offRoute) {
+            // Same excursion, already reported
+            return -1;
+        }
+        track.offRoute = true;
+        log.warn("Route deviation detected for ridePlan {}: {} meters from the planned route", ridePlanId, distance);
+
+        // Written asynchronously; never blocks this WebSocket thread
+        safetyEventWriter.submit(
+                ridePlanId,
+                SafetyEventType.ROUTE_DEVIATION,
+                String.format("Route deviation of %.1f meters from the planned route at [%.6f, %.6f]",
+                        distance, latitude, longitude));
+        return distance;
+    }
+
+    /**
+     * Drop the tracks of ride plans that have sent nothing for
+     * {@code app.route.track-ttl-hours}, so finished and abandoned trips do
+     * not accumulate.
+     */
+    @Scheduled(fixedDelayString = "${app.route.track-sweep-interval-ms:600000}")
+    public void evictIdleTracks() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(trackTtlHours);
+        int evicted = 0;
+        for (Map.Entry<Long, RideTrack> entry : tracks.entrySet()) {
+            RideTrack track = entry.getValue();
+            synchronized (track) {
+                if (track.touchedMillis < cutoff) {
+                    track.evicted = true;
+                    tracks.remove(entry.getKey(), track);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} ride tracks idle for more than {} hours", evicted, trackTtlHours);
+        }
+    }
+
+    private long lastSequence(long ridePlanId) {
+        RideTrack track = tracks.get(ridePlanId);
+        if (track == null) {
+            return LocationBatch.NO_SEQUENCE;
+        }
+        synchronized (track) {
+            return track.lastSequence;
+        }
+    }
+
+    private static boolean isBinary(WebSocketSession session) {
+        return LocationFrames.PROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        log.info("WebSocket connection closed: {} status: {}", session.getId(), status);
     }
 }
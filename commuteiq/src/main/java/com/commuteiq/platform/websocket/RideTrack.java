@@ -0,0 +1,37 @@
+package com.commuteiq.platform.websocket;
+
+/**
+ * Tracking state of one ride plan: its latest fix, the highest sequence
+ * number processed and its position along the planned route corridor. Kept
+ * per ride plan rather than per session, so a driver reconnecting on a new
+ * session resumes where the server left off. Guarded by its own monitor.
+ *
+ * A track idle for longer than {@code app.route.track-ttl-hours} is marked
+ * evicted and removed; a fix that looked it up just before must start a new one.
+ */
+final class RideTrack {
+
+    long lastSequence = LocationBatch.NO_SEQUENCE;
+    boolean hasFix;
+    double latitude;
+    double longitude;
+    long timestampMillis;
+    // Arrival time of the latest batch, whatever its fix times
+    long touchedMillis;
+    boolean evicted;
+
+    // Requested on the first fix and installed when loaded; null until then,
+    // when the plan has no stops or when loading failed
+    boolean corridorRequested;
+    RouteCorridor corridor;
+    // Segment of the corridor matched last, and whether the vehicle is outside it
+    int segment;
+    boolean offRoute;
+
+    void moveTo(double latitude, double longitude, long timestampMillis) {
+        this.hasFix = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestampMillis = timestampMillis;
+    }
+}
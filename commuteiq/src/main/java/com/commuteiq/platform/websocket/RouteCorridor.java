@@ -0,0 +1,137 @@
+package com.commuteiq.platform.websocket;
+
+import com.commuteiq.platform.pooling.GeoDistance;
+
+import java.util.Arrays;
+
+/**
+ * Planned route of one ride plan as a polyline (trip start, stops in stop
+ * order, then the office when its coordinates are known), projected once to
+ * local planar meters around the trip start. At city scale the projection
+ * error is far below GPS noise.
+ *
+ * Fixes are matched with a cursor on the last matched segment: a fix is
+ * first compared with that segment and the next {@value #LOOKAHEAD}, so a
+ * vehicle following the route costs O(1) per fix. Only a fix outside the
+ * corridor around that window falls back to scanning every segment, which
+ * also finds where the vehicle rejoined the route after skipping ahead.
+ */
+final class RouteCorridor {
+
+    private static final int LOOKAHEAD = 3;
+    private static final double EARTH_RADIUS_M = GeoDistance.EARTH_RADIUS_KM * 1000.0;
+
+    private final double originLatitude;
+    private final double originLongitude;
+    private final double cosOrigin;
+
+    // Vertices in planar meters; segment s runs from vertex s to s + 1
+    private final double[] x;
+    private final double[] y;
+    private final double[] dx;
+    private final double[] dy;
+    private final double[] lengthSquared;
+
+    /**
+     * @param latitudes vertices in route order, the first being the trip start
+     */
+    RouteCorridor(double[] latitudes, double[] longitudes) {
+        this.originLatitude = latitudes[0];
+        this.originLongitude = longitudes[0];
+        this.cosOrigin = GeoDistance.cosLatitude(originLatitude);
+
+        // Consecutive duplicates (e.g. riders sharing a pickup point) would make empty segments
+        double[] px = new double[latitudes.length];
+        double[] py = new double[latitudes.length];
+        int n = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            double vx = projectX(longitudes[i]);
+            double vy = projectY(latitudes[i]);
+            if (n == 0 || vx != px[n - 1] || vy != py[n - 1]) {
+                px[n] = vx;
+                py[n] = vy;
+                n++;
+            }
+        }
+        this.x = Arrays.copyOf(px, n);
+        this.y = Arrays.copyOf(py, n);
+
+        int segments = Math.max(0, n - 1);
+        this.dx = new double[segments];
+        this.dy = new double[segments];
+        this.lengthSquared = new double[segments];
+        for (int s = 0; s < segments; s++) {
+            dx[s] = x[s + 1] - x[s];
+            dy[s] = y[s + 1] - y[s];
+            lengthSquared[s] = dx[s] * dx[s] + dy[s] * dy[s];
+        }
+    }
+
+    int segmentCount() {
+        return dx.length;
+    }
+
+    /**
+     * Distance in meters from a fix to the route, moving {@code track}'s
+     * segment cursor to the matched segment when the fix is within
+     * {@code thresholdMeters}.
+     */
+    double match(double latitude, double longitude, RideTrack track, double thresholdMeters) {
+        double px = projectX(longitude);
+        double py = projectY(latitude);
+        if (dx.length == 0) {
+            return length(px - x[0], py - y[0]);
+        }
+
+        int cursor = Math.min(track.segment, dx.length - 1);
+        int bestSegment = cursor;
+        double best = Double.POSITIVE_INFINITY;
+        int end = Math.min(dx.length, cursor + 1 + LOOKAHEAD);
+        for (int s = cursor; s < end; s++) {
+            double d = distanceToSegment(s, px, py);
+            if (d < best) {
+                best = d;
+                bestSegment = s;
+            }
+        }
+        if (best > thresholdMeters) {
+            for (int s = 0; s < dx.length; s++) {
+                double d = distanceToSegment(s, px, py);
+                if (d < best) {
+                    best = d;
+                    bestSegment = s;
+                }
+            }
+        }
+        if (best <= thresholdMeters) {
+            track.segment = bestSegment;
+        }
+        return best;
+    }
+
+    private double distanceToSegment(int s, double px, double py) {
+        double rx = px - x[s];
+        double ry = py - y[s];
+        double t = (rx * dx[s] + ry * dy[s]) / lengthSquared[s];
+        if (t <= 0) {
+            return length(rx, ry);
+        }
+        if (t >= 1) {
+            return length(px - x[s + 1], py - y[s + 1]);
+        }
+        return length(rx - t * dx[s], ry - t * dy[s]);
+    }
+
+    // Math.hypot guards against overflow that planar meters cannot reach, at several times the cost
+    private static double length(double dx, double dy) {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double projectX(double longitude) {
+        return Math.toRadians(longitude - originLongitude) * cosOrigin * EARTH_RADIUS_M;
+    }
+
+    private double projectY(double latitude) {
+        return Math.toRadians(latitude - originLatitude) * EARTH_RADIUS_M;
+    }
+}
@@ -0,0 +1,51 @@
+package com.commuteiq.platform.websocket;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.repository.RidePlanEmployeeRepository;
+import com.commuteiq.platform.repository.projection.RouteStopRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds the {@link RouteCorridor} of a ride plan when its trip starts, i.e.
+ * on the first tracked fix: from that fix through the riders' homes in stop
+ * order, ending at the office when {@code app.pooling.office-coordinates}
+ * lists it. One query per trip.
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteCorridorLoader {
+
+    private final RidePlanEmployeeRepository ridePlanEmployeeRepository;
+    private final OfficeLocationProperties officeLocationProperties;
+
+    /**
+     * @return the corridor, or null when the ride plan has no stops
+     */
+    RouteCorridor load(long ridePlanId, double startLatitude, double startLongitude) {
+        List<RouteStopRow> stops = ridePlanEmployeeRepository.findRouteStopsByRidePlanId(ridePlanId);
+        if (stops.isEmpty()) {
+            return null;
+        }
+        List<Double> office = officeLocationProperties.getOfficeCoordinates()
+                .get(stops.get(0).getOfficeLocation());
+        boolean withOffice = office != null && office.size() == 2;
+
+        int vertices = 1 + stops.size() + (withOffice ? 1 : 0);
+        double[] latitudes = new double[vertices];
+        double[] longitudes = new double[vertices];
+        latitudes[0] = startLatitude;
+        longitudes[0] = startLongitude;
+        for (int i = 0; i < stops.size(); i++) {
+            latitudes[i + 1] = stops.get(i).getHomeLatitude();
+            longitudes[i + 1] = stops.get(i).getHomeLongitude();
+        }
+        if (withOffice) {
+            latitudes[vertices - 1] = office.get(0);
+            longitudes[vertices - 1] = office.get(1);
+        }
+        return new RouteCorridor(latitudes, longitudes);
+    }
+}
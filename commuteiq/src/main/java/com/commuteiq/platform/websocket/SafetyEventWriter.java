@@ -0,0 +1,217 @@
+package com.commuteiq.platform.websocket;
+
+import com.commuteiq.platform.entity.SafetyEvent;
+import com.commuteiq.platform.entity.SafetyEventType;
+import com.commuteiq.platform.repository.RidePlanRepository;
+import com.commuteiq.platform.repository.SafetyEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes safety events detected on the WebSocket threads from a bounded
+ * in-memory queue on a dedicated writer thread, so a slow database never
+ * stalls location tracking.
+ *
+ * - {@link #submit} never blocks; when the queue
+ * ({@code app.safety.writer.queue-capacity}) is full the overflow policy
+ * ({@code app.safety.writer.overflow}) drops either the new event
+ * ({@code DROP_NEWEST}) or the oldest queued one ({@code DROP_OLDEST})
+ * - the writer drains up to {@code app.safety.writer.batch-size} events into
+ * one transaction, referencing ride plans through {@code getReferenceById}
+ * instead of loading them; if the batch fails, its events are retried one by
+ * one and those that still fail (e.g. unknown ride plan) are discarded
+ * - queue depth, drops, writes and failures are published as
+ * {@code commuteiq.safety.writer.*} metrics
+ * - on shutdown, after the web server has stopped, the writer drains the
+ * queue (for at most 30 seconds)
+ */
+@Component
+@Slf4j
+public class SafetyEventWriter implements SmartLifecycle {
+
+    public enum OverflowPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
+    private record PendingEvent(long ridePlanId, SafetyEventType type, String description,
+            LocalDateTime timestamp) {
+    }
+
+    private final SafetyEventRepository safetyEventRepository;
+    private final RidePlanRepository ridePlanRepository;
+    private final TransactionTemplate batchTransaction;
+    private final BlockingQueue<PendingEvent> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public SafetyEventWriter(SafetyEventRepository safetyEventRepository, RidePlanRepository ridePlanRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.safety.writer.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.safety.writer.batch-size:100}") int batchSize,
+            @Value("${app.safety.writer.overflow:DROP_OLDEST}") OverflowPolicy overflowPolicy) {
+        this.safetyEventRepository = safetyEventRepository;
+        this.ridePlanRepository = ridePlanRepository;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = Math.max(1, batchSize);
+
+        Gauge.builder("commuteiq.safety.writer.queue.depth", queue, BlockingQueue::size)
+                .description("Safety events waiting to be written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("commuteiq.safety.writer.dropped")
+                .description("Safety events dropped because the queue was full")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+        this.written = Counter.builder("commuteiq.safety.writer.written")
+                .description("Safety events written")
+                .register(meterRegistry);
+        this.failed = Counter.builder("commuteiq.safety.writer.failed")
+                .description("Safety events discarded after a failed write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue an event for writing without blocking.
+     *
+     * @return false when an event was dropped to make room or this one was
+     * rejected under the overflow policy
+     */
+    public boolean submit(long ridePlanId, SafetyEventType type, String description) {
+        PendingEvent event = new PendingEvent(ridePlanId, type, description, LocalDateTime.now());
+        if (queue.offer(event)) {
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            // The writer may take the head meanwhile; then the offer succeeds without a drop
+            while (!queue.offer(event)) {
+                if (queue.poll() != null) {
+                    dropped.increment();
+                }
+            }
+        } else {
+            dropped.increment();
+        }
+        log.debug("Safety event queue full, dropped an event ({})", overflowPolicy);
+        return false;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "safety-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Safety event writer stopped with {} events unwritten", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before and stop after the web server, so no WebSocket thread
+     * submits into a queue that is no longer drained.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Safety event writer failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingEvent> batch) {
+        try {
+            batchTransaction.executeWithoutResult(status -> insert(batch));
+            written.increment(batch.size());
+        } catch (RuntimeException batchFailure) {
+            log.warn("Safety event batch of {} failed, retrying individually: {}", batch.size(),
+                    batchFailure.getMessage());
+            for (PendingEvent event : batch) {
+                try {
+                    batchTransaction.executeWithoutResult(status -> insert(List.of(event)));
+                    written.increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.error("Discarding safety event for ridePlan {}: {}", event.ridePlanId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void insert(List<PendingEvent> events) {
+        List<SafetyEvent> entities = new ArrayList<>(events.size());
+        for (PendingEvent event : events) {
+            entities.add(SafetyEvent.builder()
+                    .ridePlan(ridePlanRepository.getReferenceById(event.ridePlanId()))
+                    .type(event.type())
+                    .timestamp(event.timestamp())
+                    .description(event.description())
+                    .build());
+        }
+        safetyEventRepository.saveAll(entities);
+    }
+}
@@ -0,0 +1,122 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SpatialGridIndex} and {@link PickupWindowIndex} against brute force.
+ */
+class CandidateIndexTest {
+
+    @Test
+    void gridNeverMissesAPointWithinTheThreshold() {
+        Random random = new Random(73);
+        for (int round = 0; round < 60; round++) {
+            int n = 1 + random.nextInt(500);
+            double thresholdKm = 0.2 + 5 * random.nextDouble();
+            // Mostly city-sized areas, sometimes far from the equator
+            double baseLatitude = random.nextInt(4) == 0 ? 55 + 10 * random.nextDouble() : 12.9;
+            double[] latitudes = new double[n];
+            double[] longitudes = new double[n];
+            for (int i = 0; i < n; i++) {
+                latitudes[i] = baseLatitude + 0.3 * random.nextDouble();
+                longitudes[i] = 77.5 + 0.3 * random.nextDouble();
+            }
+            SpatialGridIndex grid = SpatialGridIndex.build(latitudes, longitudes, thresholdKm);
+
+            int[] out = new int[n];
+            for (int anchor = 0; anchor < n; anchor++) {
+                int count = grid.candidatesAfter(anchor, out);
+                for (int k = 1; k < count; k++) {
+                    assertTrue(out[k - 1] < out[k], "candidates not ascending");
+                }
+                List<Integer> candidates = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    assertTrue(out[k] > anchor);
+                    candidates.add(out[k]);
+                }
+                for (int j = anchor + 1; j < n; j++) {
+                    if (GeoDistance.haversineKm(latitudes[anchor], longitudes[anchor], latitudes[j],
+                            longitudes[j]) <= thresholdKm) {
+                        assertTrue(candidates.contains(j), "round " + round + ": missed " + anchor + "-" + j);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void windowAndGridCandidatesMatchBruteForce() {
+        Random random = new Random(79);
+        for (int round = 0; round < 60; round++) {
+            PlanningSnapshot snapshot = ClusterBuilderTest.randomSnapshot(random, 1 + random.nextInt(400));
+            double thresholdKm = 0.5 + 3 * random.nextDouble();
+            // One partition per office, in snapshot order, as ClusterBuilder sees them
+            for (int office = 0; office < snapshot.officeCount(); office++) {
+                int[] members = membersOf(snapshot, office);
+                int n = members.length;
+                double[] latitudes = new double[n];
+                double[] longitudes = new double[n];
+                for (int k = 0; k < n; k++) {
+                    latitudes[k] = snapshot.latitude(members[k]);
+                    longitudes[k] = snapshot.longitude(members[k]);
+                }
+                SpatialGridIndex grid = SpatialGridIndex.build(latitudes, longitudes, thresholdKm);
+                PickupWindowIndex windows = PickupWindowIndex.build(snapshot, members);
+
+                int[] out = new int[n];
+                for (int i = 0; i < n; i++) {
+                    int last = windows.lastOverlapping(i);
+                    // The timed run is exactly the later timed members whose windows overlap
+                    for (int j = i + 1; j < windows.flexibleFrom(); j++) {
+                        assertEquals(overlaps(snapshot, members[i], members[j]), j <= last);
+                    }
+
+                    int count = grid.candidatesAfter(i, last, windows.flexibleFrom(), out);
+                    List<Integer> found = new ArrayList<>();
+                    for (int k = 0; k < count; k++) {
+                        int j = out[k];
+                        if (within(snapshot, members[i], members[j], thresholdKm)
+                                && overlaps(snapshot, members[i], members[j])) {
+                            found.add(j);
+                        }
+                    }
+                    List<Integer> expected = new ArrayList<>();
+                    for (int j = i + 1; j < n; j++) {
+                        if (within(snapshot, members[i], members[j], thresholdKm)
+                                && overlaps(snapshot, members[i], members[j])) {
+                            expected.add(j);
+                        }
+                    }
+                    assertEquals(expected, found, "round " + round + " anchor " + i);
+                }
+            }
+        }
+    }
+
+    private static int[] membersOf(PlanningSnapshot snapshot, int office) {
+        // Flexible members last, as the snapshot orders them
+        List<Integer> members = new ArrayList<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.officeId(i) == office) {
+                members.add(i);
+            }
+        }
+        return members.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean within(PlanningSnapshot snapshot, int a, int b, double thresholdKm) {
+        return GeoDistance.haversineKm(snapshot.latitude(a), snapshot.longitude(a), snapshot.latitude(b),
+                snapshot.longitude(b)) <= thresholdKm;
+    }
+
+    private static boolean overlaps(PlanningSnapshot snapshot, int a, int b) {
+        return snapshot.pickupStart(b) <= snapshot.pickupEnd(a) && snapshot.pickupStart(a) <= snapshot.pickupEnd(b);
+    }
+}
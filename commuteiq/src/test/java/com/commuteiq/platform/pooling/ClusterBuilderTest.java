@@ -0,0 +1,149 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClusterBuilderTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 6);
+    private static final double KM_PER_DEGREE = 111.2;
+    private static final String[] OFFICES = { "Central", "Tech Park", "Airport Road" };
+
+    @Test
+    void greedyClustersMatchPairwisePass() {
+        Random random = new Random(41);
+        PoolingEngine engine = new PoolingEngine(ForkJoinPool.commonPool(), new OfficeLocationProperties());
+        for (int round = 0; round < 40; round++) {
+            PlanningSnapshot snapshot = randomSnapshot(random, 50 + random.nextInt(400));
+            double thresholdKm = 0.5 + 4.5 * random.nextDouble();
+            int maxClusterSize = 2 + random.nextInt(6);
+            PoolingParameters parameters = PoolingParameters.builder()
+                    .distanceThresholdKm(thresholdKm)
+                    .maxClusterSize(maxClusterSize)
+                    .build();
+
+            List<String> expected = pairwise(snapshot, thresholdKm, maxClusterSize);
+            assertEquals(expected, describe(engine.buildClusters(snapshot, parameters)), "round " + round);
+            assertEquals(expected, describe(engine.buildClusters(withMatrices(snapshot), parameters)),
+                    "round " + round + " with cached distances");
+        }
+    }
+
+    @Test
+    void pairsAtTheThresholdFollowExactHaversine() {
+        Random random = new Random(43);
+        double thresholdKm = 2.0;
+        List<PendingRequestRow> rows = new ArrayList<>();
+        for (int k = 0; k < 300; k++) {
+            double latitude = 12.9 + 0.2 * random.nextDouble();
+            double longitude = 77.5 + 0.2 * random.nextDouble();
+            rows.add(row(2L * k, latitude, longitude, "Central", null, "MALE", false));
+            // Partner within a few float roundings of the threshold, on either side
+            double reachKm = thresholdKm * (1 + (random.nextDouble() - 0.5) * 1e-6);
+            double bearing = 2 * Math.PI * random.nextDouble();
+            rows.add(row(2L * k + 1, latitude + reachKm * Math.cos(bearing) / KM_PER_DEGREE,
+                    longitude + reachKm * Math.sin(bearing) / (KM_PER_DEGREE * Math.cos(Math.toRadians(latitude))),
+                    "Central", null, "MALE", false));
+        }
+        PlanningSnapshot snapshot = PlanningSnapshot.of(DATE, rows);
+        PoolingEngine engine = new PoolingEngine(ForkJoinPool.commonPool(), new OfficeLocationProperties());
+        PoolingParameters parameters = PoolingParameters.builder()
+                .distanceThresholdKm(thresholdKm)
+                .maxClusterSize(2)
+                .build();
+
+        List<String> expected = pairwise(snapshot, thresholdKm, 2);
+        assertEquals(expected, describe(engine.buildClusters(snapshot, parameters)));
+        assertEquals(expected, describe(engine.buildClusters(withMatrices(snapshot), parameters)));
+    }
+
+    /**
+     * Reference greedy pass over every later request, with exact Haversine.
+     */
+    private static List<String> pairwise(PlanningSnapshot snapshot, double thresholdKm, int maxClusterSize) {
+        int n = snapshot.size();
+        boolean[] assigned = new boolean[n];
+        List<int[]> clusters = new ArrayList<>();
+        for (int a = 0; a < n; a++) {
+            if (assigned[a])
+                continue;
+            assigned[a] = true;
+            int[] cluster = new int[maxClusterSize];
+            cluster[0] = a;
+            int size = 1;
+            boolean sameGender = snapshot.requiresSameGender(a);
+            for (int j = a + 1; j < n && size < maxClusterSize; j++) {
+                if (assigned[j] || snapshot.officeId(j) != snapshot.officeId(a))
+                    continue;
+                if (GeoDistance.haversineKm(snapshot.latitude(a), snapshot.longitude(a),
+                        snapshot.latitude(j), snapshot.longitude(j)) > thresholdKm)
+                    continue;
+                if (snapshot.pickupStart(j) > snapshot.pickupEnd(a) || snapshot.pickupStart(a) > snapshot.pickupEnd(j))
+                    continue;
+                if ((sameGender || snapshot.requiresSameGender(j)) && snapshot.genderCode(j) != snapshot.genderCode(a))
+                    continue;
+                assigned[j] = true;
+                cluster[size++] = j;
+                sameGender |= snapshot.requiresSameGender(j);
+            }
+            clusters.add(Arrays.copyOf(cluster, size));
+        }
+        return describe(Clusters.of(clusters));
+    }
+
+    private static List<String> describe(Clusters clusters) {
+        List<String> described = new ArrayList<>(clusters.count());
+        for (int c = 0; c < clusters.count(); c++) {
+            described.add(Arrays.toString(clusters.membersOf(c)));
+        }
+        described.sort(null);
+        return described;
+    }
+
+    static PlanningSnapshot randomSnapshot(Random random, int n) {
+        List<PendingRequestRow> rows = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            double latitude = 12.85 + 0.25 * random.nextDouble();
+            double longitude = 77.45 + 0.25 * random.nextDouble();
+            if (k > 0 && random.nextInt(20) == 0) {
+                // Neighbours sharing a building
+                PendingRequestRow previous = rows.get(random.nextInt(k));
+                latitude = previous.getHomeLatitude();
+                longitude = previous.getHomeLongitude();
+            }
+            LocalTime start = random.nextInt(5) == 0 ? null : LocalTime.of(6, 0).plusMinutes(15L * random.nextInt(16));
+            rows.add(row(k, latitude, longitude, OFFICES[random.nextInt(OFFICES.length)], start,
+                    random.nextBoolean() ? "FEMALE" : "MALE", random.nextInt(3) == 0));
+        }
+        return PlanningSnapshot.of(DATE, rows);
+    }
+
+    static PlanningSnapshot withMatrices(PlanningSnapshot snapshot) {
+        OfficeDistanceMatrix[] matrices = new OfficeDistanceMatrix[snapshot.officeCount()];
+        for (int o = 0; o < matrices.length; o++) {
+            matrices[o] = new OfficeDistanceMatrix(16, 64);
+        }
+        int[] slots = new int[snapshot.size()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            slots[i] = matrices[snapshot.officeId(i)].addSlot(snapshot.latitude(i), snapshot.longitude(i));
+        }
+        return snapshot.withDistanceMatrices(matrices, slots);
+    }
+
+    private static PendingRequestRow row(long id, double latitude, double longitude, String office, LocalTime start,
+            String gender, boolean sameGender) {
+        return new PendingRequestRow(id, 1000 + id, "Employee " + id, gender, latitude, longitude, office,
+                start, start != null ? start.plusMinutes(30) : null, sameGender, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoDistanceTest {
+
+    private static final int PAIRS = 2_000_000;
+    private static final double KM_PER_DEGREE = 111.2;
+
+    @Test
+    void preFilterNeverRejectsAPairWithinTheThreshold() {
+        Random random = new Random(17);
+        int rejected = 0;
+        for (int n = 0; n < PAIRS; n++) {
+            double thresholdKm = 0.5 + 9.5 * random.nextDouble();
+            double lat1 = -70 + 140 * random.nextDouble();
+            double lon1 = -180 + 360 * random.nextDouble();
+            // Second point between half and 1.5 times the threshold away, in any direction
+            double reachKm = thresholdKm * (0.5 + random.nextDouble());
+            double bearing = 2 * Math.PI * random.nextDouble();
+            double lat2 = lat1 + reachKm * Math.cos(bearing) / KM_PER_DEGREE;
+            double lon2 = wrap(lon1 + reachKm * Math.sin(bearing)
+                    / (KM_PER_DEGREE * Math.cos(Math.toRadians(lat1))));
+
+            boolean mayBeWithin = GeoDistance.mayBeWithinKm(lat1, lon1, GeoDistance.cosLatitude(lat1),
+                    lat2, lon2, GeoDistance.cosLatitude(lat2), thresholdKm);
+            if (GeoDistance.haversineKm(lat1, lon1, lat2, lon2) <= thresholdKm) {
+                assertTrue(mayBeWithin, () -> "rejected a pair within " + thresholdKm + " km");
+            }
+            if (!mayBeWithin) {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > PAIRS / 4, "pre-filter should reject most far pairs, rejected " + rejected);
+    }
+
+    @Test
+    void equirectangularStaysWithinDocumentedErrorBelowTenKm() {
+        Random random = new Random(23);
+        for (int n = 0; n < PAIRS; n++) {
+            double lat1 = -70 + 140 * random.nextDouble();
+            double lon1 = -180 + 360 * random.nextDouble();
+            double reachKm = 10 * random.nextDouble();
+            double bearing = 2 * Math.PI * random.nextDouble();
+            double lat2 = Math.max(-70, Math.min(70, lat1 + reachKm * Math.cos(bearing) / KM_PER_DEGREE));
+            double lon2 = wrap(lon1 + reachKm * Math.sin(bearing)
+                    / (KM_PER_DEGREE * Math.cos(Math.toRadians(lat1))));
+
+            double exact = GeoDistance.haversineKm(lat1, lon1, lat2, lon2);
+            if (exact > 10 || exact == 0) {
+                continue;
+            }
+            double approximate = GeoDistance.equirectangularKm(lat1, lon1, GeoDistance.cosLatitude(lat1),
+                    lat2, lon2, GeoDistance.cosLatitude(lat2));
+            assertEquals(exact, approximate, exact * 1e-6);
+        }
+    }
+
+    @Test
+    void haversineIsSymmetricAndZeroOnTheSamePoint() {
+        assertEquals(0.0, GeoDistance.haversineKm(12.9716, 77.5946, 12.9716, 77.5946));
+        assertEquals(GeoDistance.haversineKm(12.9716, 77.5946, 12.9352, 77.6245),
+                GeoDistance.haversineKm(12.9352, 77.6245, 12.9716, 77.5946));
+        // Across the antimeridian
+        assertEquals(GeoDistance.haversineKm(0, 179.99, 0, -179.99), 2 * 0.01 * Math.PI / 180 * 6371.0, 1e-9);
+    }
+
+    private static double wrap(double longitude) {
+        return longitude > 180 ? longitude - 360 : longitude < -180 ? longitude + 360 : longitude;
+    }
+}
@@ -0,0 +1,104 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoKernelTest {
+
+    private static final int PAIRS = 2_000_000;
+    private static final int BATCH = 1000;
+
+    @Test
+    void kernelMatchesHaversineAtPlanningDistances() {
+        // Targets within about 50 km of their anchor, anywhere on the globe
+        assertKernelMatchesHaversine(new Random(31), 0.5, 1e-10);
+    }
+
+    @Test
+    void kernelMatchesHaversineAwayFromAntipodes() {
+        assertKernelMatchesHaversine(new Random(37), Double.NaN, 1e-10);
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        // Surefire adds the module; without it this compares the scalar kernel with itself
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            assertTrue(GeoKernel.get().name().startsWith("vector"), GeoKernel.get().name());
+        }
+        Random random = new Random(41);
+        int count = 1027;
+        double[] latitudes = new double[count + 1];
+        double[] longitudes = new double[count + 1];
+        for (int k = 0; k <= count; k++) {
+            latitudes[k] = 12 + random.nextDouble();
+            longitudes[k] = 77 + random.nextDouble();
+        }
+        double[] xs = new double[count + 1];
+        double[] ys = new double[count + 1];
+        double[] zs = new double[count + 1];
+        GeoKernel.toUnitVectors(latitudes, longitudes, xs, ys, zs);
+
+        double[] scalar = new double[count];
+        double[] kernel = new double[count];
+        double[] tx = Arrays.copyOfRange(xs, 1, count + 1);
+        double[] ty = Arrays.copyOfRange(ys, 1, count + 1);
+        double[] tz = Arrays.copyOfRange(zs, 1, count + 1);
+        GeoKernel.scalar().distancesKm(xs[0], ys[0], zs[0], tx, ty, tz, count, scalar);
+        GeoKernel.get().distancesKm(xs[0], ys[0], zs[0], tx, ty, tz, count, kernel);
+        assertArrayEquals(scalar, kernel, 1e-12);
+    }
+
+    /**
+     * @param spreadDegrees how far targets lie from their anchor, or NaN for
+     *                      anywhere on the globe up to 19,000 km away
+     */
+    private static void assertKernelMatchesHaversine(Random random, double spreadDegrees, double toleranceKm) {
+        double[] latitudes = new double[BATCH + 1];
+        double[] longitudes = new double[BATCH + 1];
+        double[] xs = new double[BATCH + 1];
+        double[] ys = new double[BATCH + 1];
+        double[] zs = new double[BATCH + 1];
+        double[] tx = new double[BATCH];
+        double[] ty = new double[BATCH];
+        double[] tz = new double[BATCH];
+        double[] out = new double[BATCH];
+
+        for (int batch = 0; batch < PAIRS / BATCH; batch++) {
+            latitudes[0] = randomLatitude(random);
+            longitudes[0] = -180 + 360 * random.nextDouble();
+            for (int k = 1; k <= BATCH; k++) {
+                if (Double.isNaN(spreadDegrees)) {
+                    latitudes[k] = randomLatitude(random);
+                    longitudes[k] = -180 + 360 * random.nextDouble();
+                } else {
+                    latitudes[k] = Math.max(-90, Math.min(90,
+                            latitudes[0] + spreadDegrees * (2 * random.nextDouble() - 1)));
+                    longitudes[k] = longitudes[0] + spreadDegrees * (2 * random.nextDouble() - 1);
+                }
+            }
+            GeoKernel.toUnitVectors(latitudes, longitudes, xs, ys, zs);
+            System.arraycopy(xs, 1, tx, 0, BATCH);
+            System.arraycopy(ys, 1, ty, 0, BATCH);
+            System.arraycopy(zs, 1, tz, 0, BATCH);
+            GeoKernel.scalar().distancesKm(xs[0], ys[0], zs[0], tx, ty, tz, BATCH, out);
+
+            for (int k = 1; k <= BATCH; k++) {
+                double exact = GeoDistance.haversineKm(latitudes[0], longitudes[0], latitudes[k], longitudes[k]);
+                if (exact <= 19_000) {
+                    assertEquals(exact, out[k - 1], toleranceKm);
+                }
+            }
+        }
+    }
+
+    private static double randomLatitude(Random random) {
+        // Uniform over the sphere's surface
+        return Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+    }
+}
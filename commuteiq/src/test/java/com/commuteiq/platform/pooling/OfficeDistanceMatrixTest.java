@@ -0,0 +1,86 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OfficeDistanceMatrixTest {
+
+    private static final int SLOTS = 300;
+
+    @Test
+    void everyTierReturnsTheRoundedHaversineDistance() {
+        Random random = new Random(11);
+        double[] latitudes = new double[SLOTS];
+        double[] longitudes = new double[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            latitudes[i] = 12.9 + 0.2 * random.nextDouble();
+            longitudes[i] = 77.5 + 0.2 * random.nextDouble();
+        }
+        // Dense only, dense then sparse, sparse only, and sparse with a cap most pairs exceed
+        OfficeDistanceMatrix[] matrices = {
+                new OfficeDistanceMatrix(SLOTS, 1),
+                new OfficeDistanceMatrix(100, 1000),
+                new OfficeDistanceMatrix(0, 1000),
+                new OfficeDistanceMatrix(0, 4),
+        };
+        for (OfficeDistanceMatrix matrix : matrices) {
+            for (int i = 0; i < SLOTS; i++) {
+                assertEquals(i, matrix.addSlot(latitudes[i], longitudes[i]));
+            }
+        }
+
+        // Cold, then warm, in both orders
+        for (int pass = 0; pass < 2; pass++) {
+            for (int a = 0; a < SLOTS; a++) {
+                for (int b = 0; b < SLOTS; b += 7) {
+                    float expected = a == b ? 0f : (float) GeoDistance.haversineKm(latitudes[a], longitudes[a],
+                            latitudes[b], longitudes[b]);
+                    for (OfficeDistanceMatrix matrix : matrices) {
+                        assertEquals(expected, matrix.distanceKm(a, b), 0.0);
+                        assertEquals(expected, matrix.distanceKm(b, a), 0.0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameHomeIsCachedAsZero() {
+        OfficeDistanceMatrix matrix = new OfficeDistanceMatrix(8, 8);
+        int a = matrix.addSlot(12.97, 77.59);
+        int b = matrix.addSlot(12.97, 77.59);
+
+        assertEquals(0.0, matrix.distanceKm(a, b));
+        assertEquals(0.0, matrix.distanceKm(b, a));
+    }
+
+    @Test
+    void concurrentLookupsAgree() {
+        int slots = 2000;
+        OfficeDistanceMatrix matrix = new OfficeDistanceMatrix(500, 16);
+        double[] latitudes = new double[slots];
+        double[] longitudes = new double[slots];
+        Random random = new Random(5);
+        for (int i = 0; i < slots; i++) {
+            latitudes[i] = 12.9 + 0.2 * random.nextDouble();
+            longitudes[i] = 77.5 + 0.2 * random.nextDouble();
+            matrix.addSlot(latitudes[i], longitudes[i]);
+        }
+
+        IntStream.range(0, 8).parallel().forEach(t -> {
+            ThreadLocalRandom local = ThreadLocalRandom.current();
+            for (int n = 0; n < 200_000; n++) {
+                int a = local.nextInt(slots);
+                int b = local.nextInt(slots);
+                float expected = a == b ? 0f : (float) GeoDistance.haversineKm(latitudes[a], longitudes[a],
+                        latitudes[b], longitudes[b]);
+                assertEquals(expected, matrix.distanceKm(a, b), 0.0);
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.repository.RidePlanEmployeeRepository;
+import com.commuteiq.platform.repository.projection.OpenPlanStopRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpenPlanIndexTest {
+
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+    private static final LocalTime EIGHT = LocalTime.of(8, 0);
+
+    private final RidePlanEmployeeRepository repository = mock(RidePlanEmployeeRepository.class);
+    private OpenPlanIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new OpenPlanIndex(repository, new OfficeLocationProperties());
+        ReflectionTestUtils.setField(index, "distanceThresholdKm", 2.0);
+        // Plan 10 has two seats and one rider
+        when(repository.findStopRowsByDateAndStatus(DATE, RidePlanStatus.SCHEDULED)).thenReturn(List.of(
+                new OpenPlanStopRow(10L, 2, 1, 1L, 12.9700, 77.5900, "Central", "MALE", EIGHT, EIGHT.plusMinutes(30),
+                        false)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reservesTheLastSeatOnlyOnce() {
+        Optional<OpenPlanIndex.Insertion> first = index.reserveSeat(DATE, rider(2L));
+        assertTrue(first.isPresent());
+        assertEquals(10L, first.get().getRidePlanId());
+        assertEquals(List.of(1L), first.get().getEmployeeIdsBefore());
+
+        assertTrue(index.reserveSeat(DATE, rider(3L)).isEmpty());
+        // One query for the date, however often it is used
+        verify(repository, times(1)).findStopRowsByDateAndStatus(DATE, RidePlanStatus.SCHEDULED);
+    }
+
+    @Test
+    void releasedSeatCanBeReservedAgain() {
+        index.reserveSeat(DATE, rider(2L));
+        assertTrue(index.releaseSeat(DATE, 2L).isPresent());
+
+        Optional<OpenPlanIndex.Insertion> again = index.reserveSeat(DATE, rider(3L));
+        assertTrue(again.isPresent());
+        assertEquals(List.of(1L), again.get().getEmployeeIdsBefore());
+    }
+
+    @Test
+    void rollbackEvictsTheDate() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(index.reserveSeat(DATE, rider(2L)).isPresent());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Reloaded from the database, where the seat was never taken
+        assertTrue(index.reserveSeat(DATE, rider(3L)).isPresent());
+        verify(repository, times(2)).findStopRowsByDateAndStatus(DATE, RidePlanStatus.SCHEDULED);
+    }
+
+    @Test
+    void commitKeepsTheDate() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(index.reserveSeat(DATE, rider(2L)).isPresent());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue(index.reserveSeat(DATE, rider(3L)).isEmpty());
+        verify(repository, times(1)).findStopRowsByDateAndStatus(DATE, RidePlanStatus.SCHEDULED);
+    }
+
+    @Test
+    void evictPastDatesKeepsUpcomingDates() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        when(repository.findStopRowsByDateAndStatus(yesterday, RidePlanStatus.SCHEDULED)).thenReturn(List.of());
+        index.reserveSeat(yesterday, rider(2L));
+        index.reserveSeat(DATE, rider(2L));
+
+        index.evictPastDates();
+        index.reserveSeat(yesterday, rider(3L));
+        index.reserveSeat(DATE, rider(3L));
+
+        verify(repository, times(2)).findStopRowsByDateAndStatus(yesterday, RidePlanStatus.SCHEDULED);
+        verify(repository, times(1)).findStopRowsByDateAndStatus(DATE, RidePlanStatus.SCHEDULED);
+    }
+
+    private static OpenPlanIndex.OpenStop rider(long employeeId) {
+        return OpenPlanIndex.OpenStop.of(employeeId, 12.9710, 77.5910, "Central", "male", EIGHT,
+                EIGHT.plusMinutes(30), false);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import com.commuteiq.platform.repository.PlanningLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PlanningCoordinatorTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 3);
+
+    private final PlanningLeaseRepository repository = mock(PlanningLeaseRepository.class);
+    private PlanningCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new PlanningCoordinator(repository);
+        ReflectionTestUtils.setField(coordinator, "leaseTtlSeconds", 300L);
+        when(repository.takeOver(eq(DATE), anyString(), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    void concurrentCallersForADateShareOneRun() throws Exception {
+        List<RidePlanResponse> plans = List.of(RidePlanResponse.builder().id(1L).build());
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<List<RidePlanResponse>> joined = new CompletableFuture<>();
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<RidePlanResponse>> leader = callers.submit(() -> coordinator.run(DATE, lease -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(finish);
+                return plans;
+            }, joined::complete));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<List<RidePlanResponse>> follower = callers.submit(() -> coordinator.run(DATE, lease -> {
+                runs.incrementAndGet();
+                return List.of();
+            }, joined::complete));
+            // The follower finds the run in flight and waits for it
+            Thread.sleep(100);
+            assertFalse(follower.isDone());
+            finish.countDown();
+
+            assertSame(plans, leader.get(5, TimeUnit.SECONDS));
+            assertSame(plans, follower.get(5, TimeUnit.SECONDS));
+            assertSame(plans, joined.getNow(null));
+            assertEquals(1, runs.get());
+            verify(repository, times(1)).takeOver(eq(DATE), anyString(), any(), any());
+            verify(repository, times(1)).release(eq(DATE), anyString());
+        } finally {
+            finish.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void followerReceivesTheLeadersFailure() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<RidePlanResponse>> leader = callers.submit(() -> coordinator.run(DATE, lease -> {
+                started.countDown();
+                await(finish);
+                throw new InvalidOperationException("No vehicles available");
+            }, plans -> { }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<List<RidePlanResponse>> follower = callers.submit(
+                    () -> coordinator.run(DATE, lease -> List.of(), plans -> { }));
+            Thread.sleep(100);
+            finish.countDown();
+
+            Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception followerFailure = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertTrue(leaderFailure.getCause() instanceof InvalidOperationException);
+            assertTrue(followerFailure.getCause() instanceof InvalidOperationException);
+        } finally {
+            finish.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void dateLeasedByAnotherInstanceIsRefused() {
+        when(repository.takeOver(eq(DATE), anyString(), any(), any())).thenReturn(0);
+        doThrow(new DataIntegrityViolationException("duplicate")).when(repository)
+                .insert(eq(DATE), anyString(), any(), any());
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThrows(InvalidOperationException.class, () -> coordinator.run(DATE, lease -> {
+            runs.incrementAndGet();
+            return List.of();
+        }, plans -> { }));
+
+        assertEquals(0, runs.get());
+        verify(repository, never()).release(eq(DATE), anyString());
+        // Nothing is left in flight: the next caller tries the lease again
+        when(repository.takeOver(eq(DATE), anyString(), any(), any())).thenReturn(1);
+        assertEquals(List.of(), coordinator.run(DATE, lease -> List.of(), plans -> { }));
+    }
+
+    @Test
+    void lostLeaseFailsTheRenewal() {
+        when(repository.renew(eq(DATE), anyString(), any())).thenReturn(0);
+
+        assertThrows(InvalidOperationException.class, () -> coordinator.run(DATE, lease -> {
+            lease.renew();
+            return List.of();
+        }, plans -> { }));
+        verify(repository).release(eq(DATE), anyString());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.commuteiq.platform.pooling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanningMetricsTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 1, 6);
+
+    @Test
+    void evictsTheLeastRecentlyRecordedDate() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PlanningMetrics metrics = new PlanningMetrics(registry);
+        ReflectionTestUtils.setField(metrics, "retainedDates", 2);
+
+        metrics.requestsLoaded(MONDAY.plusDays(1), "Central", 10);
+        metrics.requestsLoaded(MONDAY.plusDays(2), "Central", 10);
+        // Re-planning Tuesday makes Wednesday the least recent
+        metrics.requestsLoaded(MONDAY.plusDays(1), "Central", 5);
+        // An older date is still recorded rather than evicted right away
+        metrics.requestsLoaded(MONDAY, "Central", 3);
+
+        assertNotNull(counter(registry, MONDAY));
+        assertNotNull(counter(registry, MONDAY.plusDays(1)));
+        assertNull(counter(registry, MONDAY.plusDays(2)));
+    }
+
+    @Test
+    void concurrentRecordingKeepsOnlyRetainedDates() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PlanningMetrics metrics = new PlanningMetrics(registry);
+        ReflectionTestUtils.setField(metrics, "retainedDates", 3);
+
+        IntStream.range(0, 8).parallel().forEach(t -> {
+            for (int n = 0; n < 2_000; n++) {
+                LocalDate date = MONDAY.plusDays((n + t) % 10);
+                metrics.requestsLoaded(date, "Central", 1);
+                metrics.phase(date, "load", 1_000L);
+            }
+        });
+
+        Set<String> dates = registry.getMeters().stream()
+                .map(meter -> meter.getId().getTag("date"))
+                .collect(Collectors.toSet());
+        assertTrue(dates.size() <= 3, dates::toString);
+    }
+
+    private static Object counter(MeterRegistry registry, LocalDate date) {
+        return registry.find("commuteiq.planning.requests.loaded").tag("date", date.toString()).counter();
+    }
+}
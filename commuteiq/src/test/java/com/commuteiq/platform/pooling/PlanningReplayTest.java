@@ -0,0 +1,59 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.config.OfficeLocationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays {@code pooling/synthetic-400.snap}: the benchmark profile's
+ * {@code SyntheticCity.generate(400, 7)} with local search (3 restarts) and
+ * cached distances enabled, and one of its three offices without coordinates.
+ */
+class PlanningReplayTest {
+
+    private static final String FIXTURE = "/pooling/synthetic-400.snap";
+
+    @Test
+    void digestIsStableAcrossPoolSizes() throws IOException {
+        PlanningSnapshotFile file = readFixture();
+
+        PlanningReplay.Result single = replay(file, 1);
+        assertTrue(single.plans() > 0);
+        assertTrue(single.riders() <= file.snapshot().size());
+
+        for (int threads : new int[] { 2, 4 }) {
+            PlanningReplay.Result result = replay(file, threads);
+            assertEquals(single.digest(), result.digest(), "digest with " + threads + " threads");
+            assertEquals(single.plans(), result.plans());
+            assertEquals(single.totalDistanceKm(), result.totalDistanceKm());
+        }
+    }
+
+    @Test
+    void repeatedReplaysGiveTheSameDigest() throws IOException {
+        PlanningSnapshotFile file = readFixture();
+
+        assertEquals(replay(file, 4).digest(), replay(file, 4).digest());
+    }
+
+    private static PlanningReplay.Result replay(PlanningSnapshotFile file, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return new PlanningReplay(new PoolingEngine(pool, new OfficeLocationProperties())).run(file);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static PlanningSnapshotFile readFixture() throws IOException {
+        try (InputStream in = PlanningReplayTest.class.getResourceAsStream(FIXTURE)) {
+            return PlanningSnapshotFile.read(in);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.commuteiq.platform.pooling;
+
+import com.commuteiq.platform.repository.projection.PendingRequestRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlanningSnapshotFileTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 6);
+
+    @Test
+    void writeThenReadKeepsEveryColumn() throws IOException {
+        PlanningSnapshot snapshot = PlanningSnapshot.of(DATE, List.of(
+                new PendingRequestRow(11L, 101L, "Asha", "female", 12.9716, 77.5946, "Central",
+                        LocalTime.of(8, 0), LocalTime.of(8, 30), true, null),
+                new PendingRequestRow(12L, 102L, "Ravi", "MALE", 12.9352, 77.6245, "Tech Park",
+                        null, null, false, null),
+                new PendingRequestRow(13L, 103L, "Meera", "Female", 12.9800, 77.6000, "Central",
+                        LocalTime.of(7, 45), LocalTime.of(8, 15), null, null)));
+        PoolingParameters parameters = PoolingParameters.builder()
+                .distanceThresholdKm(2.5)
+                .maxClusterSize(6)
+                .routeBudgetMs(1500)
+                .improvementEnabled(true)
+                .improvementBudgetMs(700)
+                .improvementRestarts(2)
+                .vehicleCostKm(12.0)
+                .build();
+        double[][] offices = { { 12.9716, 77.5946 }, null };
+        PlanningSnapshotFile file = new PlanningSnapshotFile(snapshot, parameters, offices, true,
+                new long[] { 7L, 8L }, new int[] { 4, 6 }, new String[] { "KA-01-0007", null }, new long[] { 21L });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        file.write(out);
+        PlanningSnapshotFile read = PlanningSnapshotFile.read(new ByteArrayInputStream(out.toByteArray()));
+
+        PlanningSnapshot copy = read.snapshot();
+        assertEquals(DATE, copy.getDate());
+        assertEquals(snapshot.size(), copy.size());
+        assertEquals(snapshot.officeCount(), copy.officeCount());
+        for (int o = 0; o < snapshot.officeCount(); o++) {
+            assertEquals(snapshot.officeName(o), copy.officeName(o));
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(snapshot.requestId(i), copy.requestId(i));
+            assertEquals(snapshot.employeeId(i), copy.employeeId(i));
+            assertNull(copy.employeeName(i));
+            assertEquals(snapshot.latitude(i), copy.latitude(i));
+            assertEquals(snapshot.longitude(i), copy.longitude(i));
+            assertEquals(snapshot.pickupStart(i), copy.pickupStart(i));
+            assertEquals(snapshot.pickupEnd(i), copy.pickupEnd(i));
+            assertEquals(snapshot.officeId(i), copy.officeId(i));
+            assertEquals(snapshot.genderCode(i), copy.genderCode(i));
+            assertEquals(snapshot.isFlexible(i), copy.isFlexible(i));
+            assertEquals(snapshot.requiresSameGender(i), copy.requiresSameGender(i));
+            assertEquals(snapshot.unitX(i), copy.unitX(i));
+        }
+
+        PoolingParameters p = read.parameters();
+        assertEquals(2.5, p.getDistanceThresholdKm());
+        assertEquals(6, p.getMaxClusterSize());
+        assertEquals(1500, p.getRouteBudgetMs());
+        assertEquals(true, p.isImprovementEnabled());
+        assertEquals(700, p.getImprovementBudgetMs());
+        assertEquals(2, p.getImprovementRestarts());
+        assertEquals(12.0, p.getVehicleCostKm());
+        assertEquals(true, read.roundedDistances());
+
+        assertArrayEquals(offices[0], read.offices()[0]);
+        assertNull(read.offices()[1]);
+        assertArrayEquals(new long[] { 7L, 8L }, read.vehicleIds());
+        assertArrayEquals(new int[] { 4, 6 }, read.vehicleCapacities());
+        assertArrayEquals(new String[] { "KA-01-0007", "" }, read.vehiclePlates());
+        assertArrayEquals(new long[] { 21L }, read.driverIds());
+    }
+
+    @Test
+    void readRejectsOtherFiles() {
+        byte[] garbage = { 0x1f, (byte) 0x8b, 0, 0 };
+        assertThrows(IOException.class, () -> PlanningSnapshotFile.read(new ByteArrayInputStream(garbage)));
+    }
+}
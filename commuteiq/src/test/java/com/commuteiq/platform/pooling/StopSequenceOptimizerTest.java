@@ -0,0 +1,118 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StopSequenceOptimizerTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    @Test
+    void improvementNeverLengthensTheConstructedRoute() {
+        Random random = new Random(53);
+        for (int round = 0; round < 2000; round++) {
+            int stops = 1 + random.nextInt(9);
+            boolean hasOffice = random.nextBoolean();
+            double[] dist = randomPlane(random, hasOffice ? stops + 1 : stops);
+
+            // An expired deadline returns the nearest-neighbour construction unimproved
+            int[] constructed = new int[stops];
+            double constructedLength = StopSequenceOptimizer.optimize(dist, stops, hasOffice, constructed, 0L);
+            int[] order = new int[stops];
+            double length = StopSequenceOptimizer.optimize(dist, stops, hasOffice, order, NO_DEADLINE);
+
+            assertTrue(length <= constructedLength + 1e-9, "round " + round + ": " + length + " > " + constructedLength);
+            assertEquals(routeLength(dist, stops, hasOffice, order), length, 1e-9);
+            assertPermutation(order, stops);
+        }
+    }
+
+    @Test
+    void routeIsNeverShorterThanTheOptimum() {
+        Random random = new Random(59);
+        for (int round = 0; round < 300; round++) {
+            int stops = 1 + random.nextInt(7);
+            boolean hasOffice = random.nextBoolean();
+            double[] dist = randomPlane(random, hasOffice ? stops + 1 : stops);
+
+            int[] order = new int[stops];
+            double length = StopSequenceOptimizer.optimize(dist, stops, hasOffice, order, NO_DEADLINE);
+            double optimum = optimum(dist, stops, hasOffice, new int[stops], new boolean[stops], 0);
+            assertTrue(length >= optimum - 1e-9);
+            // Small clusters are solved exactly in practice; allow a little slack for local optima
+            assertTrue(length <= optimum * 1.25 + 1e-9, "round " + round + ": " + length + " vs " + optimum);
+        }
+    }
+
+    @Test
+    void snapshotRouteEndsAtTheOffice() {
+        PlanningSnapshot snapshot = ClusterBuilderTest.randomSnapshot(new Random(61), 8);
+        int[] members = { 0, 1, 2, 3, 4, 5, 6, 7 };
+        double[] office = { 12.9716, 77.5946 };
+        int[] order = new int[members.length];
+        double length = StopSequenceOptimizer.optimize(snapshot, members, members.length, office, order, NO_DEADLINE);
+
+        double expected = 0.0;
+        for (int k = 1; k < order.length; k++) {
+            expected += snapshot.distanceKm(members[order[k - 1]], members[order[k]]);
+        }
+        int last = members[order[order.length - 1]];
+        expected += GeoDistance.haversineKm(snapshot.latitude(last), snapshot.longitude(last), office[0], office[1]);
+        assertEquals(expected, length, 1e-9);
+        assertPermutation(order, members.length);
+    }
+
+    private static double[] randomPlane(Random random, int dim) {
+        double[] x = new double[dim];
+        double[] y = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            x[i] = 20 * random.nextDouble();
+            y[i] = 20 * random.nextDouble();
+        }
+        double[] dist = new double[dim * dim];
+        for (int i = 0; i < dim; i++) {
+            for (int j = 0; j < dim; j++) {
+                dist[i * dim + j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+            }
+        }
+        return dist;
+    }
+
+    private static double routeLength(double[] dist, int stops, boolean hasOffice, int[] order) {
+        int dim = hasOffice ? stops + 1 : stops;
+        double total = 0.0;
+        for (int k = 1; k < stops; k++) {
+            total += dist[order[k - 1] * dim + order[k]];
+        }
+        return hasOffice ? total + dist[order[stops - 1] * dim + stops] : total;
+    }
+
+    private static double optimum(double[] dist, int stops, boolean hasOffice, int[] order, boolean[] used,
+            int depth) {
+        if (depth == stops) {
+            return routeLength(dist, stops, hasOffice, order);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < stops; s++) {
+            if (!used[s]) {
+                used[s] = true;
+                order[depth] = s;
+                best = Math.min(best, optimum(dist, stops, hasOffice, order, used, depth + 1));
+                used[s] = false;
+            }
+        }
+        return best;
+    }
+
+    private static void assertPermutation(int[] order, int stops) {
+        boolean[] seen = new boolean[stops];
+        for (int k = 0; k < stops; k++) {
+            assertTrue(order[k] >= 0 && order[k] < stops && !seen[order[k]], "not a permutation");
+            seen[order[k]] = true;
+        }
+    }
+}
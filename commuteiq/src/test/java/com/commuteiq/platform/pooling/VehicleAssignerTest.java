@@ -0,0 +1,89 @@
+package com.commuteiq.platform.pooling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VehicleAssignerTest {
+
+    @Test
+    void neverSeatsMoreRidersThanAVehicleHolds() {
+        Random random = new Random(67);
+        for (int round = 0; round < 500; round++) {
+            int n = 1 + random.nextInt(120);
+            PlanningSnapshot snapshot = ClusterBuilderTest.randomSnapshot(random, n);
+            Clusters clusters = randomClusters(random, n, 1 + random.nextInt(12));
+            int[] capacities = new int[random.nextInt(30)];
+            for (int v = 0; v < capacities.length; v++) {
+                capacities[v] = random.nextInt(8);
+            }
+            int maxPlans = random.nextInt(40);
+
+            VehicleAssignment assignment = VehicleAssigner.assign(snapshot, clusters, capacities, maxPlans);
+            Clusters seated = assignment.clusters();
+            assertTrue(seated.count() <= maxPlans);
+
+            boolean[] vehicleUsed = new boolean[capacities.length];
+            boolean[] riderSeated = new boolean[n];
+            for (int c = 0; c < seated.count(); c++) {
+                int vehicle = assignment.vehicleIndex(c);
+                assertFalse(vehicleUsed[vehicle], "vehicle " + vehicle + " assigned twice");
+                vehicleUsed[vehicle] = true;
+                assertTrue(seated.size(c) <= capacities[vehicle],
+                        "round " + round + ": " + seated.size(c) + " riders in " + capacities[vehicle] + " seats");
+                for (int k = 0; k < seated.size(c); k++) {
+                    int rider = seated.member(c, k);
+                    assertFalse(riderSeated[rider], "rider " + rider + " seated twice");
+                    riderSeated[rider] = true;
+                }
+            }
+            assertEquals(n, seated.memberCount() + assignment.unassignedRiders());
+        }
+    }
+
+    @Test
+    void splitsAClusterLargerThanEveryVehicle() {
+        PlanningSnapshot snapshot = ClusterBuilderTest.randomSnapshot(new Random(71), 10);
+        Clusters clusters = Clusters.of(List.of(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }));
+
+        VehicleAssignment assignment = VehicleAssigner.assign(snapshot, clusters, new int[] { 4, 4, 4 }, 10);
+
+        assertEquals(1, assignment.splitClusters());
+        assertEquals(3, assignment.clusters().count());
+        assertEquals(10, assignment.clusters().memberCount());
+        assertEquals(0, assignment.unassignedRiders());
+    }
+
+    /**
+     * Every rider {@code 0 .. n) in exactly one cluster, each cluster ascending.
+     */
+    private static Clusters randomClusters(Random random, int n, int maxSize) {
+        List<Integer> riders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            riders.add(i);
+        }
+        Collections.shuffle(riders, random);
+        List<int[]> clusters = new ArrayList<>();
+        int from = 0;
+        while (from < n) {
+            int size = Math.min(n - from, 1 + random.nextInt(maxSize));
+            int[] cluster = new int[size];
+            for (int k = 0; k < size; k++) {
+                cluster[k] = riders.get(from + k);
+            }
+            Arrays.sort(cluster);
+            clusters.add(cluster);
+            from += size;
+        }
+        clusters.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return Clusters.of(clusters);
+    }
+}
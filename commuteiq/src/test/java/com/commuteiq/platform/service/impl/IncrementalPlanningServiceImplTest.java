@@ -0,0 +1,127 @@
+package com.commuteiq.platform.service.impl;
+
+import com.commuteiq.platform.entity.Employee;
+import com.commuteiq.platform.entity.RidePlan;
+import com.commuteiq.platform.entity.RidePlanEmployee;
+import com.commuteiq.platform.entity.RidePlanStatus;
+import com.commuteiq.platform.entity.RideRequest;
+import com.commuteiq.platform.entity.RideRequestStatus;
+import com.commuteiq.platform.entity.Vehicle;
+import com.commuteiq.platform.pooling.OpenPlanIndex;
+import com.commuteiq.platform.repository.CommutePreferenceRepository;
+import com.commuteiq.platform.repository.RidePlanEmployeeRepository;
+import com.commuteiq.platform.repository.RidePlanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IncrementalPlanningServiceImplTest {
+
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+    private static final long PLAN_ID = 10L;
+
+    private final OpenPlanIndex openPlanIndex = mock(OpenPlanIndex.class);
+    private final CommutePreferenceRepository commutePreferenceRepository = mock(CommutePreferenceRepository.class);
+    private final RidePlanRepository ridePlanRepository = mock(RidePlanRepository.class);
+    private final RidePlanEmployeeRepository ridePlanEmployeeRepository = mock(RidePlanEmployeeRepository.class);
+    private IncrementalPlanningServiceImpl service;
+    private RideRequest request;
+
+    @BeforeEach
+    void setUp() {
+        service = new IncrementalPlanningServiceImpl(openPlanIndex, commutePreferenceRepository, ridePlanRepository,
+                ridePlanEmployeeRepository);
+        ReflectionTestUtils.setField(service, "onlineEnabled", true);
+        Employee employee = Employee.builder().id(2L).gender("MALE").homeLatitude(12.971).homeLongitude(77.591)
+                .officeLocation("Central").build();
+        request = RideRequest.builder().id(100L).employee(employee).requestDate(DATE).build();
+        when(commutePreferenceRepository.findByEmployeeId(2L)).thenReturn(Optional.empty());
+        when(openPlanIndex.reserveSeat(eq(DATE), any()))
+                .thenReturn(Optional.of(new OpenPlanIndex.Insertion(PLAN_ID, 2, 3.5, List.of(1L))));
+    }
+
+    @Test
+    void insertsWhenThePlanIsUnchanged() {
+        lockPlan(RidePlanStatus.SCHEDULED, 4);
+        when(ridePlanEmployeeRepository.findEmployeeIdsByRidePlanId(PLAN_ID)).thenReturn(List.of(1L));
+
+        assertTrue(service.assignToOpenPlan(request));
+
+        assertEquals(RideRequestStatus.PLANNED, request.getStatus());
+        verify(ridePlanEmployeeRepository).shiftStopOrders(PLAN_ID, 2, 1);
+        verify(ridePlanEmployeeRepository).save(any(RidePlanEmployee.class));
+        verify(openPlanIndex, never()).evict(any());
+    }
+
+    @Test
+    void retriesAfterAConcurrentChangeToThePlan() {
+        lockPlan(RidePlanStatus.SCHEDULED, 4);
+        // Another instance added rider 5 first; the reloaded index then sees it
+        when(ridePlanEmployeeRepository.findEmployeeIdsByRidePlanId(PLAN_ID))
+                .thenReturn(List.of(1L, 5L), List.of(1L));
+
+        assertTrue(service.assignToOpenPlan(request));
+
+        verify(openPlanIndex, times(1)).evict(DATE);
+        verify(openPlanIndex, times(2)).reserveSeat(eq(DATE), any());
+        verify(ridePlanEmployeeRepository).save(any(RidePlanEmployee.class));
+    }
+
+    @Test
+    void givesUpAfterThreeAttemptsWhenSeatsAreExhausted() {
+        // The database says the vehicle is already full
+        lockPlan(RidePlanStatus.SCHEDULED, 1);
+        when(ridePlanEmployeeRepository.findEmployeeIdsByRidePlanId(PLAN_ID)).thenReturn(List.of(1L));
+
+        assertFalse(service.assignToOpenPlan(request));
+
+        assertEquals(RideRequestStatus.PENDING, request.getStatus());
+        verify(openPlanIndex, times(3)).reserveSeat(eq(DATE), any());
+        verify(openPlanIndex, times(3)).evict(DATE);
+        verify(ridePlanEmployeeRepository, never()).save(any(RidePlanEmployee.class));
+        verify(ridePlanEmployeeRepository, never()).shiftStopOrders(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void retriesWhenThePlanIsNoLongerScheduled() {
+        lockPlan(RidePlanStatus.CANCELLED, 4);
+        when(ridePlanEmployeeRepository.findEmployeeIdsByRidePlanId(PLAN_ID)).thenReturn(List.of(1L));
+
+        assertFalse(service.assignToOpenPlan(request));
+
+        verify(openPlanIndex, times(3)).evict(DATE);
+        verify(ridePlanEmployeeRepository, never()).save(any(RidePlanEmployee.class));
+    }
+
+    @Test
+    void stopsWhenNoPlanCanTakeTheRider() {
+        when(openPlanIndex.reserveSeat(eq(DATE), any())).thenReturn(Optional.empty());
+
+        assertFalse(service.assignToOpenPlan(request));
+
+        verify(ridePlanRepository, never()).findByIdForUpdate(anyLong());
+    }
+
+    private void lockPlan(RidePlanStatus status, int capacity) {
+        RidePlan plan = RidePlan.builder().id(PLAN_ID).status(status)
+                .vehicle(Vehicle.builder().id(7L).capacity(capacity).build()).build();
+        when(ridePlanRepository.findByIdForUpdate(PLAN_ID)).thenReturn(Optional.of(plan));
+    }
+}
@@ -0,0 +1,171 @@
+package com.commuteiq.platform.service.impl;
+
+import com.commuteiq.platform.dto.response.PlanningJobResponse;
+import com.commuteiq.platform.dto.response.RidePlanResponse;
+import com.commuteiq.platform.entity.PlanningJob;
+import com.commuteiq.platform.entity.PlanningJobStatus;
+import com.commuteiq.platform.exception.InvalidOperationException;
+import com.commuteiq.platform.repository.PlanningJobRepository;
+import com.commuteiq.platform.repository.PlanningLeaseRepository;
+import com.commuteiq.platform.service.PlanningProgressListener;
+import com.commuteiq.platform.service.RidePlanService;
+import com.commuteiq.platform.service.RidePlanningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PlanningJobServiceImplTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 3);
+
+    private final PlanningJobRepository planningJobRepository = mock(PlanningJobRepository.class);
+    private final PlanningLeaseRepository planningLeaseRepository = mock(PlanningLeaseRepository.class);
+    private final RidePlanningService ridePlanningService = mock(RidePlanningService.class);
+    private final RidePlanService ridePlanService = mock(RidePlanService.class);
+    private final ThreadPoolTaskExecutor planningJobExecutor = mock(ThreadPoolTaskExecutor.class);
+    // Tasks handed to the executor, run by the test when it chooses
+    private final List<Runnable> tasks = new ArrayList<>();
+    private PlanningJobServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PlanningJobServiceImpl(planningJobRepository, planningLeaseRepository, ridePlanningService,
+                ridePlanService, planningJobExecutor, new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(service, "leaseTtlSeconds", 300L);
+        ReflectionTestUtils.setField(service, "streamTimeout", Duration.ofMinutes(30));
+        doAnswer(invocation -> tasks.add(invocation.getArgument(0))).when(planningJobExecutor).execute(any());
+        when(planningJobRepository.findFirstByDateAndStatusInOrderByIdDesc(eq(DATE), any()))
+                .thenReturn(Optional.empty());
+    }
+
+    @Test
+    void submitReturnsTheActiveJobForTheDate() {
+        PlanningJob running = job(7L, PlanningJobStatus.RUNNING);
+        running.setUpdatedAt(LocalDateTime.now());
+        when(planningJobRepository.findFirstByDateAndStatusInOrderByIdDesc(eq(DATE), any()))
+                .thenReturn(Optional.of(running));
+
+        PlanningJobResponse response = service.submit(DATE);
+
+        assertEquals(7L, response.getId());
+        assertEquals("RUNNING", response.getStatus());
+        verify(planningJobRepository, never()).save(any());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void secondSubmitJoinsTheQueuedJob() {
+        PlanningJob queued = job(8L, PlanningJobStatus.QUEUED);
+        when(planningJobRepository.save(any())).thenReturn(queued);
+
+        assertEquals(8L, service.submit(DATE).getId());
+        // No updatedAt yet, but live because it is queued on this instance
+        when(planningJobRepository.findFirstByDateAndStatusInOrderByIdDesc(eq(DATE), any()))
+                .thenReturn(Optional.of(queued));
+        assertEquals(8L, service.submit(DATE).getId());
+
+        verify(planningJobRepository).save(any());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void resumingAFailedJobRerunsItsDate() {
+        PlanningJob failed = job(9L, PlanningJobStatus.FAILED);
+        failed.setCommittedPlans(3);
+        when(planningJobRepository.findById(9L)).thenReturn(Optional.of(failed));
+
+        service.resume(9L);
+        tasks.forEach(Runnable::run);
+
+        // The rerun loads the date's PENDING requests; those committed before the failure are PLANNED
+        verify(ridePlanningService).generatePlansForDate(eq(DATE), any());
+        verify(planningJobRepository).updateStatus(eq(9L), eq(PlanningJobStatus.QUEUED), any());
+        verify(planningJobRepository).markFinished(eq(9L), eq(PlanningJobStatus.COMPLETED), isNull(), any());
+        verify(planningJobRepository, never()).recordCheckpoint(anyLong(), eq(0), eq(0), any());
+    }
+
+    @Test
+    void onlyFailedOrAbandonedJobsResume() {
+        when(planningJobRepository.findById(10L)).thenReturn(Optional.of(job(10L, PlanningJobStatus.COMPLETED)));
+        PlanningJob running = job(11L, PlanningJobStatus.RUNNING);
+        running.setUpdatedAt(LocalDateTime.now());
+        when(planningJobRepository.findById(11L)).thenReturn(Optional.of(running));
+
+        assertThrows(InvalidOperationException.class, () -> service.resume(10L));
+        assertThrows(InvalidOperationException.class, () -> service.resume(11L));
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void streamEndsOnceTheJobFinishes() throws Exception {
+        PlanningJob queued = job(12L, PlanningJobStatus.QUEUED);
+        when(planningJobRepository.save(any())).thenReturn(queued);
+        when(planningJobRepository.findById(12L)).thenReturn(Optional.of(queued));
+        when(ridePlanningService.generatePlansForDate(eq(DATE), any())).thenAnswer(invocation -> {
+            PlanningProgressListener listener = invocation.getArgument(1);
+            List<RidePlanResponse> chunk = List.of(plan(1L), plan(2L));
+            listener.chunkCommitted(chunk);
+            return chunk;
+        });
+        service.submit(DATE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> streamed = new CompletableFuture<>();
+        Thread stream = new Thread(() -> {
+            try {
+                service.streamPlans(12L, out);
+                streamed.complete(null);
+            } catch (Exception e) {
+                streamed.completeExceptionally(e);
+            }
+        });
+        stream.start();
+        // Run the job once the stream is waiting on its feed
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stream.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        tasks.forEach(Runnable::run);
+
+        streamed.get(5, TimeUnit.SECONDS);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains("\"id\":2"));
+        verify(ridePlanService, never()).getRidePlansByDate(any());
+    }
+
+    private static PlanningJob job(Long id, PlanningJobStatus status) {
+        return PlanningJob.builder().id(id).date(DATE).status(status).build();
+    }
+
+    private static RidePlanResponse plan(Long id) {
+        return RidePlanResponse.builder().id(id).date(DATE).build();
+    }
+}
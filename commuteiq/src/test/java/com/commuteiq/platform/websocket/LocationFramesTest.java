@@ -0,0 +1,143 @@
+package com.commuteiq.platform.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationFramesTest {
+
+    private final LocationBatch batch = new LocationBatch();
+
+    @Test
+    void decodesLocationFrame() {
+        ByteBuffer frame = ByteBuffer.allocate(LocationFrames.LOCATION_LENGTH).put(LocationFrames.LOCATION)
+                .putLong(123L).putDouble(12.9716).putDouble(77.5946).putLong(1_700_000_000_000L)
+                .putFloat(8.5f).putFloat(Float.NaN).flip();
+
+        assertEquals(0, LocationFrames.decode(frame, batch));
+        assertEquals(123L, batch.getRidePlanId());
+        assertEquals(LocationBatch.NO_SEQUENCE, batch.getFirstSequence());
+        assertEquals(1, batch.size());
+        assertEquals(12.9716, batch.latitude(0));
+        assertEquals(77.5946, batch.longitude(0));
+        assertEquals(1_700_000_000_000L, batch.timestampMillis(0));
+        assertEquals(8.5f, batch.speedMetersPerSecond(0));
+        assertTrue(Float.isNaN(batch.headingDegrees(0)));
+    }
+
+    @Test
+    void decodesBatchAtAnOffset() {
+        // A frame that does not start at position 0 of its buffer
+        ByteBuffer buffer = ByteBuffer.allocate(5 + LocationFrames.BATCH_HEADER_LENGTH + 2 * LocationFrames.POINT_LENGTH);
+        buffer.position(5);
+        putBatch(buffer, 7L, 40L, 2);
+        buffer.flip().position(5);
+
+        assertEquals(0, LocationFrames.decode(buffer, batch));
+        assertEquals(7L, batch.getRidePlanId());
+        assertEquals(40L, batch.getFirstSequence());
+        assertEquals(2, batch.size());
+        assertEquals(12.901, batch.latitude(1));
+    }
+
+    @Test
+    void decodesResume() {
+        ByteBuffer frame = ByteBuffer.allocate(LocationFrames.RESUME_LENGTH).put(LocationFrames.RESUME)
+                .putLong(9L).flip();
+
+        assertEquals(0, LocationFrames.decode(frame, batch));
+        assertEquals(9L, batch.getRidePlanId());
+        assertTrue(batch.isResume());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    void boundsBatchSize() {
+        assertEquals(0, LocationFrames.decode(batchFrame(1L, 0L, LocationBatch.MAX_POINTS), batch));
+        assertEquals(LocationBatch.MAX_POINTS, batch.size());
+
+        assertEquals(LocationFrames.ERROR_MALFORMED,
+                LocationFrames.decode(batchFrame(1L, 0L, LocationBatch.MAX_POINTS + 1), batch));
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(batchFrame(1L, 0L, 0), batch));
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(ByteBuffer.allocate(0), batch));
+        assertEquals(LocationFrames.ERROR_UNKNOWN_TYPE,
+                LocationFrames.decode(ByteBuffer.wrap(new byte[] { 0x7f, 0, 0 }), batch));
+
+        // Wrong lengths
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(
+                ByteBuffer.allocate(LocationFrames.LOCATION_LENGTH - 1).put(LocationFrames.LOCATION).rewind(), batch));
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(
+                ByteBuffer.allocate(LocationFrames.RESUME_LENGTH + 1).put(LocationFrames.RESUME).rewind(), batch));
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(
+                ByteBuffer.allocate(LocationFrames.BATCH_HEADER_LENGTH - 1).put(LocationFrames.BATCH).rewind(), batch));
+        ByteBuffer truncated = batchFrame(1L, 0L, 3);
+        truncated.limit(truncated.limit() - 1);
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(truncated, batch));
+
+        // A count claiming more points than the frame carries
+        ByteBuffer overstated = batchFrame(1L, 0L, 2);
+        overstated.putShort(17, (short) 3);
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(overstated, batch));
+
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(batchFrame(1L, -1L, 1), batch));
+
+        // Ride plan ids must be positive in every frame type
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(batchFrame(0L, 0L, 1), batch));
+        ByteBuffer negativeResume = ByteBuffer.allocate(LocationFrames.RESUME_LENGTH).put(LocationFrames.RESUME)
+                .putLong(-9L).flip();
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(negativeResume, batch));
+        ByteBuffer zeroLocation = ByteBuffer.allocate(LocationFrames.LOCATION_LENGTH).put(LocationFrames.LOCATION)
+                .putLong(0L).putDouble(12.9).putDouble(77.5).putLong(0L).putFloat(0f).putFloat(0f).flip();
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(zeroLocation, batch));
+
+        ByteBuffer outOfRange = ByteBuffer.allocate(LocationFrames.LOCATION_LENGTH).put(LocationFrames.LOCATION)
+                .putLong(1L).putDouble(95.0).putDouble(77.5).putLong(0L).putFloat(0f).putFloat(0f).flip();
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(outOfRange, batch));
+        ByteBuffer notANumber = ByteBuffer.allocate(LocationFrames.LOCATION_LENGTH).put(LocationFrames.LOCATION)
+                .putLong(1L).putDouble(Double.NaN).putDouble(77.5).putLong(0L).putFloat(0f).putFloat(0f).flip();
+        assertEquals(LocationFrames.ERROR_MALFORMED, LocationFrames.decode(notANumber, batch));
+    }
+
+    @Test
+    void encodesReplies() {
+        ByteBuffer ack = LocationFrames.ack(42L);
+        assertEquals(9, ack.remaining());
+        assertEquals(LocationFrames.ACK, ack.get(0));
+        assertEquals(42L, ack.getLong(1));
+
+        ByteBuffer sequenceAck = LocationFrames.sequenceAck(42L, 17L);
+        assertEquals(17, sequenceAck.remaining());
+        assertEquals(LocationFrames.SEQUENCE_ACK, sequenceAck.get(0));
+        assertEquals(17L, sequenceAck.getLong(9));
+
+        ByteBuffer alert = LocationFrames.alert(42L, 512.5);
+        assertEquals(13, alert.remaining());
+        assertEquals(LocationFrames.ALERT, alert.get(0));
+        assertEquals(512.5f, alert.getFloat(9));
+
+        ByteBuffer error = LocationFrames.error(LocationFrames.ERROR_INTERNAL);
+        assertEquals(2, error.remaining());
+        assertEquals(LocationFrames.ERROR_INTERNAL, error.get(1));
+    }
+
+    private static ByteBuffer batchFrame(long ridePlanId, long sequence, int points) {
+        ByteBuffer frame = ByteBuffer.allocate(LocationFrames.BATCH_HEADER_LENGTH + points * LocationFrames.POINT_LENGTH);
+        return putBatch(frame, ridePlanId, sequence, points).flip();
+    }
+
+    private static ByteBuffer putBatch(ByteBuffer frame, long ridePlanId, long sequence, int points) {
+        frame.put(LocationFrames.BATCH).putLong(ridePlanId).putLong(sequence).putShort((short) points);
+        for (int k = 0; k < points; k++) {
+            frame.putDouble(12.9 + k * 0.001).putDouble(77.5).putLong(1_700_000_000_000L + k * 1000L)
+                    .putFloat(10f).putFloat(180f);
+        }
+        return frame;
+    }
+}
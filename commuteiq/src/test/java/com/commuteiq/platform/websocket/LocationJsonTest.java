@@ -0,0 +1,121 @@
+package com.commuteiq.platform.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationJsonTest {
+
+    private final JsonFactory factory = new JsonFactory();
+    private final LocationBatch batch = new LocationBatch();
+
+    @Test
+    void parsesSinglePing() {
+        assertTrue(parse("{\"ridePlanId\":123,\"latitude\":12.9716,\"longitude\":77.5946,\"speed\":8.5}"));
+
+        assertEquals(123L, batch.getRidePlanId());
+        assertEquals(LocationBatch.NO_SEQUENCE, batch.getFirstSequence());
+        assertFalse(batch.isResume());
+        assertEquals(1, batch.size());
+        assertEquals(12.9716, batch.latitude(0));
+        assertEquals(77.5946, batch.longitude(0));
+        assertEquals(0L, batch.timestampMillis(0));
+        assertEquals(8.5f, batch.speedMetersPerSecond(0));
+        assertTrue(Float.isNaN(batch.headingDegrees(0)));
+    }
+
+    @Test
+    void parsesBatchAndSkipsUnknownFields() {
+        assertTrue(parse("{\"ridePlanId\":7,\"sequence\":40,\"device\":{\"os\":\"android\",\"tags\":[1,2]},"
+                + "\"points\":[{\"latitude\":12.1,\"longitude\":77.1,\"timestamp\":1700000000000,\"extra\":[0]},"
+                + "{\"latitude\":\"12.2\",\"longitude\":77.2,\"heading\":90}]}"));
+
+        assertEquals(7L, batch.getRidePlanId());
+        assertEquals(40L, batch.getFirstSequence());
+        assertEquals(2, batch.size());
+        assertEquals(1700000000000L, batch.timestampMillis(0));
+        // Numeric strings are accepted
+        assertEquals(12.2, batch.latitude(1));
+        assertEquals(90f, batch.headingDegrees(1));
+    }
+
+    @Test
+    void parsesResume() {
+        assertTrue(parse("{\"ridePlanId\":9,\"resume\":true}"));
+
+        assertEquals(9L, batch.getRidePlanId());
+        assertTrue(batch.isResume());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    void negativeSequenceReadsAsUnsequenced() {
+        assertTrue(parse("{\"ridePlanId\":7,\"sequence\":-5,\"points\":[{\"latitude\":1,\"longitude\":2}]}"));
+        assertEquals(LocationBatch.NO_SEQUENCE, batch.getFirstSequence());
+    }
+
+    @Test
+    void rejectsMalformedMessages() {
+        String[] malformed = {
+                "",
+                "not json",
+                "[1,2,3]",
+                "{\"ridePlanId\":1,\"latitude\":12.9",
+                "{\"latitude\":12.9,\"longitude\":77.5}",
+                "{\"ridePlanId\":0,\"latitude\":12.9,\"longitude\":77.5}",
+                "{\"ridePlanId\":-4,\"latitude\":12.9,\"longitude\":77.5}",
+                "{\"ridePlanId\":1,\"latitude\":12.9}",
+                "{\"ridePlanId\":1,\"latitude\":\"north\",\"longitude\":77.5}",
+                "{\"ridePlanId\":1,\"latitude\":91,\"longitude\":77.5}",
+                "{\"ridePlanId\":1,\"latitude\":12.9,\"longitude\":-180.5}",
+                "{\"ridePlanId\":1,\"sequence\":0,\"points\":[]}",
+                "{\"ridePlanId\":1,\"sequence\":0,\"points\":{\"latitude\":1,\"longitude\":2}}",
+                "{\"ridePlanId\":1,\"sequence\":0,\"points\":[1,2]}",
+                "{\"ridePlanId\":1,\"sequence\":0,\"points\":[{\"latitude\":1,\"longitude\":2},{\"latitude\":1}]}",
+                "{\"ridePlanId\":1,\"sequence\":0,\"points\":[{\"latitude\":1,\"longitude\":2}",
+        };
+        for (String payload : malformed) {
+            assertFalse(parse(payload), payload);
+        }
+    }
+
+    @Test
+    void boundsBatchSize() {
+        assertTrue(parse(batchOf(LocationBatch.MAX_POINTS)));
+        assertEquals(LocationBatch.MAX_POINTS, batch.size());
+
+        assertFalse(parse(batchOf(LocationBatch.MAX_POINTS + 1)));
+
+        // The reused batch starts over for the next message
+        assertTrue(parse("{\"ridePlanId\":5,\"latitude\":1.5,\"longitude\":2.5}"));
+        assertEquals(1, batch.size());
+        assertEquals(1.5, batch.latitude(0));
+    }
+
+    @Test
+    void writesAcksAndAlerts() {
+        assertEquals("{\"status\":\"OK\",\"ridePlanId\":42}", LocationJson.ack(42).getPayload());
+        assertEquals("{\"status\":\"OK\",\"ridePlanId\":42,\"sequence\":17}",
+                LocationJson.sequenceAck(42, 17).getPayload());
+        assertEquals("{\"status\":\"OK\",\"ridePlanId\":42,\"sequence\":-1}",
+                LocationJson.sequenceAck(42, LocationBatch.NO_SEQUENCE).getPayload());
+        assertEquals("{\"alert\":\"ROUTE_DEVIATION\",\"ridePlanId\":42,"
+                + "\"message\":\"Route deviation detected: 513m\"}", LocationJson.alert(42, 512.6).getPayload());
+    }
+
+    private boolean parse(String payload) {
+        return LocationJson.parse(factory, payload, batch);
+    }
+
+    private static String batchOf(int points) {
+        StringBuilder json = new StringBuilder("{\"ridePlanId\":3,\"sequence\":0,\"points\":[");
+        for (int k = 0; k < points; k++) {
+            json.append(k == 0 ? "" : ",").append("{\"latitude\":12.9,\"longitude\":77.5,\"timestamp\":")
+                    .append(1_700_000_000_000L + k).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.commuteiq.platform.websocket;
+
+import com.commuteiq.platform.pooling.GeoDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteCorridorTest {
+
+    private static final double THRESHOLD_METERS = 500;
+    private static final double LATITUDE = 12.9;
+    private static final double LONGITUDE = 77.5;
+    private static final double DEGREES_PER_KM = 1 / 111.195;
+
+    @Test
+    void measuresDistanceToTheNearestPointOfTheRoute() {
+        // 10 km due north
+        RouteCorridor corridor = new RouteCorridor(new double[] { LATITUDE, LATITUDE + 10 * DEGREES_PER_KM },
+                new double[] { LONGITUDE, LONGITUDE });
+        double eastDegreesPerKm = DEGREES_PER_KM / Math.cos(Math.toRadians(LATITUDE));
+
+        // Beside the route: perpendicular distance
+        assertEquals(300, match(corridor, LATITUDE + 4 * DEGREES_PER_KM, LONGITUDE + 0.3 * eastDegreesPerKm), 1.0);
+        // Past either end: distance to the end vertex
+        assertEquals(2000, match(corridor, LATITUDE - 2 * DEGREES_PER_KM, LONGITUDE), 2.0);
+        assertEquals(1000, match(corridor, LATITUDE + 11 * DEGREES_PER_KM, LONGITUDE), 1.0);
+        assertEquals(0, match(corridor, LATITUDE + 5 * DEGREES_PER_KM, LONGITUDE), 1e-6);
+    }
+
+    @Test
+    void neverFartherThanTheNearestVertex() {
+        Random random = new Random(83);
+        double[] latitudes = new double[6];
+        double[] longitudes = new double[6];
+        for (int v = 0; v < latitudes.length; v++) {
+            latitudes[v] = LATITUDE + 0.2 * random.nextDouble();
+            longitudes[v] = LONGITUDE + 0.2 * random.nextDouble();
+        }
+        RouteCorridor corridor = new RouteCorridor(latitudes, longitudes);
+        for (int n = 0; n < 10_000; n++) {
+            double latitude = LATITUDE - 0.1 + 0.4 * random.nextDouble();
+            double longitude = LONGITUDE - 0.1 + 0.4 * random.nextDouble();
+            double nearestVertex = Double.POSITIVE_INFINITY;
+            for (int v = 0; v < latitudes.length; v++) {
+                nearestVertex = Math.min(nearestVertex,
+                        GeoDistance.haversineKm(latitude, longitude, latitudes[v], longitudes[v]) * 1000);
+            }
+            // Never farther than the nearest vertex, up to the projection error at city scale
+            assertTrue(match(corridor, latitude, longitude) <= nearestVertex * 1.001 + 1e-6);
+        }
+    }
+
+    @Test
+    void cursorFollowsTheVehicleAndStaysPutOffRoute() {
+        // Seven vertices 1 km apart heading north: segments 0 .. 5
+        double[] latitudes = new double[7];
+        double[] longitudes = new double[7];
+        for (int v = 0; v < latitudes.length; v++) {
+            latitudes[v] = LATITUDE + v * DEGREES_PER_KM;
+            longitudes[v] = LONGITUDE;
+        }
+        RouteCorridor corridor = new RouteCorridor(latitudes, longitudes);
+        RideTrack track = new RideTrack();
+
+        corridor.match(LATITUDE + 1.5 * DEGREES_PER_KM, LONGITUDE, track, THRESHOLD_METERS);
+        assertEquals(1, track.segment);
+
+        // Outside the corridor around the look-ahead window (segments 1 .. 4): found by the full scan
+        assertEquals(0, corridor.match(LATITUDE + 5.8 * DEGREES_PER_KM, LONGITUDE, track, THRESHOLD_METERS), 1e-6);
+        assertEquals(5, track.segment);
+
+        // Off route: the cursor keeps the last matched segment
+        double far = corridor.match(LATITUDE + 2.5 * DEGREES_PER_KM, LONGITUDE + 0.05, track, THRESHOLD_METERS);
+        assertTrue(far > THRESHOLD_METERS);
+        assertEquals(5, track.segment);
+
+        // Back on an earlier part of the route
+        corridor.match(LATITUDE + 2.5 * DEGREES_PER_KM, LONGITUDE, track, THRESHOLD_METERS);
+        assertEquals(2, track.segment);
+    }
+
+    @Test
+    void collapsesRepeatedVertices() {
+        RouteCorridor corridor = new RouteCorridor(
+                new double[] { LATITUDE, LATITUDE, LATITUDE + DEGREES_PER_KM, LATITUDE + DEGREES_PER_KM },
+                new double[] { LONGITUDE, LONGITUDE, LONGITUDE, LONGITUDE });
+        assertEquals(1, corridor.segmentCount());
+
+        RouteCorridor point = new RouteCorridor(new double[] { LATITUDE, LATITUDE }, new double[] { LONGITUDE, LONGITUDE });
+        assertEquals(0, point.segmentCount());
+        assertEquals(1000, match(point, LATITUDE + DEGREES_PER_KM, LONGITUDE), 1.0);
+    }
+
+    private static double match(RouteCorridor corridor, double latitude, double longitude) {
+        return corridor.match(latitude, longitude, new RideTrack(), THRESHOLD_METERS);
+    }
+}
@@ -0,0 +1,144 @@
+package com.commuteiq.platform.websocket;
+
+import com.commuteiq.platform.entity.RidePlan;
+import com.commuteiq.platform.entity.SafetyEvent;
+import com.commuteiq.platform.entity.SafetyEventType;
+import com.commuteiq.platform.repository.RidePlanRepository;
+import com.commuteiq.platform.repository.SafetyEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SafetyEventWriterTest {
+
+    private static final long UNKNOWN_PLAN = 99L;
+
+    private final SafetyEventRepository safetyEventRepository = mock(SafetyEventRepository.class);
+    private final RidePlanRepository ridePlanRepository = mock(RidePlanRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Descriptions of the events saved, and the size of every saveAll call
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> saveCalls = Collections.synchronizedList(new ArrayList<>());
+    private SafetyEventWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(ridePlanRepository.getReferenceById(anyLong()))
+                .thenAnswer(invocation -> RidePlan.builder().id(invocation.getArgument(0)).build());
+        when(safetyEventRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<SafetyEvent> events = invocation.getArgument(0);
+            saveCalls.add(events.size());
+            // A ride plan that does not exist fails the whole statement batch
+            if (events.stream().anyMatch(e -> e.getRidePlan().getId() == UNKNOWN_PLAN)) {
+                throw new DataIntegrityViolationException("fk_safety_event_ride_plan");
+            }
+            events.forEach(e -> saved.add(e.getDescription()));
+            return events;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void dropNewestRejectsTheOverflow() {
+        writer = writer(2, 10, SafetyEventWriter.OverflowPolicy.DROP_NEWEST);
+
+        assertTrue(submit(1L, "first"));
+        assertTrue(submit(1L, "second"));
+        assertFalse(submit(1L, "third"));
+        assertFalse(submit(1L, "fourth"));
+
+        assertEquals(2, writer.queueDepth());
+        assertEquals(2.0, counter("commuteiq.safety.writer.dropped"));
+        writer.start();
+        writer.stop();
+        assertEquals(List.of("first", "second"), saved);
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestEvents() {
+        writer = writer(2, 10, SafetyEventWriter.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(submit(1L, "first"));
+        assertTrue(submit(1L, "second"));
+        assertFalse(submit(1L, "third"));
+        assertFalse(submit(1L, "fourth"));
+
+        assertEquals(2, writer.queueDepth());
+        assertEquals(2.0, counter("commuteiq.safety.writer.dropped"));
+        writer.start();
+        writer.stop();
+        assertEquals(List.of("third", "fourth"), saved);
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOne() {
+        writer = writer(10, 10, SafetyEventWriter.OverflowPolicy.DROP_OLDEST);
+        submit(1L, "first");
+        submit(UNKNOWN_PLAN, "orphan");
+        submit(2L, "second");
+
+        writer.start();
+        writer.stop();
+
+        // One failed batch, then each event on its own
+        assertEquals(List.of(3, 1, 1, 1), saveCalls);
+        assertEquals(List.of("first", "second"), saved);
+        assertEquals(2.0, counter("commuteiq.safety.writer.written"));
+        assertEquals(1.0, counter("commuteiq.safety.writer.failed"));
+    }
+
+    @Test
+    void stopDrainsTheQueue() {
+        writer = writer(100, 4, SafetyEventWriter.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 10; i++) {
+            submit(1L, "event-" + i);
+        }
+
+        writer.start();
+        writer.stop();
+
+        assertFalse(writer.isRunning());
+        assertEquals(0, writer.queueDepth());
+        assertEquals(10, saved.size());
+        assertEquals(10.0, counter("commuteiq.safety.writer.written"));
+        // Drained in batches of at most four
+        assertTrue(saveCalls.stream().allMatch(size -> size <= 4));
+    }
+
+    private SafetyEventWriter writer(int queueCapacity, int batchSize, SafetyEventWriter.OverflowPolicy overflow) {
+        return new SafetyEventWriter(safetyEventRepository, ridePlanRepository, transactionManager, meterRegistry,
+                queueCapacity, batchSize, overflow);
+    }
+
+    private boolean submit(long ridePlanId, String description) {
+        return writer.submit(ridePlanId, SafetyEventType.PANIC, description);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+}